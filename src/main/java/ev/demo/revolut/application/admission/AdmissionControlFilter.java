@@ -0,0 +1,129 @@
+package ev.demo.revolut.application.admission;
+
+import ev.demo.revolut.cache.BoundedCache;
+import ev.demo.revolut.logging.Log;
+import ev.demo.revolut.model.transaction.TransactionProcessingService;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+import org.glassfish.grizzly.http.server.Request;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+@Priority(Priorities.AUTHENTICATION - 100)
+public class AdmissionControlFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static Logger logger = Logger.getLogger(AdmissionControlFilter.class);
+
+    private static final String CLIENT_ID_HEADER = "X-Client-Id";
+    private static final String PERMIT_PROPERTY = AdmissionControlFilter.class.getName() + ".permit";
+
+    //0 turns the per-client limit off, clients are told apart by X-Client-Id or else by their address
+    private static final double CLIENT_RATE_PER_SECOND = Double.parseDouble(System.getProperty("revolut.admission.clientRatePerSecond", "0"));
+    private static final int CLIENT_BURST = Integer.getInteger("revolut.admission.clientBurst", (int) Math.max(1, CLIENT_RATE_PER_SECOND));
+    private static final int MAX_CLIENTS = Integer.getInteger("revolut.admission.maxClients", 10000);
+    private static final long CLIENT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(Long.getLong("revolut.admission.clientTtlMinutes", 60));
+
+    //requests admitted at the same time, including the suspended ones waiting for the DB
+    private static final int MAX_CONCURRENT_REQUESTS = Integer.getInteger("revolut.admission.maxConcurrentRequests", 1000);
+
+    //active transactions after which new transfers are refused until the processing catches up
+    private static final int MAX_TRANSACTION_BACKLOG = Integer.getInteger("revolut.admission.maxTransactionBacklog", 10000);
+    private static final int BACKLOG_RETRY_AFTER_SECONDS = Integer.getInteger("revolut.admission.backlogRetryAfterSeconds", 5);
+
+    private final double clientRatePerSecond;
+    private final int clientBurst;
+    private final int maxConcurrentRequests;
+    private final int maxTransactionBacklog;
+    private final IntSupplier backlogSize;
+
+    private final Semaphore concurrentRequests;
+    private final BoundedCache<String, TokenBucket> clientBuckets = new BoundedCache<>(MAX_CLIENTS, CLIENT_TTL_MILLIS);
+
+    @Inject
+    private Provider<Request> grizzlyRequest;
+
+    public AdmissionControlFilter() {
+        this(CLIENT_RATE_PER_SECOND, CLIENT_BURST, MAX_CONCURRENT_REQUESTS, MAX_TRANSACTION_BACKLOG, TransactionProcessingService::getBacklogSize);
+    }
+
+    AdmissionControlFilter(double clientRatePerSecond, int clientBurst, int maxConcurrentRequests, int maxTransactionBacklog, IntSupplier backlogSize) {
+        this.clientRatePerSecond = clientRatePerSecond;
+        this.clientBurst = clientBurst;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxTransactionBacklog = maxTransactionBacklog;
+        this.backlogSize = backlogSize;
+        this.concurrentRequests = new Semaphore(Math.max(1, maxConcurrentRequests));
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (clientRatePerSecond > 0) {
+            String clientId = getClientId(requestContext);
+            long waitNanos = clientBuckets.computeIfAbsent(clientId, id -> new TokenBucket(clientBurst, clientRatePerSecond)).tryAcquire();
+            if (waitNanos > 0) {
+                Log.debug(logger, "Request of client '{}' is rejected by its rate limit", clientId);
+                requestContext.abortWith(rejectedResponse(429, "Request rate limit of the client is exceeded", toRetryAfterSeconds(waitNanos)));
+                return;
+            }
+        }
+
+        if (isTransferCreation(requestContext) && backlogSize.getAsInt() > maxTransactionBacklog) {
+            Log.debug(logger, "Transfer is rejected, processing backlog is {}", backlogSize.getAsInt());
+            requestContext.abortWith(rejectedResponse(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(),
+                    "Transaction processing backlog is full, try again later", BACKLOG_RETRY_AFTER_SECONDS));
+            return;
+        }
+
+        if (maxConcurrentRequests > 0) {
+            if (!concurrentRequests.tryAcquire()) {
+                Log.debug(logger, "Request is rejected, {} requests are already in progress", maxConcurrentRequests);
+                requestContext.abortWith(rejectedResponse(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), "Server is overloaded, try again later", 1));
+                return;
+            }
+            requestContext.setProperty(PERMIT_PROPERTY, Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        //runs for aborted requests too, only an admitted request holds a permit
+        if (requestContext.getProperty(PERMIT_PROPERTY) != null) {
+            requestContext.removeProperty(PERMIT_PROPERTY);
+            concurrentRequests.release();
+        }
+    }
+
+    private String getClientId(ContainerRequestContext requestContext) {
+        String clientId = requestContext.getHeaderString(CLIENT_ID_HEADER);
+        if (StringUtils.isNotEmpty(clientId)) {
+            return clientId;
+        }
+        return grizzlyRequest.get().getRemoteAddr();
+    }
+
+    private boolean isTransferCreation(ContainerRequestContext requestContext) {
+        String path = requestContext.getUriInfo().getPath();
+        return HttpMethod.POST.equals(requestContext.getMethod()) && (path.startsWith("transactions") || path.startsWith("payouts"));
+    }
+
+    private Response rejectedResponse(int status, String errorMessage, long retryAfterSeconds) {
+        return Response.status(status).header(HttpHeaders.RETRY_AFTER, retryAfterSeconds).entity(errorMessage).build();
+    }
+
+    private long toRetryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,14 @@
+package ev.demo.revolut.application.compression;
+
+import javax.ws.rs.NameBinding;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//marks the list endpoints whose responses are worth compressing, small single-entity responses stay as they are
+@NameBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface Compressible {
+}
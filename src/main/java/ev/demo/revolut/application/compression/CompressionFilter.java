@@ -0,0 +1,60 @@
+package ev.demo.revolut.application.compression;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+//only chooses the encoding, the body is compressed while it is written by the registered GZipEncoder
+@Compressible
+@Priority(Priorities.HEADER_DECORATOR)
+public class CompressionFilter implements ContainerResponseFilter {
+
+    static final String GZIP = "gzip";
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        responseContext.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (responseContext.hasEntity() && responseContext.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL
+                && !responseContext.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)
+                && acceptsGzip(requestContext.getHeaderString(HttpHeaders.ACCEPT_ENCODING))) {
+            responseContext.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase(GZIP) && !name.equals("*")) {
+                continue;
+            }
+
+            //q=0 means the client refuses the coding
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(parameter.substring(2)) <= 0;
+                    } catch (NumberFormatException e) {
+                        refused = true;
+                    }
+                }
+            }
+            if (!refused) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -1,15 +1,27 @@
 package ev.demo.revolut.application.controller;
 
-import ev.demo.revolut.model.account.entity.Account;
+import com.fasterxml.jackson.jaxrs.smile.SmileMediaTypes;
+import ev.demo.revolut.application.compression.Compressible;
+import ev.demo.revolut.logging.Log;
 import ev.demo.revolut.model.account.AccountService;
 import ev.demo.revolut.model.account.entity.AccountCreationInput;
+import ev.demo.revolut.model.transaction.TransactionEventPublisher;
+import ev.demo.revolut.model.transaction.TransactionService;
+import ev.demo.revolut.model.transaction.entity.TransactionDirection;
+import ev.demo.revolut.model.transaction.entity.TransactionHistoryFilter;
+import ev.demo.revolut.model.transaction.entity.TransactionStatus;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.Response;
-import java.util.List;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
 
 @Path("/accounts")
 public class AccountController {
@@ -17,77 +29,156 @@ public class AccountController {
 
     private ResponseBuilder responseBuilder = new ResponseBuilder();
     private AccountService accountService = new AccountService();
+    private TransactionService transactionService = new TransactionService();
 
+    @Compressible
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllAccounts() {
-        logger.debug("getAllAccounts is called");
-        try{
-            List<Account> accounts = accountService.getAllAccounts();
-            return responseBuilder.getResponse(accounts);
-
-        } catch (Exception e) {
-            logger.error("getAllAccounts failed with exception!", e);
-            return responseBuilder.exceptionResponse(e);
+    @Produces({MediaType.APPLICATION_JSON, JsonStreamingOutput.NDJSON_MEDIA_TYPE, SmileMediaTypes.APPLICATION_JACKSON_SMILE})
+    public void getAllAccounts(@QueryParam("ownerId") String ownerId, @Context HttpHeaders headers, @Suspended AsyncResponse asyncResponse) {
+        Log.debug(logger, "getAllAccounts is called for ownerId '{}'", ownerId);
+
+        if (StringUtils.isNotEmpty(ownerId)) {
+            responseBuilder.resume(asyncResponse, accountService.getAccountsByOwnerIdAsync(ownerId), responseBuilder::getResponse,
+                    e -> logger.error("getAllAccounts failed with exception for ownerId '" + ownerId + "'!", e));
+            return;
         }
+
+        //the list is streamed row by row instead of building it, it is never served from the cache
+        String mediaType = responseBuilder.getStreamingMediaType(headers);
+        responseBuilder.resumeStreaming(asyncResponse, new JsonStreamingOutput<>(accountService::forEachAccount, mediaType),
+                mediaType, e -> logger.error("getAllAccounts failed with exception!", e));
     }
 
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, SmileMediaTypes.APPLICATION_JACKSON_SMILE})
     @Path("/{id}")
-    public Response getAccountById(@PathParam("id") String accountId) {
-        logger.debug("getAccountById is called for id '" + accountId + "'");
+    public void getAccountById(@PathParam("id") String accountId, @HeaderParam(HttpHeaders.CACHE_CONTROL) String cacheControl,
+                               @Suspended AsyncResponse asyncResponse) {
+        Log.debug(logger, "getAccountById is called for id '{}'", accountId);
 
         if (StringUtils.isEmpty(accountId)) {
-            return responseBuilder.badRequestResponse("Account ID cannot be empty");
+            asyncResponse.resume(responseBuilder.badRequestResponse("Account ID cannot be empty"));
+            return;
+        }
+
+        long maxAgeMillis;
+        try {
+            maxAgeMillis = getMaxAgeMillis(cacheControl);
+        } catch (NumberFormatException e) {
+            asyncResponse.resume(responseBuilder.badRequestResponse("Cache-Control max-age must be a number of seconds"));
+            return;
         }
 
-        try{
-            Account account = accountService.getAccountById(accountId);
-            return responseBuilder.getResponse(account);
+        responseBuilder.resume(asyncResponse, accountService.getAccountByIdAsync(accountId, maxAgeMillis), responseBuilder::getResponse,
+                e -> logger.error("getAccountById failed with exception for id '" + accountId + "'!", e));
+    }
 
-        } catch (Exception e) {
-            logger.error("getTransactionById failed with exception for id '" + accountId + "'!", e);
-            return responseBuilder.exceptionResponse(e);
+    @Compressible
+    @GET
+    @Produces({MediaType.APPLICATION_JSON, SmileMediaTypes.APPLICATION_JACKSON_SMILE})
+    @Path("/{id}/transactions")
+    public void getAccountTransactions(@PathParam("id") String accountId,
+                                       @QueryParam("direction") String direction,
+                                       @QueryParam("status") String status,
+                                       @QueryParam("createdFrom") String createdFrom,
+                                       @QueryParam("createdTo") String createdTo,
+                                       @QueryParam("cursor") String cursor,
+                                       @QueryParam("limit") Integer limit,
+                                       @Suspended AsyncResponse asyncResponse) {
+        Log.debug(logger, "getAccountTransactions is called for id '{}' and cursor '{}'", accountId, cursor);
+
+        if (StringUtils.isEmpty(accountId)) {
+            asyncResponse.resume(responseBuilder.badRequestResponse("Account ID cannot be empty"));
+            return;
         }
+
+        TransactionHistoryFilter filter = new TransactionHistoryFilter();
+        filter.setAccountId(accountId);
+        filter.setCursor(cursor);
+        filter.setLimit(limit);
+        try {
+            filter.setDirection(StringUtils.isEmpty(direction) ? null : TransactionDirection.valueOf(direction.toUpperCase()));
+            filter.setStatus(StringUtils.isEmpty(status) ? null : TransactionStatus.valueOf(status.toUpperCase()));
+            filter.setCreatedFrom(StringUtils.isEmpty(createdFrom) ? null : Instant.parse(createdFrom));
+            filter.setCreatedTo(StringUtils.isEmpty(createdTo) ? null : Instant.parse(createdTo));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            asyncResponse.resume(responseBuilder.badRequestResponse("Transaction filter is not valid: " + e.getMessage()));
+            return;
+        }
+
+        responseBuilder.resume(asyncResponse, transactionService.getAccountTransactionsAsync(filter), responseBuilder::getResponse,
+                e -> logger.error("getAccountTransactions failed with exception for id '" + accountId + "'!", e));
     }
 
-    @POST
-    @Consumes(MediaType.APPLICATION_JSON)
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response createAccount(AccountCreationInput creationInput) {
-        logger.debug("createAccount is called for creationInput '" + creationInput + "'");
+    @GET
+    @Produces(TransactionEventStream.EVENT_STREAM_MEDIA_TYPE)
+    @Path("/{id}/events")
+    public void getAccountTransactionEvents(@PathParam("id") String accountId, @Suspended AsyncResponse asyncResponse) {
+        Log.debug(logger, "getAccountTransactionEvents is called for id '{}'", accountId);
 
-        if (creationInput == null) {
-            return responseBuilder.badRequestResponse("Creation Input cannot be empty");
+        if (StringUtils.isEmpty(accountId)) {
+            asyncResponse.resume(responseBuilder.badRequestResponse("Account ID cannot be empty"));
+            return;
+        }
+
+        TransactionEventStream eventStream = new TransactionEventStream(false);
+        if (!TransactionEventPublisher.subscribeToAccount(accountId, eventStream)) {
+            asyncResponse.resume(responseBuilder.serviceUnavailableResponse("Event subscriber limit is reached, try again later"));
+            return;
         }
 
-        try{
-            Account createdAccount = accountService.createAccount(creationInput);
-            return responseBuilder.createResponse(createdAccount);
+        responseBuilder.resume(asyncResponse, accountService.getAccountByIdAsync(accountId, 0), account -> eventStream.toResponse(), e -> {
+            TransactionEventPublisher.unsubscribeFromAccount(accountId, eventStream);
+            logger.error("getAccountTransactionEvents is failed with exception for id '" + accountId + "'!", e);
+        });
+    }
+
+    @POST
+    @Consumes({MediaType.APPLICATION_JSON, SmileMediaTypes.APPLICATION_JACKSON_SMILE})
+    @Produces({MediaType.APPLICATION_JSON, SmileMediaTypes.APPLICATION_JACKSON_SMILE})
+    public void createAccount(AccountCreationInput creationInput, @Suspended AsyncResponse asyncResponse) {
+        Log.debug(logger, "createAccount is called for creationInput '{}'", creationInput);
 
-        } catch (Exception e) {
-            logger.error("createAccount failed with exception!", e);
-            return responseBuilder.exceptionResponse(e);
+        if (creationInput == null) {
+            asyncResponse.resume(responseBuilder.badRequestResponse("Creation Input cannot be empty"));
+            return;
         }
+
+        responseBuilder.resume(asyncResponse, accountService.createAccountAsync(creationInput), responseBuilder::createResponse,
+                e -> logger.error("createAccount failed with exception!", e));
     }
 
     @DELETE
     @Path("/{id}")
-    public Response deleteAccountById(@PathParam("id")String accountId) {
-        logger.debug("deleteAccountById is called for id '" + accountId + "'");
+    public void deleteAccountById(@PathParam("id")String accountId, @Suspended AsyncResponse asyncResponse) {
+        Log.debug(logger, "deleteAccountById is called for id '{}'", accountId);
 
         if (StringUtils.isEmpty(accountId)) {
-            return responseBuilder.badRequestResponse("Account ID cannot be empty");
+            asyncResponse.resume(responseBuilder.badRequestResponse("Account ID cannot be empty"));
+            return;
         }
 
-        try{
-            accountService.deleteAccountById(accountId);
-            return responseBuilder.deleteResponse();
+        responseBuilder.resume(asyncResponse, accountService.deleteAccountByIdAsync(accountId), deleted -> responseBuilder.deleteResponse(),
+                e -> logger.error("deleteAccountById is failed with exception for id '" + accountId + "'!", e));
+    }
+
+    //"max-age=N" accepts a balance up to N seconds old, without it or with "no-cache" the Account is read from the DB
+    private long getMaxAgeMillis(String cacheControl) {
+        if (StringUtils.isEmpty(cacheControl)) {
+            return 0;
+        }
 
-        } catch (Exception e) {
-            logger.error("deleteAccountById is failed with exception for id '" + accountId + "'!", e);
-            return responseBuilder.exceptionResponse(e);
+        long maxAgeSeconds = 0;
+        for (String directive : cacheControl.split(",")) {
+            String normalizedDirective = directive.trim().toLowerCase();
+            if (normalizedDirective.equals("no-cache")) {
+                return 0;
+            }
+            if (normalizedDirective.startsWith("max-age=")) {
+                maxAgeSeconds = Long.parseLong(normalizedDirective.substring("max-age=".length()));
+            }
         }
+
+        return TimeUnit.SECONDS.toMillis(Math.max(0, maxAgeSeconds));
     }
 }
@@ -1,15 +1,19 @@
 package ev.demo.revolut.application.controller;
 
 import ev.demo.revolut.application.infrastructure.Application;
+import ev.demo.revolut.metrics.RequestMetrics;
 import org.apache.log4j.Logger;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 @Path("/application")
 public class ApplicationController {
     private static Logger logger = Logger.getLogger(ApplicationController.class);
 
+    private ResponseBuilder responseBuilder = new ResponseBuilder();
+
     @GET
     @Produces(MediaType.TEXT_PLAIN)
     @Path("/ping")
@@ -19,6 +23,15 @@ public class ApplicationController {
         return "Server is working!";
     }
 
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/metrics")
+    public Response getMetrics() {
+        logger.debug("getMetrics is called");
+
+        return responseBuilder.getResponse(RequestMetrics.getReport());
+    }
+
     @POST
     @Path("/stop")
     public void stopServer() {
@@ -0,0 +1,73 @@
+package ev.demo.revolut.application.controller;
+
+import ev.demo.revolut.logging.Log;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.jaxrs.smile.SmileMediaTypes;
+import ev.demo.revolut.application.json.ObjectMapperProvider;
+import org.apache.log4j.Logger;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+class JsonStreamingOutput<T> implements StreamingOutput {
+
+    private static Logger logger = Logger.getLogger(JsonStreamingOutput.class);
+
+    static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
+    private final Function<Consumer<T>, Integer> rowSource;
+    private final boolean ndjson;
+    private final ObjectMapper objectMapper;
+
+    //a JSON array, one JSON row per line, or a Smile array
+    JsonStreamingOutput(Function<Consumer<T>, Integer> rowSource, String mediaType) {
+        this.rowSource = rowSource;
+        this.ndjson = NDJSON_MEDIA_TYPE.equals(mediaType);
+        this.objectMapper = SmileMediaTypes.APPLICATION_JACKSON_SMILE.equals(mediaType) ? ObjectMapperProvider.getSmileObjectMapper() : ObjectMapperProvider.getObjectMapper();
+    }
+
+    @Override
+    public void write(OutputStream outputStream) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+        //the generator must not close the response stream, the container finishes the chunked body itself
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (ndjson) {
+            generator.setRootValueSeparator(null);
+        }
+
+        if (!ndjson) {
+            generator.writeStartArray();
+        }
+        generator.flush();
+
+        try {
+            int rowCount = rowSource.apply(row -> writeRow(generator, row));
+            Log.debug(logger, "Streamed {} rows", rowCount);
+
+        } catch (UncheckedIOException e) {
+            //the client has gone away, the cursor is already closed
+            throw e.getCause();
+        }
+
+        if (!ndjson) {
+            generator.writeEndArray();
+        }
+        generator.close();
+    }
+
+    private void writeRow(JsonGenerator generator, T row) {
+        try {
+            generator.writeObject(row);
+            if (ndjson) {
+                generator.writeRaw('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
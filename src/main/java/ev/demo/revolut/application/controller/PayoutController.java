@@ -0,0 +1,51 @@
+package ev.demo.revolut.application.controller;
+
+import ev.demo.revolut.logging.Log;
+import ev.demo.revolut.model.transaction.PayoutService;
+import ev.demo.revolut.model.transaction.entity.PayoutCreationInput;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+
+import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+
+@Path("/payouts")
+public class PayoutController {
+
+    private static Logger logger = Logger.getLogger(PayoutController.class);
+
+    private ResponseBuilder responseBuilder = new ResponseBuilder();
+    private PayoutService payoutService = new PayoutService();
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/{id}")
+    public void getPayoutById(@PathParam("id") String payoutId, @Suspended AsyncResponse asyncResponse) {
+        Log.debug(logger, "getPayoutById is called for id '{}'", payoutId);
+
+        if (StringUtils.isEmpty(payoutId)) {
+            asyncResponse.resume(responseBuilder.badRequestResponse("Payout ID cannot be empty"));
+            return;
+        }
+
+        responseBuilder.resume(asyncResponse, payoutService.getPayoutByIdAsync(payoutId), responseBuilder::getResponse,
+                e -> logger.error("getPayoutById is failed with exception for id '" + payoutId + "'!", e));
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public void createPayout(PayoutCreationInput creationInput, @Suspended AsyncResponse asyncResponse) {
+        Log.debug(logger, "createPayout is called for {} legs", creationInput == null || creationInput.getLegs() == null ? 0 : creationInput.getLegs().size());
+
+        if (creationInput == null) {
+            asyncResponse.resume(responseBuilder.badRequestResponse("Creation Input cannot be empty"));
+            return;
+        }
+
+        responseBuilder.resume(asyncResponse, payoutService.createPayoutAsync(creationInput), responseBuilder::createResponse,
+                e -> logger.error("createPayout is failed with exception!", e));
+    }
+}
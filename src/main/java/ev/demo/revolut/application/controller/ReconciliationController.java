@@ -0,0 +1,46 @@
+package ev.demo.revolut.application.controller;
+
+import ev.demo.revolut.model.reconciliation.ReconciliationService;
+import ev.demo.revolut.model.reconciliation.entity.ReconciliationReport;
+import org.apache.log4j.Logger;
+
+import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+@Path("/reconciliation")
+public class ReconciliationController {
+
+    private static Logger logger = Logger.getLogger(ReconciliationController.class);
+
+    private ResponseBuilder responseBuilder = new ResponseBuilder();
+    private ReconciliationService reconciliationService = new ReconciliationService();
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/report")
+    public Response getLastReport() {
+        logger.debug("getLastReport is called");
+
+        try{
+            ReconciliationReport report = reconciliationService.getLastReport();
+            return responseBuilder.getResponse(report);
+
+        } catch (Exception e) {
+            logger.error("getLastReport is failed with exception!", e);
+            return responseBuilder.exceptionResponse(e);
+        }
+    }
+
+    //a run reads every account and transaction, it is done on the reconciliation thread and the HTTP worker is released at once
+    @POST
+    @Produces(MediaType.APPLICATION_JSON)
+    public void reconcile(@Suspended AsyncResponse asyncResponse) {
+        logger.debug("reconcile is called");
+
+        responseBuilder.resume(asyncResponse, reconciliationService.reconcileAsync(), responseBuilder::getResponse,
+                e -> logger.error("reconcile is failed with exception!", e));
+    }
+}
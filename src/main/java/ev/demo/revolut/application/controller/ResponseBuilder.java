@@ -1,13 +1,28 @@
 package ev.demo.revolut.application.controller;
 
+import com.fasterxml.jackson.jaxrs.smile.SmileMediaTypes;
+import ev.demo.revolut.db.DataBaseExecutor;
 import ev.demo.revolut.db.exception.EntityNotFoundException;
 import ev.demo.revolut.model.ValidationException;
 import org.glassfish.grizzly.utils.Exceptions;
 
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 class ResponseBuilder {
 
+    private static final long ASYNC_TIMEOUT_SECONDS = Long.getLong("revolut.http.asyncTimeoutSeconds", 30);
+    private static final String RETRY_AFTER_SECONDS = "1";
+
     Response getResponse(Object entity) {
         return Response.status(Response.Status.OK).entity(entity).build();
     }
@@ -24,6 +39,56 @@ class ResponseBuilder {
         return Response.status(Response.Status.BAD_REQUEST).entity(errorMessage).build();
     }
 
+    //the HTTP worker is released at once, the response is written by the DB executor thread when the result is ready
+    <T> void resume(AsyncResponse asyncResponse, CompletableFuture<T> result, Function<T, Response> responseFunction, Consumer<Throwable> errorLogger) {
+        asyncResponse.setTimeout(ASYNC_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        asyncResponse.setTimeoutHandler(timedOutResponse -> timedOutResponse.resume(serviceUnavailableResponse("Request timed out waiting for the DB")));
+
+        result.whenComplete((entity, throwable) -> {
+            if (throwable == null) {
+                asyncResponse.resume(responseFunction.apply(entity));
+                return;
+            }
+
+            resumeWithException(asyncResponse, throwable, errorLogger);
+        });
+    }
+
+    //resumed from a DB streaming thread, so the cursor is read there while the rows are written to the client;
+    //a slow client holds only that thread, and the limit of streams in flight answers 503 like a saturated DB executor
+    void resumeStreaming(AsyncResponse asyncResponse, StreamingOutput streamingOutput, String mediaType, Consumer<Throwable> errorLogger) {
+        asyncResponse.setTimeout(ASYNC_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        asyncResponse.setTimeoutHandler(timedOutResponse -> timedOutResponse.resume(serviceUnavailableResponse("Request timed out waiting for the DB")));
+
+        DataBaseExecutor.runStreamingAsync(() -> asyncResponse.resume(Response.status(Response.Status.OK).type(mediaType).entity(streamingOutput).build()))
+                .exceptionally(throwable -> {
+                    resumeWithException(asyncResponse, throwable, errorLogger);
+                    return null;
+                });
+    }
+
+    private void resumeWithException(AsyncResponse asyncResponse, Throwable throwable, Consumer<Throwable> errorLogger) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        errorLogger.accept(cause);
+        asyncResponse.resume(exceptionResponse(cause instanceof Exception ? (Exception) cause : new RuntimeException(cause)));
+    }
+
+    String getStreamingMediaType(HttpHeaders headers) {
+        if (accepts(headers, JsonStreamingOutput.NDJSON_MEDIA_TYPE)) {
+            return JsonStreamingOutput.NDJSON_MEDIA_TYPE;
+        }
+        return accepts(headers, SmileMediaTypes.APPLICATION_JACKSON_SMILE) ? SmileMediaTypes.APPLICATION_JACKSON_SMILE : MediaType.APPLICATION_JSON;
+    }
+
+    private boolean accepts(HttpHeaders headers, String mediaType) {
+        return headers.getAcceptableMediaTypes().stream()
+                .anyMatch(acceptedType -> mediaType.equals(acceptedType.getType() + "/" + acceptedType.getSubtype()));
+    }
+
+    Response serviceUnavailableResponse(String errorMessage) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS).entity(errorMessage).build();
+    }
+
     Response exceptionResponse(Exception exception) {
         if (exception instanceof EntityNotFoundException) {
             return Response.status(Response.Status.NOT_FOUND).entity(Exceptions.getStackTraceAsString(exception)).build();
@@ -31,6 +96,9 @@ class ResponseBuilder {
         if (exception instanceof ValidationException) {
             return Response.status(422).entity(Exceptions.getStackTraceAsString(exception)).build();
         }
+        if (exception instanceof RejectedExecutionException) {
+            return serviceUnavailableResponse("DB executor is saturated, try again later");
+        }
 
         return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(Exceptions.getStackTraceAsString(exception)).build();
     }
@@ -1,14 +1,20 @@
 package ev.demo.revolut.application.controller;
 
-import ev.demo.revolut.model.transaction.entity.Transaction;
+import com.fasterxml.jackson.jaxrs.smile.SmileMediaTypes;
+import ev.demo.revolut.application.compression.Compressible;
+import ev.demo.revolut.logging.Log;
+import ev.demo.revolut.model.transaction.TransactionEventPublisher;
 import ev.demo.revolut.model.transaction.TransactionService;
 import ev.demo.revolut.model.transaction.entity.TransactionCreationInput;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.Response;
 import java.util.List;
 
 @Path("/transactions")
@@ -16,80 +22,110 @@ public class TransactionController {
 
     private static Logger logger = Logger.getLogger(TransactionController.class);
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private ResponseBuilder responseBuilder = new ResponseBuilder();
     private TransactionService transactionService = new TransactionService();
 
+    @Compressible
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllTransactions() {
+    @Produces({MediaType.APPLICATION_JSON, JsonStreamingOutput.NDJSON_MEDIA_TYPE, SmileMediaTypes.APPLICATION_JACKSON_SMILE})
+    public void getAllTransactions(@Context HttpHeaders headers, @Suspended AsyncResponse asyncResponse) {
         logger.debug("getAllTransactions is called");
 
-        try{
-            List<Transaction> transactions = transactionService.getAllTransactions();
-            return responseBuilder.getResponse(transactions);
-
-        } catch (Exception e) {
-            logger.error("getAllTransactions is failed with exception!", e);
-            return responseBuilder.exceptionResponse(e);
-        }
+        String mediaType = responseBuilder.getStreamingMediaType(headers);
+        responseBuilder.resumeStreaming(asyncResponse, new JsonStreamingOutput<>(transactionService::forEachTransaction, mediaType),
+                mediaType, e -> logger.error("getAllTransactions is failed with exception!", e));
     }
 
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, SmileMediaTypes.APPLICATION_JACKSON_SMILE})
     @Path("/{id}")
-    public Response getTransactionById(@PathParam("id") String transactionId) {
-        logger.debug("getTransactionById is called for id '" + transactionId + "'");
+    public void getTransactionById(@PathParam("id") String transactionId, @Suspended AsyncResponse asyncResponse) {
+        Log.debug(logger, "getTransactionById is called for id '{}'", transactionId);
 
         if (StringUtils.isEmpty(transactionId)) {
-            return responseBuilder.badRequestResponse("Transaction ID cannot be empty");
+            asyncResponse.resume(responseBuilder.badRequestResponse("Transaction ID cannot be empty"));
+            return;
         }
 
-        try{
-            Transaction transaction = transactionService.getTransactionById(transactionId);
-            return responseBuilder.getResponse(transaction);
+        responseBuilder.resume(asyncResponse, transactionService.getTransactionByIdAsync(transactionId), responseBuilder::getResponse,
+                e -> logger.error("getTransactionById is failed with exception for id '" + transactionId + "'!", e));
+    }
+
+    @GET
+    @Produces(TransactionEventStream.EVENT_STREAM_MEDIA_TYPE)
+    @Path("/{id}/events")
+    public void getTransactionEvents(@PathParam("id") String transactionId, @Suspended AsyncResponse asyncResponse) {
+        Log.debug(logger, "getTransactionEvents is called for id '{}'", transactionId);
 
-        }  catch (Exception e) {
-            logger.error("getTransactionById is failed with exception for id '" + transactionId + "'!", e);
-            return responseBuilder.exceptionResponse(e);
+        if (StringUtils.isEmpty(transactionId)) {
+            asyncResponse.resume(responseBuilder.badRequestResponse("Transaction ID cannot be empty"));
+            return;
         }
+
+        //subscribed before the current state is read, so a status change in between is not missed
+        TransactionEventStream eventStream = new TransactionEventStream(true);
+        if (!TransactionEventPublisher.subscribeToTransaction(transactionId, eventStream)) {
+            asyncResponse.resume(responseBuilder.serviceUnavailableResponse("Event subscriber limit is reached, try again later"));
+            return;
+        }
+
+        responseBuilder.resume(asyncResponse, transactionService.getTransactionByIdAsync(transactionId), transaction -> {
+            if (!eventStream.onTransaction(transaction)) {
+                TransactionEventPublisher.unsubscribeFromTransaction(transactionId, eventStream);
+            }
+            return eventStream.toResponse();
+        }, e -> {
+            TransactionEventPublisher.unsubscribeFromTransaction(transactionId, eventStream);
+            logger.error("getTransactionEvents is failed with exception for id '" + transactionId + "'!", e);
+        });
     }
 
     @POST
-    @Consumes(MediaType.APPLICATION_JSON)
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response createTransaction(TransactionCreationInput creationInput) {
-        logger.debug("createTransaction is called for creationInput '" + creationInput + "'");
+    @Consumes({MediaType.APPLICATION_JSON, SmileMediaTypes.APPLICATION_JACKSON_SMILE})
+    @Produces({MediaType.APPLICATION_JSON, SmileMediaTypes.APPLICATION_JACKSON_SMILE})
+    public void createTransaction(TransactionCreationInput creationInput, @HeaderParam(IDEMPOTENCY_KEY_HEADER) String idempotencyKey,
+                                  @Suspended AsyncResponse asyncResponse) {
+        Log.debug(logger, "createTransaction is called for creationInput '{}' and idempotencyKey '{}'", creationInput, idempotencyKey);
 
         if (creationInput == null) {
-            return responseBuilder.badRequestResponse("Creation Input cannot be empty");
+            asyncResponse.resume(responseBuilder.badRequestResponse("Creation Input cannot be empty"));
+            return;
         }
 
-        try{
-            Transaction transaction = transactionService.createTransaction(creationInput);
-            return responseBuilder.createResponse(transaction);
+        responseBuilder.resume(asyncResponse, transactionService.createTransactionAsync(creationInput, idempotencyKey), responseBuilder::createResponse,
+                e -> logger.error("createTransaction is failed with exception!", e));
+    }
 
-        } catch (Exception e) {
-            logger.error("createTransaction is failed with exception!", e);
-            return responseBuilder.exceptionResponse(e);
+    @Compressible
+    @POST
+    @Consumes({MediaType.APPLICATION_JSON, SmileMediaTypes.APPLICATION_JACKSON_SMILE})
+    @Produces({MediaType.APPLICATION_JSON, SmileMediaTypes.APPLICATION_JACKSON_SMILE})
+    @Path("/batch")
+    public void createTransactions(List<TransactionCreationInput> creationInputs, @Suspended AsyncResponse asyncResponse) {
+        Log.debug(logger, "createTransactions is called for {} creationInputs", creationInputs == null ? 0 : creationInputs.size());
+
+        if (creationInputs == null || creationInputs.isEmpty()) {
+            asyncResponse.resume(responseBuilder.badRequestResponse("Creation Inputs cannot be empty"));
+            return;
         }
+
+        responseBuilder.resume(asyncResponse, transactionService.createTransactionsAsync(creationInputs), responseBuilder::getResponse,
+                e -> logger.error("createTransactions is failed with exception!", e));
     }
 
     @DELETE
     @Path("/{id}")
-    public Response deleteTransactionById(@PathParam("id") String transactionId) {
-        logger.debug("deleteTransactionById is called for id '" + transactionId + "'");
+    public void deleteTransactionById(@PathParam("id") String transactionId, @Suspended AsyncResponse asyncResponse) {
+        Log.debug(logger, "deleteTransactionById is called for id '{}'", transactionId);
 
         if (StringUtils.isEmpty(transactionId)) {
-            return responseBuilder.badRequestResponse("Transaction ID cannot be empty");
+            asyncResponse.resume(responseBuilder.badRequestResponse("Transaction ID cannot be empty"));
+            return;
         }
 
-        try{
-            transactionService.deleteTransactionById(transactionId);
-            return responseBuilder.deleteResponse();
-
-        } catch (Exception e) {
-            logger.error("deleteTransactionById is failed with exception for id '" + transactionId + "'!", e);
-            return responseBuilder.exceptionResponse(e);
-        }
+        responseBuilder.resume(asyncResponse, transactionService.deleteTransactionByIdAsync(transactionId), deleted -> responseBuilder.deleteResponse(),
+                e -> logger.error("deleteTransactionById is failed with exception for id '" + transactionId + "'!", e));
     }
 }
\ No newline at end of file
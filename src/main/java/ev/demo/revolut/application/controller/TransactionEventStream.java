@@ -0,0 +1,94 @@
+package ev.demo.revolut.application.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ev.demo.revolut.application.json.ObjectMapperProvider;
+import ev.demo.revolut.logging.Log;
+import ev.demo.revolut.model.transaction.TransactionEventSubscriber;
+import ev.demo.revolut.model.transaction.entity.Transaction;
+import ev.demo.revolut.model.transaction.entity.TransactionStatus;
+import org.apache.log4j.Logger;
+import org.glassfish.jersey.server.ChunkedOutput;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+//Server-Sent Events written to a ChunkedOutput, no thread is held while the stream is idle
+class TransactionEventStream implements TransactionEventSubscriber {
+
+    private static Logger logger = Logger.getLogger(TransactionEventStream.class);
+
+    static final String EVENT_STREAM_MEDIA_TYPE = "text/event-stream";
+
+    //a stream not returned to the client by then has lost its request, e.g. by the async timeout
+    private static final long UNATTACHED_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final ObjectMapper objectMapper = ObjectMapperProvider.getObjectMapper();
+
+    private final ChunkedOutput<String> output = new ChunkedOutput<>(String.class, "");
+    private final boolean closeOnFinalStatus;
+    private final long createdAt = System.currentTimeMillis();
+    private volatile boolean attached;
+
+    TransactionEventStream(boolean closeOnFinalStatus) {
+        this.closeOnFinalStatus = closeOnFinalStatus;
+    }
+
+    Response toResponse() {
+        attached = true;
+        return Response.ok(output, EVENT_STREAM_MEDIA_TYPE).header(HttpHeaders.CACHE_CONTROL, "no-cache").build();
+    }
+
+    @Override
+    public boolean onTransaction(Transaction transaction) {
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(transaction);
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to serialize Transaction '" + transaction.getId() + "'!", e);
+            return true;
+        }
+
+        boolean written = write("id: " + transaction.getId() + "\nevent: " + transaction.getStatus().name().toLowerCase() + "\ndata: " + data + "\n\n");
+        boolean finalStatus = transaction.getStatus() == TransactionStatus.COMPLETED || transaction.getStatus() == TransactionStatus.FAILED;
+        if (written && finalStatus && closeOnFinalStatus) {
+            close();
+            return false;
+        }
+        return written;
+    }
+
+    @Override
+    public boolean onHeartbeat() {
+        if (!attached) {
+            return System.currentTimeMillis() - createdAt < UNATTACHED_TTL_MILLIS;
+        }
+        //a comment line keeps proxies from closing the idle connection and detects gone clients
+        return write(": heartbeat\n\n");
+    }
+
+    private synchronized boolean write(String event) {
+        if (output.isClosed()) {
+            return false;
+        }
+
+        try {
+            output.write(event);
+            return true;
+        } catch (IOException e) {
+            Log.debug(logger, "Event stream is closed by the client: {}", e.getMessage());
+            close();
+            return false;
+        }
+    }
+
+    private void close() {
+        try {
+            output.close();
+        } catch (IOException e) {
+            Log.debug(logger, "Failed to close event stream: {}", e.getMessage());
+        }
+    }
+}
@@ -1,6 +1,13 @@
 package ev.demo.revolut.application.infrastructure;
 
+import ev.demo.revolut.db.DataBaseExecutor;
 import ev.demo.revolut.db.jdbc.h2.H2DataBaseProvider;
+import ev.demo.revolut.logging.LogConfigurator;
+import ev.demo.revolut.model.ledger.LedgerSnapshotService;
+import ev.demo.revolut.model.rate.ExchangeRateCache;
+import ev.demo.revolut.model.reconciliation.ReconciliationService;
+import ev.demo.revolut.model.transaction.PayoutProcessingService;
+import ev.demo.revolut.model.transaction.TransactionEventPublisher;
 import ev.demo.revolut.model.transaction.TransactionProcessingService;
 import org.apache.log4j.Logger;
 import java.io.IOException;
@@ -18,11 +25,16 @@ public class Application {
     }
 
     private static void startServer() {
-        org.apache.log4j.BasicConfigurator.configure();
+        LogConfigurator.configure();
         logger.info("Server starting for URL '" + BASE_URL + "'.");
 
         H2DataBaseProvider.init();
+        ExchangeRateCache.start();
         TransactionProcessingService.start();
+        PayoutProcessingService.start();
+        TransactionEventPublisher.start();
+        LedgerSnapshotService.start();
+        ReconciliationService.start();
 
         server = new Server(BASE_URL);
         server.start();
@@ -34,9 +46,16 @@ public class Application {
         logger.info("Server stopping for URL '" + BASE_URL + "'.");
 
         server.stop();
+        ReconciliationService.stop();
+        LedgerSnapshotService.stop();
+        TransactionEventPublisher.stop();
+        PayoutProcessingService.stop();
         TransactionProcessingService.stop();
+        ExchangeRateCache.stop();
+        DataBaseExecutor.stop();
 
         logger.info("Server stopped for URL '" + BASE_URL + "'.");
+        LogConfigurator.shutdown();
         System.exit(0);
     }
 }
@@ -1,13 +1,33 @@
 package ev.demo.revolut.application.infrastructure;
 
+import com.fasterxml.jackson.jaxrs.smile.JacksonSmileProvider;
+import ev.demo.revolut.application.admission.AdmissionControlFilter;
+import ev.demo.revolut.application.compression.CompressionFilter;
+import ev.demo.revolut.application.json.ObjectMapperProvider;
+import ev.demo.revolut.application.json.SmileNegotiationFilter;
+import ev.demo.revolut.application.metrics.RequestTimingFilter;
 import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.glassfish.jersey.message.GZipEncoder;
 import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.ServerProperties;
 
 import javax.ws.rs.core.UriBuilder;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 
 class Server {
+
+    private static final int SELECTOR_THREADS = Integer.getInteger("revolut.http.selectorThreads", Runtime.getRuntime().availableProcessors());
+    private static final int WORKER_THREADS = Integer.getInteger("revolut.http.workerThreads", Runtime.getRuntime().availableProcessors() * 2);
+    private static final int WORKER_QUEUE_LIMIT = Integer.getInteger("revolut.http.workerQueueLimit", -1);
+    private static final int CONTENT_LENGTH_BUFFER_BYTES = Integer.getInteger("revolut.http.contentLengthBufferBytes", 0);
+
     private String url;
     private HttpServer httpServer;
 
@@ -18,8 +38,39 @@ class Server {
     void start(){
         ResourceConfig resourceConfig = new ResourceConfig();
         resourceConfig.packages("ev.demo.revolut.application.controller");
+        resourceConfig.register(ObjectMapperProvider.class);
+        //the Smile provider is registered with its mapper, the copy listed in its jar would take the JSON mapper from the resolver,
+        //with the jar lookup off the JSON provider is no longer discovered and is registered too
+        resourceConfig.property(ServerProperties.METAINF_SERVICES_LOOKUP_DISABLE, true);
+        resourceConfig.register(JacksonFeature.class);
+        resourceConfig.register(new JacksonSmileProvider(ObjectMapperProvider.getSmileObjectMapper()));
+        resourceConfig.register(SmileNegotiationFilter.class);
+        resourceConfig.register(AdmissionControlFilter.class);
+        resourceConfig.register(RequestTimingFilter.class);
+        //gzip request bodies are decoded for every endpoint, responses are compressed for the @Compressible ones
+        resourceConfig.register(GZipEncoder.class);
+        resourceConfig.register(CompressionFilter.class);
+        //without buffering for Content-Length the first bytes of a streamed list are sent at once, in chunks
+        resourceConfig.property(ServerProperties.OUTBOUND_CONTENT_LENGTH_BUFFER, CONTENT_LENGTH_BUFFER_BYTES);
         URI endPointUrl = UriBuilder.fromPath(url).build();
-        httpServer = GrizzlyHttpServerFactory.createHttpServer(endPointUrl, resourceConfig);
+        httpServer = GrizzlyHttpServerFactory.createHttpServer(endPointUrl, resourceConfig, false);
+
+        //workers only parse requests and hand them to the DB executor, so a small pool keeps accepting while the DB is saturated
+        for (NetworkListener listener : httpServer.getListeners()) {
+            TCPNIOTransport transport = listener.getTransport();
+            transport.setSelectorRunnersCount(SELECTOR_THREADS);
+            transport.setWorkerThreadPoolConfig(ThreadPoolConfig.defaultConfig()
+                    .setPoolName("http-worker")
+                    .setCorePoolSize(WORKER_THREADS)
+                    .setMaxPoolSize(WORKER_THREADS)
+                    .setQueueLimit(WORKER_QUEUE_LIMIT));
+        }
+
+        try {
+            httpServer.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start HTTP server for URL '" + url + "'!", e);
+        }
     }
 
     void stop(){
@@ -0,0 +1,34 @@
+package ev.demo.revolut.application.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.Instant;
+
+//the same epochSecond and nano fields the bean serializer wrote, without its reflective getter calls;
+//the bean serializer took the field order from reflection, which differs between JDKs, so the order is fixed here
+class InstantSerializer extends StdSerializer<Instant> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final SerializableString EPOCH_SECOND = new SerializedString("epochSecond");
+    private static final SerializableString NANO = new SerializedString("nano");
+
+    InstantSerializer() {
+        super(Instant.class);
+    }
+
+    @Override
+    public void serialize(Instant value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(EPOCH_SECOND);
+        generator.writeNumber(value.getEpochSecond());
+        generator.writeFieldName(NANO);
+        generator.writeNumber(value.getNano());
+        generator.writeEndObject();
+    }
+}
@@ -0,0 +1,57 @@
+package ev.demo.revolut.application.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import ev.demo.revolut.model.account.entity.Account;
+import ev.demo.revolut.model.account.entity.AccountCreationInput;
+import ev.demo.revolut.model.transaction.entity.Payout;
+import ev.demo.revolut.model.transaction.entity.Transaction;
+import ev.demo.revolut.model.transaction.entity.TransactionCreationInput;
+import ev.demo.revolut.model.transaction.entity.TransactionPage;
+
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Provider;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+//one mapper for Jersey, the streamed lists and the event streams, so every type is introspected once per process
+@Provider
+public class ObjectMapperProvider implements ContextResolver<ObjectMapper> {
+
+    private static final List<Class<?>> RESPONSE_TYPES = Arrays.asList(Account.class, Transaction.class, TransactionPage.class, Payout.class);
+    private static final List<Class<?>> REQUEST_TYPES = Arrays.asList(AccountCreationInput.class, TransactionCreationInput.class);
+
+    private static final ObjectMapper objectMapper = createObjectMapper(new JsonFactory());
+    //Smile is the binary form of the same data model, it gets the same modules and warmed up types as the JSON mapper
+    private static final ObjectMapper smileObjectMapper = createObjectMapper(new SmileFactory());
+
+    public static ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    public static ObjectMapper getSmileObjectMapper() {
+        return smileObjectMapper;
+    }
+
+    @Override
+    public ObjectMapper getContext(Class<?> type) {
+        return objectMapper;
+    }
+
+    private static ObjectMapper createObjectMapper(JsonFactory factory) {
+        ObjectMapper mapper = new ObjectMapper(factory);
+        mapper.registerModule(new SimpleModule("revolut").addSerializer(Instant.class, new InstantSerializer()));
+        //generated accessors replace the reflective getter and setter calls of the bean (de)serializers
+        mapper.registerModule(new AfterburnerModule());
+
+        //builds and caches the (de)serializers of the API types at startup instead of on the first requests
+        RESPONSE_TYPES.forEach(mapper::writerFor);
+        REQUEST_TYPES.forEach(mapper::reader);
+
+        return mapper;
+    }
+}
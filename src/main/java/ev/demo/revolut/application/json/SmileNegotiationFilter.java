@@ -0,0 +1,31 @@
+package ev.demo.revolut.application.json;
+
+import com.fasterxml.jackson.jaxrs.smile.SmileMediaTypes;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+
+//Jersey prefers the Smile writer for a wildcard Accept, Smile is kept only for a client asking for it by name
+@Priority(Priorities.HEADER_DECORATOR)
+public class SmileNegotiationFilter implements ContainerResponseFilter {
+
+    private static final MediaType SMILE_MEDIA_TYPE = MediaType.valueOf(SmileMediaTypes.APPLICATION_JACKSON_SMILE);
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        MediaType mediaType = responseContext.getMediaType();
+        if (mediaType != null && SMILE_MEDIA_TYPE.isCompatible(mediaType) && !acceptsSmile(requestContext)) {
+            responseContext.getHeaders().putSingle(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_TYPE);
+        }
+    }
+
+    private boolean acceptsSmile(ContainerRequestContext requestContext) {
+        return requestContext.getAcceptableMediaTypes().stream()
+                .anyMatch(acceptedType -> !acceptedType.isWildcardType() && !acceptedType.isWildcardSubtype() && SMILE_MEDIA_TYPE.isCompatible(acceptedType));
+    }
+}
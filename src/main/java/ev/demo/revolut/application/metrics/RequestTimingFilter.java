@@ -0,0 +1,73 @@
+package ev.demo.revolut.application.metrics;
+
+import ev.demo.revolut.db.DataBaseTimer;
+import ev.demo.revolut.metrics.RequestMetrics;
+import org.glassfish.jersey.server.ExtendedUriInfo;
+import org.glassfish.jersey.uri.UriTemplate;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+//pre-matching, so the time includes routing and the requests rejected by admission control;
+//the response is measured once the status and headers are ready, streamed bodies are written after that
+@PreMatching
+@Priority(Priorities.AUTHENTICATION - 200)
+public class RequestTimingFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String START_PROPERTY = RequestTimingFilter.class.getName() + ".start";
+    private static final String DATABASE_TIME_PROPERTY = RequestTimingFilter.class.getName() + ".dataBaseTime";
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        requestContext.setProperty(START_PROPERTY, System.nanoTime());
+
+        //replaces whatever the previous request left on this worker thread
+        LongAdder dataBaseTime = DataBaseTimer.startRequest();
+        if (dataBaseTime != null) {
+            requestContext.setProperty(DATABASE_TIME_PROPERTY, dataBaseTime);
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object start = requestContext.getProperty(START_PROPERTY);
+        if (!(start instanceof Long)) {
+            return;
+        }
+
+        long latencyNanos = System.nanoTime() - (Long) start;
+        Object dataBaseTime = requestContext.getProperty(DATABASE_TIME_PROPERTY);
+        long dataBaseNanos = dataBaseTime instanceof LongAdder ? ((LongAdder) dataBaseTime).sum() : -1;
+
+        RequestMetrics.record(getEndpoint(requestContext), responseContext.getStatus(), latencyNanos, dataBaseNanos);
+    }
+
+    private static String getEndpoint(ContainerRequestContext requestContext) {
+        List<UriTemplate> templates = ((ExtendedUriInfo) requestContext.getUriInfo()).getMatchedTemplates();
+        if (templates.isEmpty()) {
+            return requestContext.getMethod() + " unmatched";
+        }
+
+        //templates are listed from the resource method up to the resource class
+        StringBuilder endpoint = new StringBuilder(requestContext.getMethod()).append(' ');
+        for (int i = templates.size() - 1; i >= 0; i--) {
+            String template = templates.get(i).getTemplate();
+            if (template.isEmpty() || template.equals("/")) {
+                continue;
+            }
+            if (!template.startsWith("/")) {
+                endpoint.append('/');
+            }
+            endpoint.append(template);
+        }
+
+        return endpoint.toString();
+    }
+}
@@ -0,0 +1,107 @@
+package ev.demo.revolut.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+public class BoundedCache<K, V> {
+
+    private final int maxSize;
+    private final long timeToLiveMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<K, CacheEntry<V>> entries;
+
+    public BoundedCache(int maxSize, long timeToLiveMillis) {
+        this(maxSize, timeToLiveMillis, System::currentTimeMillis);
+    }
+
+    BoundedCache(int maxSize, long timeToLiveMillis, LongSupplier clock) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive!");
+        }
+
+        this.maxSize = maxSize;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.clock = clock;
+
+        //access order, so the least recently used entry is evicted first
+        this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                return size() > BoundedCache.this.maxSize;
+            }
+        };
+    }
+
+    public synchronized Optional<V> get(K key) {
+        return get(key, timeToLiveMillis);
+    }
+
+    public synchronized Optional<V> get(K key, long maxAgeMillis) {
+        CacheEntry<V> entry = entries.get(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+
+        long age = clock.getAsLong() - entry.createdAt;
+        if (age >= timeToLiveMillis) {
+            entries.remove(key);
+            return Optional.empty();
+        }
+        if (age > maxAgeMillis) {
+            return Optional.empty();
+        }
+
+        return Optional.of(entry.value);
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, new CacheEntry<>(value, clock.getAsLong()));
+    }
+
+    //the condition is checked under the cache lock, so an invalidation cannot land between the check and the put
+    public synchronized boolean putIf(K key, V value, BooleanSupplier condition) {
+        if (!condition.getAsBoolean()) {
+            return false;
+        }
+
+        put(key, value);
+        return true;
+    }
+
+    public synchronized V computeIfAbsent(K key, Function<K, V> valueFunction) {
+        Optional<V> value = get(key);
+        if (value.isPresent()) {
+            return value.get();
+        }
+
+        V newValue = valueFunction.apply(key);
+        put(key, newValue);
+        return newValue;
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static class CacheEntry<V> {
+        private final V value;
+        private final long createdAt;
+
+        private CacheEntry(V value, long createdAt) {
+            this.value = value;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package ev.demo.revolut.db;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public class DataBaseExecutor {
+
+    private static Logger logger = Logger.getLogger(DataBaseExecutor.class);
+
+    private static final int THREADS = Integer.getInteger("revolut.db.executorThreads", 16);
+    private static final int QUEUE_SIZE = Integer.getInteger("revolut.db.executorQueueSize", 1000);
+
+    private static final int STREAMING_THREADS = Integer.getInteger("revolut.db.streamingThreads", 4);
+
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+    private static final AtomicInteger streamingThreadNumber = new AtomicInteger();
+
+    //blocking JDBC runs here instead of on the HTTP workers; a full queue rejects new calls instead of growing without limit
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_SIZE), runnable -> {
+                Thread thread = new Thread(runnable, "db-executor-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    //a streamed response keeps its thread and connection until the client has read the last row, so streams get their own pool;
+    //it has no queue, a stream over the limit is rejected at once instead of waiting for a slow client
+    private static final ThreadPoolExecutor streamingExecutor = new ThreadPoolExecutor(STREAMING_THREADS, STREAMING_THREADS, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "db-streaming-" + streamingThreadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private DataBaseExecutor() {
+
+    }
+
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        return supplyAsync(supplier, executor);
+    }
+
+    public static CompletableFuture<Void> runAsync(Runnable runnable) {
+        return supplyAsync(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    public static CompletableFuture<Void> runStreamingAsync(Runnable runnable) {
+        return supplyAsync(() -> {
+            runnable.run();
+            return null;
+        }, streamingExecutor);
+    }
+
+    private static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        try {
+            LongAdder requestDataBaseTime = DataBaseTimer.current();
+            if (requestDataBaseTime == null) {
+                return CompletableFuture.supplyAsync(supplier, executor);
+            }
+
+            return CompletableFuture.supplyAsync(() -> {
+                DataBaseTimer.attach(requestDataBaseTime);
+                try {
+                    return supplier.get();
+                } finally {
+                    DataBaseTimer.attach(null);
+                }
+            }, executor);
+
+        } catch (RejectedExecutionException e) {
+            //the caller gets the rejection like any other DB failure instead of an exception on its own thread
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    public static void stop() {
+        executor.shutdown();
+        streamingExecutor.shutdown();
+        logger.info("DataBase executor stopped");
+    }
+}
@@ -0,0 +1,64 @@
+package ev.demo.revolut.db;
+
+import java.util.concurrent.atomic.LongAdder;
+
+//sums the time a request spends in DB connections, the timer follows the request onto the DB executor threads
+public class DataBaseTimer {
+
+    private static final boolean ENABLED = Boolean.getBoolean("revolut.metrics.dataBaseTime");
+
+    private static final ThreadLocal<LongAdder> requestTime = new ThreadLocal<>();
+    //nested connections of one thread are counted once, by the outermost one
+    private static final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+
+    private DataBaseTimer() {
+
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public static LongAdder startRequest() {
+        if (!ENABLED) {
+            return null;
+        }
+
+        LongAdder time = new LongAdder();
+        requestTime.set(time);
+        return time;
+    }
+
+    static LongAdder current() {
+        return requestTime.get();
+    }
+
+    static void attach(LongAdder time) {
+        if (time == null) {
+            requestTime.remove();
+        } else {
+            requestTime.set(time);
+        }
+    }
+
+    public static long enter() {
+        if (requestTime.get() == null) {
+            return 0;
+        }
+
+        return depth.get()[0]++ == 0 ? System.nanoTime() : 0;
+    }
+
+    public static void exit(long startNanos) {
+        LongAdder time = requestTime.get();
+        if (time == null) {
+            return;
+        }
+
+        int[] currentDepth = depth.get();
+        currentDepth[0] = Math.max(0, currentDepth[0] - 1);
+        if (startNanos != 0) {
+            time.add(System.nanoTime() - startNanos);
+        }
+    }
+}
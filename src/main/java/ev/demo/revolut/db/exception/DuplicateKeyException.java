@@ -0,0 +1,10 @@
+package ev.demo.revolut.db.exception;
+
+public class DuplicateKeyException extends DataBaseRuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DuplicateKeyException(Throwable cause) {
+        super(cause);
+    }
+}
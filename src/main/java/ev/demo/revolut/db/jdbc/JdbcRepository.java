@@ -1,20 +1,40 @@
 package ev.demo.revolut.db.jdbc;
 
+import ev.demo.revolut.db.DataBaseTimer;
 import ev.demo.revolut.db.jdbc.h2.H2DataBaseProvider;
 import ev.demo.revolut.db.exception.DataBaseRuntimeException;
+import ev.demo.revolut.db.exception.DuplicateKeyException;
+import ev.demo.revolut.logging.Log;
+import ev.demo.revolut.metrics.DataBaseMetrics;
+import ev.demo.revolut.tracing.Tracing;
 import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.dbutils.handlers.ColumnListHandler;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 
 public abstract class JdbcRepository<T> {
     private static Logger logger = Logger.getLogger(JdbcRepository.class);
-    
+
+    private static final String UNIQUE_VIOLATION_SQL_STATE = "23505";
+
+    //0 means no timeout; locking reads wait for other transactions, streamed scans last as long as their consumer
+    private static final int QUERY_TIMEOUT_SECONDS = Integer.getInteger("revolut.db.queryTimeoutSeconds", 30);
+    private static final int LOCK_QUERY_TIMEOUT_SECONDS = Integer.getInteger("revolut.db.lockQueryTimeoutSeconds", 10);
+    private static final int SCAN_QUERY_TIMEOUT_SECONDS = Integer.getInteger("revolut.db.scanQueryTimeoutSeconds", 60);
+    private static final long SLOW_QUERY_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("revolut.db.slowQueryMillis", 200));
+
+    private static final QueryRunner queryRunner = new TimeoutQueryRunner(QUERY_TIMEOUT_SECONDS, LOCK_QUERY_TIMEOUT_SECONDS);
+    private static final QueryRunner scanQueryRunner = new TimeoutQueryRunner(SCAN_QUERY_TIMEOUT_SECONDS, SCAN_QUERY_TIMEOUT_SECONDS);
+
     private H2DataBaseProvider dataBaseProvider = new H2DataBaseProvider();
 
     protected abstract Class<T> getEntityClass();
@@ -23,17 +43,21 @@ public abstract class JdbcRepository<T> {
     protected abstract List<DataBaseField<T>> getAllFields();
 
     protected <F> F runInNewConnection(Function<Connection, F> function) {
-        try(Connection connection = dataBaseProvider.getConnection()) {
+        long startNanos = DataBaseTimer.enter();
+        try(Connection connection = getConnection()) {
 
             return function.apply(connection);
 
         } catch (SQLException e) {
             throw new DataBaseRuntimeException(e);
+        } finally {
+            DataBaseTimer.exit(startNanos);
         }
     }
 
     protected <F> F runInNewTransaction(Function<Connection, F> function) {
-        try (Connection connection = dataBaseProvider.getConnection()) {
+        long startNanos = DataBaseTimer.enter();
+        try (Connection connection = getConnection()) {
             connection.setAutoCommit(false);
 
             try{
@@ -47,11 +71,14 @@ public abstract class JdbcRepository<T> {
             }
         } catch (SQLException e) {
             throw new DataBaseRuntimeException(e);
+        } finally {
+            DataBaseTimer.exit(startNanos);
         }
     }
 
     public void runInNewTransaction(Consumer<Connection> consumer) {
-        try (Connection connection = dataBaseProvider.getConnection()) {
+        long startNanos = DataBaseTimer.enter();
+        try (Connection connection = getConnection()) {
             connection.setAutoCommit(false);
 
             try{
@@ -64,9 +91,21 @@ public abstract class JdbcRepository<T> {
             }
         } catch (SQLException e) {
             throw new DataBaseRuntimeException(e);
+        } finally {
+            DataBaseTimer.exit(startNanos);
         }
     }
 
+    private Connection getConnection() {
+        Tracing.ConnectionTrace trace = Tracing.startConnectionAcquisition();
+        long startNanos = System.nanoTime();
+        Connection connection = dataBaseProvider.getConnection();
+        DataBaseMetrics.recordConnectionWait(System.nanoTime() - startNanos);
+        trace.finish();
+
+        return connection;
+    }
+
     protected List<T> selectAll(Connection connection) {
         return selectList(connection, "SELECT * FROM " + getTableName());
     }
@@ -76,13 +115,42 @@ public abstract class JdbcRepository<T> {
         return selectList(connection, sqlQuery, getParameters(whereItems));
     }
 
-    private List<T> selectList(Connection connection, String sqlQuery, Object... parameters) {
-        logger.debug("Execute sqlQuery '" + sqlQuery + "' with parameters '" + listToString(parameters) + "'");
+    protected List<T> selectList(Connection connection, String sqlQuery, Object... parameters) {
+        Log.debug(logger, "Execute sqlQuery '{}' with parameters '{}'", sqlQuery, parameters);
+
+        try {
+            return execute(sqlQuery, parameters, List::size,
+                    () -> queryRunner.query(connection, sqlQuery, new ResultSetListHandler<>(getAllFields(), getEntityClass()), parameters));
+
+        } catch (SQLException e) {
+            logger.error("Failed to execute sqlQuery '" + sqlQuery + "' with parameters '" + listToString(parameters) + "'!", e);
+            throw new DataBaseRuntimeException(e);
+        }
+    }
+
+    protected int selectEach(Connection connection, String sqlQuery, Consumer<T> rowConsumer, Object... parameters) {
+        return selectEach(connection, sqlQuery, getAllFields(), rowConsumer, parameters);
+    }
+
+    protected int selectEach(Connection connection, String sqlQuery, List<DataBaseField<T>> fields, Consumer<T> rowConsumer, Object... parameters) {
+        Log.debug(logger, "Execute streamed sqlQuery '{}' with parameters '{}'", sqlQuery, parameters);
+
+        try {
+            return execute(sqlQuery, parameters, Integer::longValue,
+                    () -> scanQueryRunner.query(connection, sqlQuery, new ResultSetStreamHandler<>(fields, getEntityClass(), rowConsumer), parameters));
+
+        } catch (SQLException e) {
+            logger.error("Failed to execute sqlQuery '" + sqlQuery + "' with parameters '" + listToString(parameters) + "'!", e);
+            throw new DataBaseRuntimeException(e);
+        }
+    }
 
-        QueryRunner queryRunner = new QueryRunner();
+    protected <R> R query(Connection connection, String sqlQuery, ResultSetHandler<R> resultSetHandler, Object... parameters) {
+        Log.debug(logger, "Execute sqlQuery '{}' with parameters '{}'", sqlQuery, parameters);
 
         try {
-            return queryRunner.query(connection, sqlQuery,  new ResultSetListHandler<>(getAllFields(), getEntityClass()), parameters);
+            return execute(sqlQuery, parameters, result -> result instanceof Collection ? ((Collection) result).size() : -1,
+                    () -> queryRunner.query(connection, sqlQuery, resultSetHandler, parameters));
 
         } catch (SQLException e) {
             logger.error("Failed to execute sqlQuery '" + sqlQuery + "' with parameters '" + listToString(parameters) + "'!", e);
@@ -90,6 +158,11 @@ public abstract class JdbcRepository<T> {
         }
     }
 
+    protected List<Object> selectIds(Connection connection, WhereItem... whereItems) {
+        String sqlQuery = "SELECT " + getIdField().getDbFieldName() + " FROM " + getTableName() + generateWhere(whereItems);
+        return query(connection, sqlQuery, new ColumnListHandler<>(1), getParameters(whereItems));
+    }
+
     protected T selectById(Connection connection, Object id) {
         return selectOne(connection, "SELECT * FROM " + getTableName() + " WHERE id = ?", id);
     }
@@ -99,12 +172,11 @@ public abstract class JdbcRepository<T> {
     }
 
     private T selectOne(Connection connection, String sqlQuery, Object... parameters) {
-        logger.debug("Execute sqlQuery '" + sqlQuery + "' with parameters '" + listToString(parameters) + "'");
-
-        QueryRunner queryRunner = new QueryRunner();
+        Log.debug(logger, "Execute sqlQuery '{}' with parameters '{}'", sqlQuery, parameters);
 
         try {
-            return queryRunner.query(connection, sqlQuery, new ResultSetOneHandler<>(getAllFields(), getEntityClass()), parameters);
+            return execute(sqlQuery, parameters, entity -> entity == null ? 0 : 1,
+                    () -> queryRunner.query(connection, sqlQuery, new ResultSetOneHandler<>(getAllFields(), getEntityClass()), parameters));
 
         } catch (SQLException e) {
             logger.error("Failed to execute sqlQuery '" + sqlQuery + "' with parameters '" + listToString(parameters) + "'!", e);
@@ -127,6 +199,31 @@ public abstract class JdbcRepository<T> {
         return selectById(connection, newId);
     }
 
+    protected List<T> insertBatch(Connection connection, List<T> entities) {
+        if (entities.isEmpty()) {
+            return entities;
+        }
+
+        List<String> fieldNames = getNoIdFieldsNames();
+        fieldNames.add(getIdField().getDbFieldName());
+
+        Object[][] parameters = new Object[entities.size()][];
+        for (int i = 0; i < entities.size(); i++) {
+            T entity = entities.get(i);
+            getIdField().getValueToEntity().accept(UUID.randomUUID().toString(), entity);
+
+            List<Object> entityParameters = getNoIdFieldsValues(entity);
+            entityParameters.add(getIdField().getValueFromEntity().apply(entity));
+            parameters[i] = entityParameters.toArray();
+        }
+
+        String sqlQuery = "INSERT INTO " + getTableName() + " (" + listToString(fieldNames) + ") VALUES (" + getQuestionMarks(fieldNames.size()) + ")";
+
+        //one prepared statement for all rows, the inserted entities are not read back
+        batchUpdate(connection, sqlQuery, parameters);
+        return entities;
+    }
+
     protected T save(Connection connection, T entity) {
         Object id = getIdField().getValueFromEntity().apply(entity);
         List<Object> parameters = getNoIdFieldsValues(entity);
@@ -145,21 +242,68 @@ public abstract class JdbcRepository<T> {
         return update(connection, sqlQuery, id) == 1;
     }
 
-    private int update(Connection connection, String sqlQuery, Object... parameters) {
-        logger.debug("Execute sqlQuery '" + sqlQuery + "' with parameters '" + listToString(parameters) + "'");
+    protected int[] batchUpdate(Connection connection, String sqlQuery, Object[][] parameters) {
+        Log.debug(logger, "Execute batch sqlQuery '{}' for {} parameter sets", sqlQuery, parameters.length);
+
+        try {
+            return execute(sqlQuery, null, counts -> Arrays.stream(counts).filter(count -> count > 0).asLongStream().sum(),
+                    () -> queryRunner.batch(connection, sqlQuery, parameters));
+
+        } catch (SQLException e) {
+            if (UNIQUE_VIOLATION_SQL_STATE.equals(e.getSQLState())) {
+                Log.debug(logger, "Unique constraint violated by batch sqlQuery '{}'", sqlQuery);
+                throw new DuplicateKeyException(e);
+            }
+            logger.error("Failed to execute batch sqlQuery '" + sqlQuery + "' for " + parameters.length + " parameter sets!", e);
+            throw new DataBaseRuntimeException(e);
+        }
+    }
 
-        QueryRunner queryRunner = new QueryRunner();
+    protected int update(Connection connection, String sqlQuery, Object... parameters) {
+        Log.debug(logger, "Execute sqlQuery '{}' with parameters '{}'", sqlQuery, parameters);
 
         try {
-            return queryRunner.update(connection, sqlQuery, parameters);
+            return execute(sqlQuery, parameters, Integer::longValue, () -> queryRunner.update(connection, sqlQuery, parameters));
 
         } catch (SQLException e) {
+            if (UNIQUE_VIOLATION_SQL_STATE.equals(e.getSQLState())) {
+                Log.debug(logger, "Unique constraint violated by sqlQuery '{}'", sqlQuery);
+                throw new DuplicateKeyException(e);
+            }
             logger.error("Failed to execute sqlQuery '" + sqlQuery + "' with parameters '" + listToString(parameters) + "'!", e);
             throw new DataBaseRuntimeException(e);
         }
     }
 
 
+    private <R> R execute(String sqlQuery, Object[] parameters, ToLongFunction<R> rowCount, Statement<R> statement) throws SQLException {
+        Tracing.StatementTrace trace = Tracing.startStatement();
+        long startNanos = System.nanoTime();
+        R result = null;
+        boolean failed = true;
+        try {
+            result = statement.execute();
+            failed = false;
+            return result;
+
+        } finally {
+            long elapsedNanos = System.nanoTime() - startNanos;
+            long rows = failed ? -1 : rowCount.applyAsLong(result);
+            DataBaseMetrics.recordStatement(sqlQuery, elapsedNanos, rows, failed);
+            trace.finish(sqlQuery, rows, failed);
+
+            if (elapsedNanos >= SLOW_QUERY_NANOS) {
+                logger.warn("Slow sqlQuery '" + sqlQuery + "' took " + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + " ms" +
+                        (parameters == null ? "" : " with parameters '" + listToString(parameters) + "'"));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Statement<R> {
+        R execute() throws SQLException;
+    }
+
     private String generateWhere(WhereItem... whereItems) {
         if (whereItems == null || whereItems.length == 0) {
             return "";
@@ -0,0 +1,47 @@
+package ev.demo.revolut.db.jdbc;
+
+import org.apache.commons.dbutils.ResultSetHandler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+class ResultSetStreamHandler<T> implements ResultSetHandler<Integer> {
+    private List<DataBaseField<T>> dataBaseFields;
+    private Class<T> clazz;
+    private Consumer<T> rowConsumer;
+
+    ResultSetStreamHandler(List<DataBaseField<T>> dataBaseFields, Class<T> clazz, Consumer<T> rowConsumer) {
+        this.dataBaseFields = dataBaseFields;
+        this.clazz = clazz;
+        this.rowConsumer = rowConsumer;
+    }
+
+    @Override
+    public Integer handle(ResultSet resultSet) throws SQLException {
+        int rowCount = 0;
+
+        //every entity is handed over and dropped before the next row is read
+        while (resultSet.next()) {
+            rowConsumer.accept(handleOne(resultSet));
+            rowCount++;
+        }
+
+        return rowCount;
+    }
+
+    private T handleOne(ResultSet resultSet) throws SQLException {
+        T entity;
+        try {
+            entity = clazz.getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        for (DataBaseField<T> dataBaseField : dataBaseFields) {
+            dataBaseField.getValueToEntity().accept(resultSet.getObject(dataBaseField.getDbFieldName()), entity);
+        }
+        return entity;
+    }
+}
@@ -0,0 +1,30 @@
+package ev.demo.revolut.db.jdbc;
+
+import org.apache.commons.dbutils.QueryRunner;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+class TimeoutQueryRunner extends QueryRunner {
+
+    private final int timeoutSeconds;
+    private final int lockTimeoutSeconds;
+
+    TimeoutQueryRunner(int timeoutSeconds, int lockTimeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds;
+        this.lockTimeoutSeconds = lockTimeoutSeconds;
+    }
+
+    @Override
+    protected PreparedStatement prepareStatement(Connection connection, String sqlQuery) throws SQLException {
+        PreparedStatement statement = super.prepareStatement(connection, sqlQuery);
+
+        int timeout = sqlQuery.contains(" FOR UPDATE") ? lockTimeoutSeconds : timeoutSeconds;
+        if (timeout > 0) {
+            statement.setQueryTimeout(timeout);
+        }
+
+        return statement;
+    }
+}
@@ -35,25 +35,84 @@ public class H2DataBaseProvider {
                     "id VARCHAR(255) NOT NULL PRIMARY KEY," +
                     "name VARCHAR(255)," +
                     "ownerId VARCHAR(255) NOT NULL," +
-                    "amount DECIMAL(20, 2) NOT NULL," +
-                    "currency VARCHAR(3) NOT NULL" +
+                    "amount BIGINT NOT NULL," +
+                    "reserved BIGINT DEFAULT 0 NOT NULL," +
+                    "currency VARCHAR(3) NOT NULL," +
+                    "shardCount INT DEFAULT 0 NOT NULL" +
+                    "); ";
+
+            sqlQuery += "CREATE TABLE AccountShard (" +
+                    "accountId VARCHAR(255) NOT NULL," +
+                    "shard INT NOT NULL," +
+                    "amount BIGINT DEFAULT 0 NOT NULL," +
+                    "PRIMARY KEY (accountId, shard)," +
+                    "FOREIGN KEY (accountId) REFERENCES Account(id)" +
                     "); ";
 
             sqlQuery += "CREATE TABLE Transaction (" +
                     "id VARCHAR(255) NOT NULL PRIMARY KEY," +
                     "accountFrom VARCHAR(255) NOT NULL," +
                     "accountTo VARCHAR(255) NOT NULL," +
-                    "amount DECIMAL(20, 2) NOT NULL," +
+                    "amount BIGINT NOT NULL," +
                     "currency VARCHAR(3) NOT NULL," +
                     "status VARCHAR(255) NOT NULL," +
                     "error VARCHAR(1000)," +
                     "createdBy VARCHAR(255)," +
                     "createdAt TIMESTAMP NOT NULL," +
                     "expiredAt TIMESTAMP NOT NULL," +
+                    "idempotencyKey VARCHAR(255)," +
+                    "reservedAmount BIGINT," +
+                    "exchangeRateVersion BIGINT," +
+                    "exchangeRateFrom BIGINT," +
+                    "exchangeRateTo BIGINT," +
+                    "amountFrom BIGINT," +
+                    "amountTo BIGINT," +
+                    "payoutId VARCHAR(255)," +
                     "FOREIGN KEY (accountFrom) REFERENCES Account(id)," +
                     "FOREIGN KEY (accountTo) REFERENCES Account(id)" +
                     ");";
 
+            sqlQuery += "CREATE INDEX idx_account_owner_id ON Account(ownerId);";
+
+            sqlQuery += "CREATE TABLE LedgerEntry (" +
+                    "id VARCHAR(255) NOT NULL PRIMARY KEY," +
+                    "accountId VARCHAR(255) NOT NULL," +
+                    "transactionId VARCHAR(255)," +
+                    "amount BIGINT NOT NULL," +
+                    "createdAt TIMESTAMP NOT NULL," +
+                    "snapshotId VARCHAR(255)," +
+                    "FOREIGN KEY (accountId) REFERENCES Account(id)" +
+                    "); ";
+            sqlQuery += "CREATE INDEX idx_ledger_entry_account_snapshot ON LedgerEntry(accountId, snapshotId);";
+
+            sqlQuery += "CREATE TABLE BalanceSnapshot (" +
+                    "id VARCHAR(255) NOT NULL PRIMARY KEY," +
+                    "accountId VARCHAR(255) NOT NULL," +
+                    "amount BIGINT NOT NULL," +
+                    "createdAt TIMESTAMP NOT NULL," +
+                    "FOREIGN KEY (accountId) REFERENCES Account(id)" +
+                    "); ";
+            sqlQuery += "CREATE INDEX idx_balance_snapshot_account ON BalanceSnapshot(accountId, createdAt);";
+            sqlQuery += "CREATE UNIQUE INDEX idx_transaction_idempotency_key ON Transaction(idempotencyKey);";
+            sqlQuery += "CREATE INDEX idx_transaction_account_from_created ON Transaction(accountFrom, createdAt, id);";
+            sqlQuery += "CREATE INDEX idx_transaction_account_to_created ON Transaction(accountTo, createdAt, id);";
+
+            sqlQuery += "CREATE TABLE Payout (" +
+                    "id VARCHAR(255) NOT NULL PRIMARY KEY," +
+                    "accountFrom VARCHAR(255) NOT NULL," +
+                    "amount BIGINT NOT NULL," +
+                    "currency VARCHAR(3) NOT NULL," +
+                    "reservedAmount BIGINT NOT NULL," +
+                    "legCount INT NOT NULL," +
+                    "status VARCHAR(255) NOT NULL," +
+                    "error VARCHAR(1000)," +
+                    "createdBy VARCHAR(255)," +
+                    "createdAt TIMESTAMP NOT NULL," +
+                    "FOREIGN KEY (accountFrom) REFERENCES Account(id)" +
+                    "); ";
+            sqlQuery += "CREATE INDEX idx_payout_status ON Payout(status);";
+            sqlQuery += "CREATE INDEX idx_transaction_payout_status ON Transaction(payoutId, status, id);";
+
             queryRunner.update(connection, sqlQuery);
 
             logger.info("DB Schema created successfully!");
@@ -0,0 +1,110 @@
+package ev.demo.revolut.logging;
+
+import org.apache.log4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//debug messages with "{}" placeholders, formatted only if the level is enabled and the logger's sample takes the event
+public final class Log {
+
+    //"logger.name.prefix=N,..." writes every N-th debug event of the matching loggers, e.g. ev.demo.revolut.db.jdbc.JdbcRepository=100 for the SQL trace
+    private static final Map<String, Long> SAMPLE_RATES = parseSampleRates(System.getProperty("revolut.log.sampleRates", ""));
+
+    private static final Map<String, Sampler> samplers = new ConcurrentHashMap<>();
+
+    private Log() {
+
+    }
+
+    public static void debug(Logger logger, String pattern, Object arg) {
+        if (isDebugEnabled(logger)) {
+            logger.debug(format(pattern, arg));
+        }
+    }
+
+    public static void debug(Logger logger, String pattern, Object arg1, Object arg2) {
+        if (isDebugEnabled(logger)) {
+            logger.debug(format(pattern, arg1, arg2));
+        }
+    }
+
+    public static void debug(Logger logger, String pattern, Object arg1, Object arg2, Object arg3) {
+        if (isDebugEnabled(logger)) {
+            logger.debug(format(pattern, arg1, arg2, arg3));
+        }
+    }
+
+    private static boolean isDebugEnabled(Logger logger) {
+        if (!logger.isDebugEnabled()) {
+            return false;
+        }
+        if (SAMPLE_RATES.isEmpty()) {
+            return true;
+        }
+        return samplers.computeIfAbsent(logger.getName(), Log::newSampler).take();
+    }
+
+    static String format(String pattern, Object... args) {
+        StringBuilder message = new StringBuilder(pattern.length() + 32 * args.length);
+        int start = 0;
+        for (Object arg : args) {
+            int placeholder = pattern.indexOf("{}", start);
+            if (placeholder < 0) {
+                break;
+            }
+            message.append(pattern, start, placeholder);
+            appendArg(message, arg);
+            start = placeholder + 2;
+        }
+        return message.append(pattern, start, pattern.length()).toString();
+    }
+
+    private static void appendArg(StringBuilder message, Object arg) {
+        //arrays are rendered as their elements, like the SQL parameters
+        if (arg instanceof Object[]) {
+            Object[] values = (Object[]) arg;
+            for (int i = 0; i < values.length; i++) {
+                message.append(i == 0 ? "" : ", ").append(values[i]);
+            }
+        } else {
+            message.append(arg);
+        }
+    }
+
+    private static Sampler newSampler(String loggerName) {
+        //the longest configured prefix wins
+        String matchedPrefix = null;
+        for (String prefix : SAMPLE_RATES.keySet()) {
+            if (loggerName.startsWith(prefix) && (matchedPrefix == null || prefix.length() > matchedPrefix.length())) {
+                matchedPrefix = prefix;
+            }
+        }
+        return new Sampler(matchedPrefix == null ? 1 : SAMPLE_RATES.get(matchedPrefix));
+    }
+
+    static Map<String, Long> parseSampleRates(String sampleRates) {
+        Map<String, Long> rates = new ConcurrentHashMap<>();
+        for (String entry : sampleRates.split(",")) {
+            String[] prefixAndRate = entry.trim().split("=");
+            if (prefixAndRate.length == 2) {
+                rates.put(prefixAndRate[0].trim(), Math.max(1, Long.parseLong(prefixAndRate[1].trim())));
+            }
+        }
+        return rates;
+    }
+
+    private static class Sampler {
+        private final long rate;
+        private final AtomicLong counter = new AtomicLong();
+
+        private Sampler(long rate) {
+            this.rate = rate;
+        }
+
+        private boolean take() {
+            return rate == 1 || counter.getAndIncrement() % rate == 0;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ev.demo.revolut.logging;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.AsyncAppender;
+import org.apache.log4j.ConsoleAppender;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+
+public final class LogConfigurator {
+
+    private static final String LEVEL = System.getProperty("revolut.log.level", "INFO");
+    private static final boolean ASYNC = Boolean.parseBoolean(System.getProperty("revolut.log.async", "true"));
+    private static final int BUFFER_SIZE = Integer.getInteger("revolut.log.bufferSize", 8192);
+
+    private LogConfigurator() {
+
+    }
+
+    public static void configure() {
+        Logger rootLogger = Logger.getRootLogger();
+        rootLogger.removeAllAppenders();
+        rootLogger.setLevel(Level.toLevel(LEVEL, Level.INFO));
+
+        Appender consoleAppender = new ConsoleAppender(new PatternLayout(PatternLayout.TTCC_CONVERSION_PATTERN));
+        if (!ASYNC) {
+            rootLogger.addAppender(consoleAppender);
+            return;
+        }
+
+        //callers only enqueue, a full buffer drops events and reports how many were discarded instead of blocking the request
+        AsyncAppender asyncAppender = new AsyncAppender();
+        asyncAppender.setBufferSize(BUFFER_SIZE);
+        asyncAppender.setBlocking(false);
+        asyncAppender.setLocationInfo(false);
+        asyncAppender.addAppender(consoleAppender);
+        rootLogger.addAppender(asyncAppender);
+    }
+
+    public static void shutdown() {
+        //flushes the events still buffered by the async appender
+        LogManager.shutdown();
+    }
+}
@@ -0,0 +1,69 @@
+package ev.demo.revolut.metrics;
+
+import ev.demo.revolut.metrics.entity.DataBaseMetricsReport;
+
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+public class DataBaseMetrics {
+
+    private static final int MAX_STATEMENTS = Integer.getInteger("revolut.metrics.maxStatements", 500);
+    private static final String OTHER_STATEMENTS = "other";
+
+    //IN lists of different sizes are one statement template
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+
+    private static final LatencyHistogram connectionWait = new LatencyHistogram();
+    private static final ConcurrentHashMap<String, StatementMetrics> statements = new ConcurrentHashMap<>();
+    //the SQL text repeats, so it is normalized once per distinct text
+    private static final ConcurrentHashMap<String, StatementMetrics> statementsBySql = new ConcurrentHashMap<>();
+
+    private DataBaseMetrics() {
+
+    }
+
+    public static void recordConnectionWait(long waitNanos) {
+        connectionWait.record(waitNanos / 1000);
+    }
+
+    //a negative row count means the statement result has no row count
+    public static void recordStatement(String sqlQuery, long latencyNanos, long rowCount, boolean failed) {
+        StatementMetrics metrics = statementsBySql.get(sqlQuery);
+        if (metrics == null) {
+            metrics = getStatementMetrics(normalize(sqlQuery));
+            if (statementsBySql.size() < MAX_STATEMENTS * 4) {
+                statementsBySql.putIfAbsent(sqlQuery, metrics);
+            }
+        }
+
+        metrics.record(latencyNanos, rowCount, failed);
+    }
+
+    public static DataBaseMetricsReport getReport() {
+        DataBaseMetricsReport report = new DataBaseMetricsReport();
+        report.setConnectionWaitMillis(EndpointMetrics.toLatencyReport(connectionWait));
+        //the statements taking the most time in total come first
+        report.setStatements(statements.values().stream()
+                .sorted(Comparator.comparingLong(StatementMetrics::getTotalNanos).reversed())
+                .map(StatementMetrics::toReport)
+                .collect(Collectors.toList()));
+
+        return report;
+    }
+
+    static String normalize(String sqlQuery) {
+        return PARAMETER_LIST.matcher(sqlQuery).replaceAll("?, ...");
+    }
+
+    private static StatementMetrics getStatementMetrics(String statement) {
+        StatementMetrics metrics = statements.get(statement);
+        if (metrics != null) {
+            return metrics;
+        }
+
+        String key = statements.size() < MAX_STATEMENTS ? statement : OTHER_STATEMENTS;
+        return statements.computeIfAbsent(key, StatementMetrics::new);
+    }
+}
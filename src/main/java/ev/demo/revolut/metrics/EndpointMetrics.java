@@ -0,0 +1,68 @@
+package ev.demo.revolut.metrics;
+
+import ev.demo.revolut.metrics.entity.EndpointMetricsReport;
+import ev.demo.revolut.metrics.entity.LatencyReport;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+class EndpointMetrics {
+
+    private final String endpoint;
+    //microseconds
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram dataBaseTime = new LatencyHistogram();
+    //counts by status class, 1xx to 5xx
+    private final AtomicLongArray statuses = new AtomicLongArray(6);
+
+    EndpointMetrics(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    void record(int status, long latencyNanos, long dataBaseNanos) {
+        latency.record(latencyNanos / 1000);
+        if (dataBaseNanos >= 0) {
+            dataBaseTime.record(dataBaseNanos / 1000);
+        }
+        statuses.incrementAndGet(Math.min(5, Math.max(0, status / 100)));
+    }
+
+    EndpointMetricsReport toReport(double uptimeSeconds) {
+        EndpointMetricsReport report = new EndpointMetricsReport();
+        report.setEndpoint(endpoint);
+        report.setCount(latency.getCount());
+        report.setRatePerSecond(uptimeSeconds > 0 ? latency.getCount() / uptimeSeconds : 0);
+
+        Map<String, Long> statusCounts = new LinkedHashMap<>();
+        for (int statusClass = 1; statusClass < statuses.length(); statusClass++) {
+            long count = statuses.get(statusClass);
+            if (count > 0) {
+                statusCounts.put(statusClass + "xx", count);
+            }
+        }
+        report.setStatuses(statusCounts);
+
+        report.setLatencyMillis(toLatencyReport(latency));
+        if (dataBaseTime.getCount() > 0) {
+            report.setDataBaseMillis(toLatencyReport(dataBaseTime));
+        }
+
+        return report;
+    }
+
+    static LatencyReport toLatencyReport(LatencyHistogram histogram) {
+        LatencyReport report = new LatencyReport();
+        report.setP50(toMillis(histogram.getValueAtPercentile(50)));
+        report.setP99(toMillis(histogram.getValueAtPercentile(99)));
+        report.setP999(toMillis(histogram.getValueAtPercentile(99.9)));
+        report.setMax(toMillis(histogram.getMax()));
+        report.setMean(toMillis(histogram.getMean()));
+
+        return report;
+    }
+
+    private static double toMillis(double micros) {
+        return Math.round(micros) / 1000.0;
+    }
+}
@@ -0,0 +1,39 @@
+package ev.demo.revolut.metrics;
+
+import ev.demo.revolut.metrics.entity.ReconciliationMetricsReport;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class ReconciliationMetrics {
+
+    private static final LatencyHistogram duration = new LatencyHistogram();
+    private static final LongAdder failures = new LongAdder();
+    //runs never overlap, the figures of the last one are written by a single thread at a time
+    private static volatile long lastRowsChecked;
+    private static volatile long lastViolationCount;
+
+    private ReconciliationMetrics() {
+
+    }
+
+    public static void record(long durationNanos, long rowsChecked, long violationCount) {
+        duration.record(durationNanos / 1000);
+        lastRowsChecked = rowsChecked;
+        lastViolationCount = violationCount;
+    }
+
+    public static void recordFailure() {
+        failures.increment();
+    }
+
+    public static ReconciliationMetricsReport getReport() {
+        ReconciliationMetricsReport report = new ReconciliationMetricsReport();
+        report.setRuns(duration.getCount());
+        report.setFailures(failures.sum());
+        report.setDurationMillis(EndpointMetrics.toLatencyReport(duration));
+        report.setLastRowsChecked(lastRowsChecked);
+        report.setLastViolationCount(lastViolationCount);
+
+        return report;
+    }
+}
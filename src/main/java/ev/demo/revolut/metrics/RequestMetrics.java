@@ -0,0 +1,39 @@
+package ev.demo.revolut.metrics;
+
+import ev.demo.revolut.metrics.entity.EndpointMetricsReport;
+import ev.demo.revolut.metrics.entity.MetricsReport;
+
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+public class RequestMetrics {
+
+    //keyed by method and path template, so the number of endpoints is bounded by the routes
+    private static final ConcurrentHashMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    private RequestMetrics() {
+
+    }
+
+    //a negative DB time means it was not measured for the request
+    public static void record(String endpoint, int status, long latencyNanos, long dataBaseNanos) {
+        endpoints.computeIfAbsent(endpoint, EndpointMetrics::new).record(status, latencyNanos, dataBaseNanos);
+    }
+
+    public static MetricsReport getReport() {
+        double uptimeSeconds = ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0;
+
+        MetricsReport report = new MetricsReport();
+        report.setUptimeSeconds((long) uptimeSeconds);
+        report.setEndpoints(endpoints.values().stream()
+                .map(metrics -> metrics.toReport(uptimeSeconds))
+                .sorted(Comparator.comparing(EndpointMetricsReport::getEndpoint))
+                .collect(Collectors.toList()));
+        report.setDataBase(DataBaseMetrics.getReport());
+        report.setReconciliation(ReconciliationMetrics.getReport());
+
+        return report;
+    }
+}
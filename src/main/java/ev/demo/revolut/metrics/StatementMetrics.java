@@ -0,0 +1,46 @@
+package ev.demo.revolut.metrics;
+
+import ev.demo.revolut.metrics.entity.StatementMetricsReport;
+
+import java.util.concurrent.atomic.LongAdder;
+
+class StatementMetrics {
+
+    private final String statement;
+    //microseconds
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    StatementMetrics(String statement) {
+        this.statement = statement;
+    }
+
+    void record(long latencyNanos, long rowCount, boolean failed) {
+        latency.record(latencyNanos / 1000);
+        totalNanos.add(latencyNanos);
+        if (rowCount > 0) {
+            rows.add(rowCount);
+        }
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    StatementMetricsReport toReport() {
+        StatementMetricsReport report = new StatementMetricsReport();
+        report.setStatement(statement);
+        report.setCount(latency.getCount());
+        report.setErrors(errors.sum());
+        report.setRows(rows.sum());
+        report.setTotalMillis(getTotalNanos() / 1_000_000);
+        report.setLatencyMillis(EndpointMetrics.toLatencyReport(latency));
+
+        return report;
+    }
+}
@@ -0,0 +1,28 @@
+package ev.demo.revolut.metrics.entity;
+
+import java.util.List;
+
+public class DataBaseMetricsReport {
+    private LatencyReport connectionWaitMillis;
+    private List<StatementMetricsReport> statements;
+
+    public DataBaseMetricsReport() {
+
+    }
+
+    public LatencyReport getConnectionWaitMillis() {
+        return connectionWaitMillis;
+    }
+
+    public void setConnectionWaitMillis(LatencyReport connectionWaitMillis) {
+        this.connectionWaitMillis = connectionWaitMillis;
+    }
+
+    public List<StatementMetricsReport> getStatements() {
+        return statements;
+    }
+
+    public void setStatements(List<StatementMetricsReport> statements) {
+        this.statements = statements;
+    }
+}
@@ -0,0 +1,64 @@
+package ev.demo.revolut.metrics.entity;
+
+import java.util.Map;
+
+public class EndpointMetricsReport {
+    private String endpoint;
+    private long count;
+    private double ratePerSecond;
+    private Map<String, Long> statuses;
+    private LatencyReport latencyMillis;
+    private LatencyReport dataBaseMillis;
+
+    public EndpointMetricsReport() {
+
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public void setRatePerSecond(double ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    public Map<String, Long> getStatuses() {
+        return statuses;
+    }
+
+    public void setStatuses(Map<String, Long> statuses) {
+        this.statuses = statuses;
+    }
+
+    public LatencyReport getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    public void setLatencyMillis(LatencyReport latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public LatencyReport getDataBaseMillis() {
+        return dataBaseMillis;
+    }
+
+    public void setDataBaseMillis(LatencyReport dataBaseMillis) {
+        this.dataBaseMillis = dataBaseMillis;
+    }
+}
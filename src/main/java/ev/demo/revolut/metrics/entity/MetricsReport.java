@@ -0,0 +1,46 @@
+package ev.demo.revolut.metrics.entity;
+
+import java.util.List;
+
+public class MetricsReport {
+    private long uptimeSeconds;
+    private List<EndpointMetricsReport> endpoints;
+    private DataBaseMetricsReport dataBase;
+    private ReconciliationMetricsReport reconciliation;
+
+    public MetricsReport() {
+
+    }
+
+    public long getUptimeSeconds() {
+        return uptimeSeconds;
+    }
+
+    public void setUptimeSeconds(long uptimeSeconds) {
+        this.uptimeSeconds = uptimeSeconds;
+    }
+
+    public List<EndpointMetricsReport> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(List<EndpointMetricsReport> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    public DataBaseMetricsReport getDataBase() {
+        return dataBase;
+    }
+
+    public void setDataBase(DataBaseMetricsReport dataBase) {
+        this.dataBase = dataBase;
+    }
+
+    public ReconciliationMetricsReport getReconciliation() {
+        return reconciliation;
+    }
+
+    public void setReconciliation(ReconciliationMetricsReport reconciliation) {
+        this.reconciliation = reconciliation;
+    }
+}
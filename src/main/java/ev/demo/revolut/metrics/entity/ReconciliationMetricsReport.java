@@ -0,0 +1,53 @@
+package ev.demo.revolut.metrics.entity;
+
+public class ReconciliationMetricsReport {
+    private long runs;
+    private long failures;
+    private LatencyReport durationMillis;
+    private long lastRowsChecked;
+    private long lastViolationCount;
+
+    public ReconciliationMetricsReport() {
+
+    }
+
+    public long getRuns() {
+        return runs;
+    }
+
+    public void setRuns(long runs) {
+        this.runs = runs;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public void setFailures(long failures) {
+        this.failures = failures;
+    }
+
+    public LatencyReport getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(LatencyReport durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public long getLastRowsChecked() {
+        return lastRowsChecked;
+    }
+
+    public void setLastRowsChecked(long lastRowsChecked) {
+        this.lastRowsChecked = lastRowsChecked;
+    }
+
+    public long getLastViolationCount() {
+        return lastViolationCount;
+    }
+
+    public void setLastViolationCount(long lastViolationCount) {
+        this.lastViolationCount = lastViolationCount;
+    }
+}
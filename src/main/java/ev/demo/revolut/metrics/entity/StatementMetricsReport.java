@@ -0,0 +1,62 @@
+package ev.demo.revolut.metrics.entity;
+
+public class StatementMetricsReport {
+    private String statement;
+    private long count;
+    private long errors;
+    private long rows;
+    private long totalMillis;
+    private LatencyReport latencyMillis;
+
+    public StatementMetricsReport() {
+
+    }
+
+    public String getStatement() {
+        return statement;
+    }
+
+    public void setStatement(String statement) {
+        this.statement = statement;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public void setErrors(long errors) {
+        this.errors = errors;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public void setTotalMillis(long totalMillis) {
+        this.totalMillis = totalMillis;
+    }
+
+    public LatencyReport getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    public void setLatencyMillis(LatencyReport latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+}
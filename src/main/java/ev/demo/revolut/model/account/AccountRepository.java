@@ -1,30 +1,53 @@
 package ev.demo.revolut.model.account;
 
 import ev.demo.revolut.db.DataBaseRepository;
+import ev.demo.revolut.db.exception.EntityNotFoundException;
 import ev.demo.revolut.db.jdbc.DataBaseField;
 import ev.demo.revolut.db.jdbc.JdbcRepository;
+import ev.demo.revolut.db.jdbc.WhereItem;
+import ev.demo.revolut.model.ValidationException;
 import ev.demo.revolut.model.account.entity.Account;
 import jersey.repackaged.com.google.common.collect.Lists;
+import org.apache.commons.dbutils.handlers.ArrayListHandler;
+import org.apache.commons.dbutils.handlers.ColumnListHandler;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
 
-import java.math.BigDecimal;
 import java.sql.Connection;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class AccountRepository extends JdbcRepository<Account> implements DataBaseRepository<Account> {
 
     private static final String TABLE_NAME = "Account";
+    private static final String SHARD_TABLE_NAME = "AccountShard";
+    private static final String LEDGER_TABLE_NAME = "LedgerEntry";
+    private static final String SNAPSHOT_TABLE_NAME = "BalanceSnapshot";
 
     private static final DataBaseField<Account> ID = new DataBaseField<>("id", Account::getId, (dbValue, entity) -> entity.setId((String)dbValue), true);
     private static final DataBaseField<Account> NAME = new DataBaseField<>("name", Account::getName, (dbValue, entity) -> entity.setName((String)dbValue));
     private static final DataBaseField<Account> OWNER_ID = new DataBaseField<>("ownerId", Account::getOwnerId, (dbValue, entity) -> entity.setOwnerId((String)dbValue));
-    private static final DataBaseField<Account> AMOUNT = new DataBaseField<>("amount", Account::getAmount, (dbValue, entity) -> entity.setAmount((BigDecimal)dbValue));
+    private static final DataBaseField<Account> AMOUNT = new DataBaseField<>("amount", Account::getAmountMinorUnits, (dbValue, entity) -> entity.setAmountMinorUnits((Long)dbValue));
+    private static final DataBaseField<Account> RESERVED = new DataBaseField<>("reserved", Account::getReservedMinorUnits, (dbValue, entity) -> entity.setReservedMinorUnits((Long)dbValue));
     private static final DataBaseField<Account> CURRENCY = new DataBaseField<>("currency", Account::getCurrency, (dbValue, entity) -> entity.setCurrency((String)dbValue));
+    private static final DataBaseField<Account> SHARD_COUNT = new DataBaseField<>("shardCount", Account::getShardCount, (dbValue, entity) -> entity.setShardCount((Integer)dbValue));
 
     @SuppressWarnings("unchecked")
     private static List<DataBaseField<Account>> fields = Collections.unmodifiableList(Lists.newArrayList(
-            ID, NAME, OWNER_ID, AMOUNT, CURRENCY
+            ID, NAME, OWNER_ID, AMOUNT, RESERVED, CURRENCY, SHARD_COUNT
     ));
 
+    //computed columns of the streaming query, never written
+    private static final DataBaseField<Account> SHARDED_AMOUNT = new DataBaseField<>("shardedAmount", Account::getShardedMinorUnits, (dbValue, entity) -> entity.setShardedMinorUnits(((Number)dbValue).longValue()));
+    private static final DataBaseField<Account> PENDING_AMOUNT = new DataBaseField<>("pendingAmount", Account::getPendingMinorUnits, (dbValue, entity) -> entity.setPendingMinorUnits(((Number)dbValue).longValue()));
+
+    @SuppressWarnings("unchecked")
+    private static List<DataBaseField<Account>> streamedFields = Collections.unmodifiableList(Lists.newArrayList(
+            ID, NAME, OWNER_ID, AMOUNT, RESERVED, CURRENCY, SHARD_COUNT, SHARDED_AMOUNT, PENDING_AMOUNT
+    ));
+
+    private boolean ledgerEnabled = Boolean.getBoolean("revolut.ledger.enabled");
+
     @Override
     protected Class<Account> getEntityClass() {
         return Account.class;
@@ -48,7 +71,38 @@ public class AccountRepository extends JdbcRepository<Account> implements DataBa
 
     @Override
     public Optional<Account> find(String accountId){
-        return Optional.ofNullable(runInNewConnection((Connection connection) -> selectById(connection, accountId)));
+        return Optional.ofNullable(runInNewConnection((Connection connection) -> {
+            Account account = selectById(connection, accountId);
+            if (account != null) {
+                loadDerivedAmounts(connection, Collections.singletonList(account));
+            }
+            return account;
+        }));
+    }
+
+    List<Account> findByOwnerId(String ownerId) {
+        WhereItem whereItem = new WhereItem(OWNER_ID.getDbFieldName(), ownerId);
+        return runInNewConnection((Connection connection) -> loadDerivedAmounts(connection, selectList(connection, whereItem)));
+    }
+
+    List<Account> findByIds(Collection<String> accountIds) {
+        if (accountIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        WhereItem whereItem = new WhereItem(ID.getDbFieldName(), accountIds.toArray());
+        return runInNewConnection((Connection connection) -> loadDerivedAmounts(connection, selectList(connection, whereItem)));
+    }
+
+    Set<String> findExistingIds(Collection<String> accountIds) {
+        if (accountIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        WhereItem whereItem = new WhereItem(ID.getDbFieldName(), accountIds.toArray());
+        List<Object> existingIds = runInNewConnection((Connection connection) -> selectIds(connection, whereItem));
+
+        return existingIds.stream().map(String.class::cast).collect(Collectors.toSet());
     }
 
     Optional<Account> findForUpdate(Connection connection, String id) {
@@ -57,12 +111,27 @@ public class AccountRepository extends JdbcRepository<Account> implements DataBa
 
     @Override
     public List<Account> findAll(){
-        return runInNewConnection(this::selectAll);
+        return runInNewConnection((Connection connection) -> loadDerivedAmounts(connection, selectAll(connection)));
+    }
+
+    int forEach(Consumer<Account> rowConsumer) {
+        //the derived amounts come with every row, a second query per batch would need to hold the batch
+        String sqlQuery = "SELECT a.*," +
+                " COALESCE((SELECT SUM(s.amount) FROM " + SHARD_TABLE_NAME + " s WHERE s.accountId = a.id), 0) AS shardedAmount," +
+                (ledgerEnabled ? " COALESCE((SELECT SUM(l.amount) FROM " + LEDGER_TABLE_NAME + " l WHERE l.accountId = a.id AND l.snapshotId IS NULL), 0)" : " 0") + " AS pendingAmount" +
+                " FROM " + TABLE_NAME + " a";
+        return runInNewConnection((Connection connection) -> selectEach(connection, sqlQuery, streamedFields, rowConsumer));
     }
 
     @Override
     public Account insert(Account account) {
-        return runInNewTransaction((Connection connection) -> insert(connection, account));
+        return runInNewTransaction((Connection connection) -> {
+            Account insertedAccount = insert(connection, account);
+            for (int shard = 0; shard < insertedAccount.getShardCount(); shard++) {
+                update(connection, "INSERT INTO " + SHARD_TABLE_NAME + " (accountId, shard, amount) VALUES (?, ?, 0)", insertedAccount.getId(), shard);
+            }
+            return insertedAccount;
+        });
     }
 
     @Override
@@ -76,6 +145,78 @@ public class AccountRepository extends JdbcRepository<Account> implements DataBa
 
     @Override
     public boolean delete(String accountId) {
-        return runInNewTransaction((Connection connection) -> deleteById(connection, accountId));
+        return runInNewTransaction((Connection connection) -> {
+            //ledger entries and snapshots are the balance history of the account, so an account that has them is kept
+            if (hasLedgerHistory(connection, accountId)) {
+                throw new ValidationException("Account with ID '" + accountId + "' has ledger history and cannot be deleted.");
+            }
+
+            update(connection, "DELETE FROM " + SHARD_TABLE_NAME + " WHERE accountId = ?", accountId);
+            return deleteById(connection, accountId);
+        });
+    }
+
+    private boolean hasLedgerHistory(Connection connection, String accountId) {
+        String sqlQuery = "SELECT EXISTS(SELECT 1 FROM " + LEDGER_TABLE_NAME + " WHERE accountId = ?)" +
+                " OR EXISTS(SELECT 1 FROM " + SNAPSHOT_TABLE_NAME + " WHERE accountId = ?)";
+        return Boolean.TRUE.equals(query(connection, sqlQuery, new ScalarHandler<Boolean>(), accountId, accountId));
+    }
+
+    void addToShard(Connection connection, String accountId, int shard, long amountToAdd) {
+        //locks only the shard row, so concurrent credits to the same account rarely wait for each other
+        int updatedRows = update(connection, "UPDATE " + SHARD_TABLE_NAME + " SET amount = amount + ? WHERE accountId = ? AND shard = ?", amountToAdd, accountId, shard);
+        if (updatedRows != 1) {
+            throw new EntityNotFoundException("Shard " + shard + " of Account with ID '" + accountId + "' is not found!");
+        }
+    }
+
+    void addAmounts(Connection connection, SortedMap<String, Long> amountsToAdd) {
+        //relative updates in ID order, each row is locked by its own update without being read first
+        Object[][] parameters = amountsToAdd.entrySet().stream()
+                .map(entry -> new Object[] {entry.getValue(), entry.getKey()})
+                .toArray(Object[][]::new);
+        int[] updatedRows = batchUpdate(connection, "UPDATE " + TABLE_NAME + " SET amount = amount + ? WHERE id = ?", parameters);
+
+        for (int i = 0; i < updatedRows.length; i++) {
+            if (updatedRows[i] != 1) {
+                throw new EntityNotFoundException("Account with ID '" + parameters[i][1] + "' is not found!");
+            }
+        }
+    }
+
+    long takeShardedAmount(Connection connection, String accountId) {
+        List<Object> shardAmounts = query(connection, "SELECT amount FROM " + SHARD_TABLE_NAME + " WHERE accountId = ? ORDER BY shard FOR UPDATE",
+                new ColumnListHandler<>(1), accountId);
+        update(connection, "UPDATE " + SHARD_TABLE_NAME + " SET amount = 0 WHERE accountId = ?", accountId);
+
+        return shardAmounts.stream().mapToLong(amount -> (Long) amount).reduce(0, Math::addExact);
+    }
+
+    private List<Account> loadDerivedAmounts(Connection connection, List<Account> accounts) {
+        List<String> accountIds = accounts.stream()
+                .filter(account -> ledgerEnabled || account.getShardCount() > 0)
+                .map(Account::getId)
+                .collect(Collectors.toList());
+        if (accountIds.isEmpty()) {
+            return accounts;
+        }
+
+        //the row, its shards and pending ledger entries are read by one statement, so a concurrent consolidation or snapshot is neither missed nor counted twice
+        String sqlQuery = "SELECT a.id, a.amount," +
+                " COALESCE((SELECT SUM(s.amount) FROM " + SHARD_TABLE_NAME + " s WHERE s.accountId = a.id), 0)," +
+                " COALESCE((SELECT SUM(l.amount) FROM " + LEDGER_TABLE_NAME + " l WHERE l.accountId = a.id AND l.snapshotId IS NULL), 0)" +
+                " FROM " + TABLE_NAME + " a WHERE a.id IN (" + String.join(", ", Collections.nCopies(accountIds.size(), "?")) + ")";
+        Map<String, Object[]> amountsById = query(connection, sqlQuery, new ArrayListHandler(), accountIds.toArray()).stream()
+                .collect(Collectors.toMap(row -> (String) row[0], row -> row));
+
+        for (Account account : accounts) {
+            Object[] amounts = amountsById.get(account.getId());
+            if (amounts != null) {
+                account.setAmountMinorUnits(((Number) amounts[1]).longValue());
+                account.setShardedMinorUnits(((Number) amounts[2]).longValue());
+                account.setPendingMinorUnits(((Number) amounts[3]).longValue());
+            }
+        }
+        return accounts;
     }
 }
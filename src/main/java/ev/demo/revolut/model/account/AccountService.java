@@ -1,72 +1,437 @@
 package ev.demo.revolut.model.account;
 
+import ev.demo.revolut.cache.BoundedCache;
+import ev.demo.revolut.db.DataBaseExecutor;
 import ev.demo.revolut.db.exception.EntityNotFoundException;
 import ev.demo.revolut.model.ValidationException;
 import ev.demo.revolut.model.account.entity.Account;
 import ev.demo.revolut.model.account.entity.AccountCreationInput;
+import ev.demo.revolut.model.account.entity.AccountMetadata;
+import ev.demo.revolut.model.account.entity.AccountTransfer;
+import ev.demo.revolut.model.ledger.LedgerRepository;
+import ev.demo.revolut.model.ledger.entity.LedgerEntry;
+import ev.demo.revolut.model.money.Money;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
 
-import java.math.BigDecimal;
 import java.sql.Connection;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class AccountService {
 
+    private static Logger logger = Logger.getLogger(AccountService.class);
+
+    private static final int MAX_SHARD_COUNT = Integer.getInteger("revolut.accounts.maxShardCount", 64);
+
+    private static final int KNOWN_ACCOUNT_IDS_MAX_SIZE = Integer.getInteger("revolut.accounts.knownIdsMaxSize", 1000000);
+
+    //IDs of accounts confirmed to exist, kept current on create and delete so the existence check usually skips the DB
+    private static final Set<String> knownAccountIds = ConcurrentHashMap.newKeySet();
+
+    //a lookup racing with a delete must not remember the ID the delete has just dropped
+    private static final AtomicLong knownAccountIdsGeneration = new AtomicLong();
+
+    private static final int METADATA_CACHE_SIZE = Integer.getInteger("revolut.accounts.metadataCacheSize", 10000);
+    private static final long METADATA_CACHE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(Long.getLong("revolut.accounts.metadataCacheTtlMinutes", 60));
+
+    //name, owner and currency never change after creation, so they are served without reading the Account row
+    private static final BoundedCache<String, AccountMetadata> metadataCache = new BoundedCache<>(METADATA_CACHE_SIZE, METADATA_CACHE_TTL_MILLIS);
+
+    private static final int ACCOUNT_CACHE_SIZE = Integer.getInteger("revolut.accounts.cacheSize", 10000);
+    private static final long ACCOUNT_CACHE_TTL_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("revolut.accounts.cacheTtlSeconds", 60));
+
+    //balances change with transfers, so entries are invalidated after commit and every reader chooses the staleness it accepts
+    private static final BoundedCache<String, Account> accountCache = new BoundedCache<>(ACCOUNT_CACHE_SIZE, ACCOUNT_CACHE_TTL_MILLIS);
+
+    //a read racing with an invalidation must not put its already outdated result into the cache
+    private static final AtomicLong accountCacheGeneration = new AtomicLong();
+
+    private static final int OWNER_INDEX_SIZE = Integer.getInteger("revolut.accounts.ownerIndexSize", 10000);
+    private static final long OWNER_INDEX_TTL_MILLIS = TimeUnit.MINUTES.toMillis(Long.getLong("revolut.accounts.ownerIndexTtlMinutes", 60));
+
+    //ownerId -> account IDs, turns the owner lookup into a primary key lookup; the DB ownerId index is the fallback
+    private static final BoundedCache<String, Set<String>> ownerIndex = new BoundedCache<>(OWNER_INDEX_SIZE, OWNER_INDEX_TTL_MILLIS);
+    private static final AtomicLong ownerIndexGeneration = new AtomicLong();
+
+    private boolean ownerIndexEnabled = Boolean.getBoolean("revolut.accounts.ownerIndexEnabled");
+
+    //transfers append LedgerEntry rows instead of updating balances, LedgerSnapshotService materializes them into the Account rows
+    private boolean ledgerEnabled = Boolean.getBoolean("revolut.ledger.enabled");
+
     private AccountRepository accountRepository = new AccountRepository();
+    private LedgerRepository ledgerRepository = new LedgerRepository();
 
     public AccountService() {
 
     }
 
+    //the whole table is not cached, its size is not bounded; large reads stream it with forEachAccount
     public List<Account> getAllAccounts() {
         return accountRepository.findAll();
     }
 
+    public int forEachAccount(Consumer<Account> accountConsumer) {
+        return accountRepository.forEach(accountConsumer);
+    }
+
     public Account getAccountById(String accountId) {
-        return accountRepository.find(accountId)
+        return getAccountById(accountId, 0);
+    }
+
+    public Account getAccountById(String accountId, long maxAgeMillis) {
+        if (maxAgeMillis > 0) {
+            Optional<Account> cachedAccount = accountCache.get(accountId, maxAgeMillis);
+            if (cachedAccount.isPresent()) {
+                return cachedAccount.get();
+            }
+        }
+
+        long generation = accountCacheGeneration.get();
+        Account account = accountRepository.find(accountId)
                 .orElseThrow(() -> new EntityNotFoundException("Account with ID '" + accountId + "' is not found!"));
+
+        accountCache.putIf(accountId, account, () -> accountCacheGeneration.get() == generation);
+        return account;
+    }
+
+    public CompletableFuture<Account> getAccountByIdAsync(String accountId, long maxAgeMillis) {
+        return DataBaseExecutor.supplyAsync(() -> getAccountById(accountId, maxAgeMillis));
+    }
+
+    public void invalidateCachedAccounts(String... accountIds) {
+        accountCacheGeneration.incrementAndGet();
+        for (String accountId : accountIds) {
+            accountCache.invalidate(accountId);
+        }
+    }
+
+    public List<Account> getAccountsByOwnerId(String ownerId) {
+        if (!ownerIndexEnabled) {
+            return accountRepository.findByOwnerId(ownerId);
+        }
+
+        Optional<Set<String>> indexedAccountIds = ownerIndex.get(ownerId);
+        if (indexedAccountIds.isPresent()) {
+            //IDs of deleted accounts may still be indexed, they are simply not found
+            return accountRepository.findByIds(indexedAccountIds.get()).stream()
+                    .filter(account -> ownerId.equals(account.getOwnerId()))
+                    .collect(Collectors.toList());
+        }
+
+        long generation = ownerIndexGeneration.get();
+        List<Account> accounts = accountRepository.findByOwnerId(ownerId);
+
+        Set<String> accountIds = ConcurrentHashMap.newKeySet();
+        accounts.forEach(account -> accountIds.add(account.getId()));
+        ownerIndex.putIf(ownerId, accountIds, () -> ownerIndexGeneration.get() == generation);
+        return accounts;
+    }
+
+    public CompletableFuture<List<Account>> getAccountsByOwnerIdAsync(String ownerId) {
+        return DataBaseExecutor.supplyAsync(() -> getAccountsByOwnerId(ownerId));
     }
 
     public Optional<Account> findAccountById(String accountId) {
         return accountRepository.find(accountId);
     }
 
+    public AccountMetadata getAccountMetadata(String accountId) {
+        Optional<AccountMetadata> cachedMetadata = metadataCache.get(accountId);
+        if (cachedMetadata.isPresent()) {
+            return cachedMetadata.get();
+        }
+
+        AccountMetadata metadata = new AccountMetadata(getAccountById(accountId));
+        metadataCache.put(accountId, metadata);
+        return metadata;
+    }
+
+    public Map<String, AccountMetadata> getAccountMetadataByIds(Collection<String> accountIds) {
+        Map<String, AccountMetadata> metadataById = new HashMap<>();
+        Set<String> uncachedAccountIds = new HashSet<>();
+
+        for (String accountId : accountIds) {
+            Optional<AccountMetadata> cachedMetadata = metadataCache.get(accountId);
+            if (cachedMetadata.isPresent()) {
+                metadataById.put(accountId, cachedMetadata.get());
+            } else {
+                uncachedAccountIds.add(accountId);
+            }
+        }
+
+        //missing entries are loaded by one query, unknown IDs are simply absent from the result
+        for (Account account : accountRepository.findByIds(uncachedAccountIds)) {
+            AccountMetadata metadata = new AccountMetadata(account);
+            metadataCache.put(account.getId(), metadata);
+            metadataById.put(account.getId(), metadata);
+        }
+        return metadataById;
+    }
+
+    public Set<String> findExistingAccountIds(String... accountIds) {
+        Set<String> existingAccountIds = new HashSet<>();
+        Set<String> unknownAccountIds = new HashSet<>();
+
+        for (String accountId : accountIds) {
+            if (knownAccountIds.contains(accountId)) {
+                existingAccountIds.add(accountId);
+            } else {
+                unknownAccountIds.add(accountId);
+            }
+        }
+
+        if (!unknownAccountIds.isEmpty()) {
+            long generation = knownAccountIdsGeneration.get();
+            Set<String> foundAccountIds = accountRepository.findExistingIds(unknownAccountIds);
+            foundAccountIds.forEach(AccountService::rememberAccountId);
+            //a delete passed in between, the IDs are taken back and the next lookup asks the DB again
+            if (knownAccountIdsGeneration.get() != generation) {
+                knownAccountIds.removeAll(foundAccountIds);
+            }
+            existingAccountIds.addAll(foundAccountIds);
+        }
+
+        return existingAccountIds;
+    }
+
     public Account createAccount(AccountCreationInput creationInput) {
         validateCreationInput(creationInput);
 
         Account account = new Account();
         account.setName(creationInput.getName());
         account.setOwnerId(creationInput.getOwnerId());
-        account.setAmount(creationInput.getAmount());
+        account.setAmountMinorUnits(Money.toMinorUnits(creationInput.getAmount(), creationInput.getCurrency()));
         account.setCurrency(creationInput.getCurrency());
+        account.setShardCount(creationInput.getShardCount() != null ? creationInput.getShardCount() : 0);
+
+        Account createdAccount = accountRepository.insert(account);
+        rememberAccountId(createdAccount.getId());
+        invalidateCachedAccounts(createdAccount.getId());
+        metadataCache.put(createdAccount.getId(), new AccountMetadata(createdAccount));
 
-        return accountRepository.insert(account);
+        ownerIndexGeneration.incrementAndGet();
+        ownerIndex.get(createdAccount.getOwnerId()).ifPresent(accountIds -> accountIds.add(createdAccount.getId()));
+        return createdAccount;
+    }
+
+    public CompletableFuture<Account> createAccountAsync(AccountCreationInput creationInput) {
+        return DataBaseExecutor.supplyAsync(() -> createAccount(creationInput));
     }
 
     public void deleteAccountById(String accountId) {
+        Optional<AccountMetadata> cachedMetadata = metadataCache.get(accountId);
         boolean deleted = accountRepository.delete(accountId);
+        knownAccountIdsGeneration.incrementAndGet();
+        knownAccountIds.remove(accountId);
+        invalidateCachedAccounts(accountId);
+        metadataCache.invalidate(accountId);
+
+        //the owner index drops the ID only if the owner is known without another query, stale IDs are not found on lookup anyway
+        cachedMetadata.ifPresent(metadata -> ownerIndex.get(metadata.getOwnerId()).ifPresent(accountIds -> accountIds.remove(accountId)));
         if (!deleted) {
             throw new EntityNotFoundException("Account with ID '" + accountId + "' is not found!");
         }
     }
 
-    public void transferAmount(Connection connection, String accountFromId, String accountToId, BigDecimal amountToRemove, BigDecimal amountToAdd) {
-        Account accountFrom = accountRepository.findForUpdate(connection, accountFromId)
-                .orElseThrow(() -> new EntityNotFoundException("Account with ID '" + accountFromId + "' is not found!"));
+    public CompletableFuture<Void> deleteAccountByIdAsync(String accountId) {
+        return DataBaseExecutor.runAsync(() -> deleteAccountById(accountId));
+    }
 
-        Account accountTo = accountRepository.findForUpdate(connection, accountToId)
-                .orElseThrow(() -> new EntityNotFoundException("Account with ID '" + accountToId + "' is not found!"));
+    public void transferAmount(Connection connection, String transactionId, String accountFromId, String accountToId, long amountToRemove, long amountToAdd) {
+        Account accountFrom = lockAccount(connection, accountFromId);
+        Optional<Account> accountTo = lockAccountToCredit(connection, accountToId);
 
-        if (accountFrom.getAmount().compareTo(amountToRemove) < 0 ) {
-            throw new ValidationException("Amount of Account " + accountFrom.getId() + " cannot be reduced to '" + amountToRemove + "', current amount is '" + accountFrom.getAmount() + "'.");
+        consolidateShardsIfNeeded(connection, accountFrom, Money.add(accountFrom.getReservedMinorUnits(), amountToRemove));
+        if (getAvailableAmount(accountFrom) < amountToRemove) {
+            throw new ValidationException("Amount of Account " + accountFrom.getId() + " cannot be reduced to '" + Money.ofMinorUnits(amountToRemove, accountFrom.getCurrency())
+                    + "', available amount is '" + Money.ofMinorUnits(getAvailableAmount(accountFrom), accountFrom.getCurrency()) + "'.");
         }
 
-        accountFrom.setAmount(accountFrom.getAmount().subtract(amountToRemove));
-        accountTo.setAmount(accountTo.getAmount().add(amountToAdd));
+        debitAmount(connection, transactionId, accountFrom, amountToRemove);
+        creditAmount(connection, transactionId, accountToId, accountTo, amountToAdd);
+    }
+
+    public void reserveAmount(Connection connection, String accountId, long amountToReserve) {
+        Account account = lockAccount(connection, accountId);
 
+        consolidateShardsIfNeeded(connection, account, Money.add(account.getReservedMinorUnits(), amountToReserve));
+        if (getAvailableAmount(account) < amountToReserve) {
+            throw new ValidationException("Amount '" + Money.ofMinorUnits(amountToReserve, account.getCurrency()) + "' cannot be reserved on Account " + account.getId()
+                    + ", available amount is '" + Money.ofMinorUnits(getAvailableAmount(account), account.getCurrency()) + "'.");
+        }
+
+        account.setReservedMinorUnits(Money.add(account.getReservedMinorUnits(), amountToReserve));
+        accountRepository.update(connection, account);
+    }
+
+    public void releaseReservedAmount(Connection connection, String accountId, long reservedAmount) {
+        Account account = lockAccount(connection, accountId);
+
+        //releasing more than is held means a double release or drifted reservations, it is not clamped away
+        if (account.getReservedMinorUnits() < reservedAmount) {
+            logger.error("Release of '" + Money.ofMinorUnits(reservedAmount, account.getCurrency()) + "' exceeds the reserved amount '"
+                    + account.getReserved() + "' of Account " + account.getId() + "!");
+            throw new ValidationException("Reserved amount '" + Money.ofMinorUnits(reservedAmount, account.getCurrency()) + "' of Account " + account.getId()
+                    + " cannot be released, current reserved amount is '" + account.getReserved() + "'.");
+        }
+
+        account.setReservedMinorUnits(Money.subtract(account.getReservedMinorUnits(), reservedAmount));
+        accountRepository.update(connection, account);
+    }
+
+    public void transferReservedAmount(Connection connection, String transactionId, String accountFromId, String accountToId, long reservedAmount, long amountToAdd) {
+        Account accountFrom = lockAccount(connection, accountFromId);
+        Optional<Account> accountTo = lockAccountToCredit(connection, accountToId);
+
+        consolidateShardsIfNeeded(connection, accountFrom, reservedAmount);
+        if (accountFrom.getReservedMinorUnits() < reservedAmount || getBookedAmount(accountFrom) < reservedAmount) {
+            throw new ValidationException("Reserved amount '" + Money.ofMinorUnits(reservedAmount, accountFrom.getCurrency()) + "' of Account " + accountFrom.getId()
+                    + " is not found, current reserved amount is '" + accountFrom.getReserved() + "'.");
+        }
+
+        accountFrom.setReservedMinorUnits(Money.subtract(accountFrom.getReservedMinorUnits(), reservedAmount));
+        debitAmount(connection, transactionId, accountFrom, reservedAmount);
+        creditAmount(connection, transactionId, accountToId, accountTo, amountToAdd);
+    }
+
+    public void transferReservedAmounts(Connection connection, String accountFromId, List<AccountTransfer> transfers) {
+        Account accountFrom = lockAccount(connection, accountFromId);
+
+        long reservedAmount = transfers.stream().mapToLong(AccountTransfer::getAmountToRemove).reduce(0, Math::addExact);
+        consolidateShardsIfNeeded(connection, accountFrom, reservedAmount);
+        if (accountFrom.getReservedMinorUnits() < reservedAmount || getBookedAmount(accountFrom) < reservedAmount) {
+            throw new ValidationException("Reserved amount '" + Money.ofMinorUnits(reservedAmount, accountFrom.getCurrency()) + "' of Account " + accountFrom.getId()
+                    + " is not found, current reserved amount is '" + accountFrom.getReserved() + "'.");
+        }
+        accountFrom.setReservedMinorUnits(Money.subtract(accountFrom.getReservedMinorUnits(), reservedAmount));
+
+        if (ledgerEnabled) {
+            //two entries per transfer like a single transfer, written by one batch
+            List<LedgerEntry> entries = new ArrayList<>();
+            for (AccountTransfer transfer : transfers) {
+                entries.add(new LedgerEntry(accountFromId, transfer.getTransactionId(), -transfer.getAmountToRemove()));
+                entries.add(new LedgerEntry(transfer.getAccountTo(), transfer.getTransactionId(), transfer.getAmountToAdd()));
+            }
+            ledgerRepository.appendAll(connection, entries);
+            accountRepository.update(connection, accountFrom);
+            return;
+        }
+
+        accountFrom.setAmountMinorUnits(Money.subtract(accountFrom.getAmountMinorUnits(), reservedAmount));
         accountRepository.update(connection, accountFrom);
-        accountRepository.update(connection, accountTo);
+
+        //credits are summed per recipient, plain accounts get one batched update each and sharded ones a shard update
+        Map<String, AccountMetadata> recipients = getAccountMetadataByIds(transfers.stream().map(AccountTransfer::getAccountTo).collect(Collectors.toSet()));
+        SortedMap<String, Long> amountsToAdd = new TreeMap<>();
+        SortedMap<String, Long> shardedAmountsToAdd = new TreeMap<>();
+        for (AccountTransfer transfer : transfers) {
+            AccountMetadata recipient = recipients.get(transfer.getAccountTo());
+            if (recipient == null) {
+                throw new EntityNotFoundException("Account with ID '" + transfer.getAccountTo() + "' is not found!");
+            }
+            (recipient.getShardCount() > 0 ? shardedAmountsToAdd : amountsToAdd).merge(transfer.getAccountTo(), transfer.getAmountToAdd(), Money::add);
+        }
+
+        if (!amountsToAdd.isEmpty()) {
+            accountRepository.addAmounts(connection, amountsToAdd);
+        }
+        shardedAmountsToAdd.forEach((accountId, amountToAdd) -> accountRepository.addToShard(connection, accountId,
+                ThreadLocalRandom.current().nextInt(recipients.get(accountId).getShardCount()), amountToAdd));
+    }
+
+    public void snapshotLedgerBalance(String accountId) {
+        accountRepository.runInNewTransaction((Connection connection) -> {
+            Account account = lockAccount(connection, accountId);
+
+            String snapshotId = UUID.randomUUID().toString();
+            long snapshotAmount = ledgerRepository.markSnapshot(connection, accountId, snapshotId);
+            account.setAmountMinorUnits(Money.add(account.getAmountMinorUnits(), snapshotAmount));
+            accountRepository.update(connection, account);
+
+            ledgerRepository.insertSnapshot(connection, snapshotId, accountId, account.getAmountMinorUnits());
+        });
+    }
+
+    private Account lockAccount(Connection connection, String accountId) {
+        Account account = accountRepository.findForUpdate(connection, accountId)
+                .orElseThrow(() -> new EntityNotFoundException("Account with ID '" + accountId + "' is not found!"));
+
+        if (ledgerEnabled) {
+            //the row lock serializes debits, so entries appended meanwhile can only be credits
+            account.setPendingMinorUnits(ledgerRepository.getPendingAmount(connection, accountId));
+        }
+        return account;
+    }
+
+    private Optional<Account> lockAccountToCredit(Connection connection, String accountId) {
+        //credits to a sharded account lock one shard row instead of the Account row, ledger credits lock nothing at all
+        if (ledgerEnabled || getAccountMetadata(accountId).getShardCount() > 0) {
+            return Optional.empty();
+        }
+        return Optional.of(lockAccount(connection, accountId));
+    }
+
+    private void debitAmount(Connection connection, String transactionId, Account lockedAccount, long amountToRemove) {
+        if (ledgerEnabled) {
+            ledgerRepository.append(connection, lockedAccount.getId(), transactionId, -amountToRemove);
+        } else {
+            lockedAccount.setAmountMinorUnits(Money.subtract(lockedAccount.getAmountMinorUnits(), amountToRemove));
+        }
+        accountRepository.update(connection, lockedAccount);
+    }
+
+    private void creditAmount(Connection connection, String transactionId, String accountId, Optional<Account> lockedAccount, long amountToAdd) {
+        if (ledgerEnabled) {
+            ledgerRepository.append(connection, accountId, transactionId, amountToAdd);
+            return;
+        }
+
+        if (lockedAccount.isPresent()) {
+            Account account = lockedAccount.get();
+            account.setAmountMinorUnits(Money.add(account.getAmountMinorUnits(), amountToAdd));
+            accountRepository.update(connection, account);
+            return;
+        }
+
+        int shard = ThreadLocalRandom.current().nextInt(getAccountMetadata(accountId).getShardCount());
+        accountRepository.addToShard(connection, accountId, shard, amountToAdd);
+    }
+
+    private void consolidateShardsIfNeeded(Connection connection, Account lockedAccount, long requiredAmount) {
+        //debits and holds are served by the Account row, the shard balances are moved there only when the row alone is not enough
+        if (lockedAccount.getShardCount() > 0 && getBookedAmount(lockedAccount) < requiredAmount) {
+            long shardedAmount = accountRepository.takeShardedAmount(connection, lockedAccount.getId());
+            lockedAccount.setAmountMinorUnits(Money.add(lockedAccount.getAmountMinorUnits(), shardedAmount));
+        }
+    }
+
+    void setOwnerIndexEnabled(boolean ownerIndexEnabled) {
+        this.ownerIndexEnabled = ownerIndexEnabled;
+    }
+
+    void setLedgerEnabled(boolean ledgerEnabled) {
+        this.ledgerEnabled = ledgerEnabled;
+    }
+
+    private static void rememberAccountId(String accountId) {
+        if (knownAccountIds.size() < KNOWN_ACCOUNT_IDS_MAX_SIZE) {
+            knownAccountIds.add(accountId);
+        }
+    }
+
+    private long getAvailableAmount(Account account) {
+        return getBookedAmount(account) - account.getReservedMinorUnits();
+    }
+
+    private long getBookedAmount(Account account) {
+        return Money.add(account.getAmountMinorUnits(), account.getPendingMinorUnits());
     }
 
     private void validateCreationInput(AccountCreationInput creationInput) {
@@ -89,5 +454,9 @@ public class AccountService {
         if (creationInput.getAmount().signum() == -1) {
             throw new ValidationException("Amount cannot be negative!");
         }
+
+        if (creationInput.getShardCount() != null && (creationInput.getShardCount() < 0 || creationInput.getShardCount() > MAX_SHARD_COUNT)) {
+            throw new ValidationException("ShardCount must be between 0 and " + MAX_SHARD_COUNT + "!");
+        }
     }
 }
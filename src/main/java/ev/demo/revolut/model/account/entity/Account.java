@@ -1,5 +1,8 @@
 package ev.demo.revolut.model.account.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import ev.demo.revolut.model.money.Money;
+
 import java.math.BigDecimal;
 
 public class Account {
@@ -7,8 +10,12 @@ public class Account {
     private String id;
     private String name;
     private String ownerId;
-    private BigDecimal amount;
+    private long amountMinorUnits;
+    private long reservedMinorUnits;
     private String currency;
+    private int shardCount;
+    private long shardedMinorUnits;
+    private long pendingMinorUnits;
 
     public String getId() {
         return id;
@@ -35,11 +42,29 @@ public class Account {
     }
 
     public BigDecimal getAmount() {
-        return amount;
+        return Money.toBigDecimal(Money.add(Money.add(amountMinorUnits, shardedMinorUnits), pendingMinorUnits), currency);
+    }
+
+    @JsonIgnore
+    public long getAmountMinorUnits() {
+        return amountMinorUnits;
     }
 
-    public void setAmount(BigDecimal amount) {
-        this.amount = amount;
+    public void setAmountMinorUnits(long amountMinorUnits) {
+        this.amountMinorUnits = amountMinorUnits;
+    }
+
+    public BigDecimal getReserved() {
+        return Money.toBigDecimal(reservedMinorUnits, currency);
+    }
+
+    @JsonIgnore
+    public long getReservedMinorUnits() {
+        return reservedMinorUnits;
+    }
+
+    public void setReservedMinorUnits(long reservedMinorUnits) {
+        this.reservedMinorUnits = reservedMinorUnits;
     }
 
     public String getCurrency() {
@@ -49,4 +74,32 @@ public class Account {
     public void setCurrency(String currency) {
         this.currency = currency;
     }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    //sum of the AccountShard balances, not stored in the Account row
+    @JsonIgnore
+    public long getShardedMinorUnits() {
+        return shardedMinorUnits;
+    }
+
+    public void setShardedMinorUnits(long shardedMinorUnits) {
+        this.shardedMinorUnits = shardedMinorUnits;
+    }
+
+    //sum of the LedgerEntry rows not yet materialized into the Account row by a balance snapshot
+    @JsonIgnore
+    public long getPendingMinorUnits() {
+        return pendingMinorUnits;
+    }
+
+    public void setPendingMinorUnits(long pendingMinorUnits) {
+        this.pendingMinorUnits = pendingMinorUnits;
+    }
 }
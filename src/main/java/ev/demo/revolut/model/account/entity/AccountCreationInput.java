@@ -7,6 +7,7 @@ public class AccountCreationInput {
     private String ownerId;
     private BigDecimal amount;
     private String currency;
+    private Integer shardCount;
 
     public AccountCreationInput() {
     }
@@ -42,4 +43,12 @@ public class AccountCreationInput {
     public void setCurrency(String currency) {
         this.currency = currency;
     }
+
+    public Integer getShardCount() {
+        return shardCount;
+    }
+
+    public void setShardCount(Integer shardCount) {
+        this.shardCount = shardCount;
+    }
 }
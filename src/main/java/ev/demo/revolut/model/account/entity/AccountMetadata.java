@@ -0,0 +1,38 @@
+package ev.demo.revolut.model.account.entity;
+
+public final class AccountMetadata {
+
+    private final String id;
+    private final String name;
+    private final String ownerId;
+    private final String currency;
+    private final int shardCount;
+
+    public AccountMetadata(Account account) {
+        this.id = account.getId();
+        this.name = account.getName();
+        this.ownerId = account.getOwnerId();
+        this.currency = account.getCurrency();
+        this.shardCount = account.getShardCount();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+}
@@ -0,0 +1,32 @@
+package ev.demo.revolut.model.account.entity;
+
+public final class AccountTransfer {
+
+    private final String transactionId;
+    private final String accountTo;
+    private final long amountToRemove;
+    private final long amountToAdd;
+
+    public AccountTransfer(String transactionId, String accountTo, long amountToRemove, long amountToAdd) {
+        this.transactionId = transactionId;
+        this.accountTo = accountTo;
+        this.amountToRemove = amountToRemove;
+        this.amountToAdd = amountToAdd;
+    }
+
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    public String getAccountTo() {
+        return accountTo;
+    }
+
+    public long getAmountToRemove() {
+        return amountToRemove;
+    }
+
+    public long getAmountToAdd() {
+        return amountToAdd;
+    }
+}
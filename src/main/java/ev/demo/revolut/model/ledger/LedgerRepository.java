@@ -0,0 +1,101 @@
+package ev.demo.revolut.model.ledger;
+
+import ev.demo.revolut.db.jdbc.DataBaseField;
+import ev.demo.revolut.db.jdbc.JdbcRepository;
+import ev.demo.revolut.model.ledger.entity.LedgerEntry;
+import jersey.repackaged.com.google.common.collect.Lists;
+import org.apache.commons.dbutils.handlers.ColumnListHandler;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+public class LedgerRepository extends JdbcRepository<LedgerEntry> {
+
+    private static final String TABLE_NAME = "LedgerEntry";
+    private static final String SNAPSHOT_TABLE_NAME = "BalanceSnapshot";
+
+    private static final DataBaseField<LedgerEntry> ID = new DataBaseField<>("id", LedgerEntry::getId, (dbValue, entity) -> entity.setId((String)dbValue), true);
+    private static final DataBaseField<LedgerEntry> ACCOUNT_ID = new DataBaseField<>("accountId", LedgerEntry::getAccountId, (dbValue, entity) -> entity.setAccountId((String)dbValue));
+    private static final DataBaseField<LedgerEntry> TRANSACTION_ID = new DataBaseField<>("transactionId", LedgerEntry::getTransactionId, (dbValue, entity) -> entity.setTransactionId((String)dbValue));
+    private static final DataBaseField<LedgerEntry> AMOUNT = new DataBaseField<>("amount", LedgerEntry::getAmountMinorUnits, (dbValue, entity) -> entity.setAmountMinorUnits((Long)dbValue));
+    private static final DataBaseField<LedgerEntry> CREATED_AT = new DataBaseField<>("createdAt", (entity) -> Timestamp.from(entity.getCreatedAt()), (dbValue, entity) -> entity.setCreatedAt(((Timestamp) dbValue).toInstant()));
+    private static final DataBaseField<LedgerEntry> SNAPSHOT_ID = new DataBaseField<>("snapshotId", LedgerEntry::getSnapshotId, (dbValue, entity) -> entity.setSnapshotId((String)dbValue));
+
+    @SuppressWarnings("unchecked")
+    private static List<DataBaseField<LedgerEntry>> fields = Collections.unmodifiableList(Lists.newArrayList(
+            ID, ACCOUNT_ID, TRANSACTION_ID, AMOUNT, CREATED_AT, SNAPSHOT_ID
+    ));
+
+    @Override
+    protected Class<LedgerEntry> getEntityClass() {
+        return LedgerEntry.class;
+    }
+
+    @Override
+    protected String getTableName() {
+        return TABLE_NAME;
+    }
+
+    @Override
+    protected DataBaseField<LedgerEntry> getIdField() {
+        return ID;
+    }
+
+    @Override
+    protected List<DataBaseField<LedgerEntry>> getAllFields() {
+        return fields;
+    }
+
+    public List<String> findAccountIdsWithPendingEntries() {
+        List<Object> accountIds = runInNewConnection((Connection connection) ->
+                query(connection, "SELECT DISTINCT accountId FROM " + TABLE_NAME + " WHERE snapshotId IS NULL", new ColumnListHandler<>(1)));
+        return accountIds.stream().map(String.class::cast).collect(Collectors.toList());
+    }
+
+    public List<String> findTransactionIdsWithExtraEntries() {
+        List<Object> transactionIds = runInNewConnection((Connection connection) ->
+                query(connection, "SELECT transactionId FROM " + TABLE_NAME + " WHERE transactionId IS NOT NULL GROUP BY transactionId HAVING COUNT(*) > 2",
+                        new ColumnListHandler<>(1)));
+        return transactionIds.stream().map(String.class::cast).collect(Collectors.toList());
+    }
+
+    public void append(Connection connection, String accountId, String transactionId, long amount) {
+        //plain insert without reading the row back, entries are never changed except for the snapshot mark
+        update(connection, "INSERT INTO " + TABLE_NAME + " (id, accountId, transactionId, amount, createdAt) VALUES (?, ?, ?, ?, ?)",
+                UUID.randomUUID().toString(), accountId, transactionId, amount, Timestamp.from(Instant.now()));
+    }
+
+    public void appendAll(Connection connection, List<LedgerEntry> entries) {
+        Timestamp createdAt = Timestamp.from(Instant.now());
+        Object[][] parameters = entries.stream()
+                .map(entry -> new Object[] {UUID.randomUUID().toString(), entry.getAccountId(), entry.getTransactionId(), entry.getAmountMinorUnits(), createdAt})
+                .toArray(Object[][]::new);
+        batchUpdate(connection, "INSERT INTO " + TABLE_NAME + " (id, accountId, transactionId, amount, createdAt) VALUES (?, ?, ?, ?, ?)", parameters);
+    }
+
+    public long getPendingAmount(Connection connection, String accountId) {
+        Number pendingAmount = query(connection, "SELECT COALESCE(SUM(amount), 0) FROM " + TABLE_NAME + " WHERE accountId = ? AND snapshotId IS NULL",
+                new ScalarHandler<>(1), accountId);
+        return pendingAmount.longValue();
+    }
+
+    public long markSnapshot(Connection connection, String accountId, String snapshotId) {
+        //marking first and summing the marked entries afterwards cannot miss an entry committed in between
+        update(connection, "UPDATE " + TABLE_NAME + " SET snapshotId = ? WHERE accountId = ? AND snapshotId IS NULL", snapshotId, accountId);
+
+        Number snapshotAmount = query(connection, "SELECT COALESCE(SUM(amount), 0) FROM " + TABLE_NAME + " WHERE snapshotId = ?",
+                new ScalarHandler<>(1), snapshotId);
+        return snapshotAmount.longValue();
+    }
+
+    public void insertSnapshot(Connection connection, String snapshotId, String accountId, long balance) {
+        update(connection, "INSERT INTO " + SNAPSHOT_TABLE_NAME + " (id, accountId, amount, createdAt) VALUES (?, ?, ?, ?)",
+                snapshotId, accountId, balance, Timestamp.from(Instant.now()));
+    }
+}
@@ -0,0 +1,62 @@
+package ev.demo.revolut.model.ledger;
+
+import ev.demo.revolut.logging.Log;
+import ev.demo.revolut.model.account.AccountService;
+import org.apache.log4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class LedgerSnapshotService {
+
+    private static Logger logger = Logger.getLogger(LedgerSnapshotService.class);
+
+    private static final boolean LEDGER_ENABLED = Boolean.getBoolean("revolut.ledger.enabled");
+    private static final long SNAPSHOT_INTERVAL_SECONDS = Long.getLong("revolut.ledger.snapshotIntervalSeconds", 10);
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ledger-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private LedgerRepository ledgerRepository = new LedgerRepository();
+    private AccountService accountService = new AccountService();
+
+    public static void start() {
+        if (!LEDGER_ENABLED) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(() -> new LedgerSnapshotService().snapshotAllBalances(), SNAPSHOT_INTERVAL_SECONDS, SNAPSHOT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        logger.info("LedgerSnapshot ScheduledExecutor started with interval " + SNAPSHOT_INTERVAL_SECONDS + " seconds");
+    }
+
+    public static void stop() {
+        scheduler.shutdown();
+        logger.info("LedgerSnapshot ScheduledExecutor stopped");
+    }
+
+    void snapshotAllBalances() {
+        try {
+            List<String> accountIds = ledgerRepository.findAccountIdsWithPendingEntries();
+            for (String accountId : accountIds) {
+                snapshotBalance(accountId);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to load Accounts with pending ledger entries!", e);
+        }
+    }
+
+    private void snapshotBalance(String accountId) {
+        try {
+            accountService.snapshotLedgerBalance(accountId);
+            Log.debug(logger, "Ledger balance of Account '{}' snapshotted", accountId);
+
+        } catch (Exception e) {
+            //entries stay pending and are picked up by the next run
+            logger.error("Failed to snapshot ledger balance of Account '" + accountId + "'!", e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ev.demo.revolut.model.ledger.entity;
+
+import java.time.Instant;
+
+public class LedgerEntry {
+
+    private String id;
+    private String accountId;
+    private String transactionId;
+    private long amountMinorUnits;
+    private Instant createdAt;
+    private String snapshotId;
+
+    public LedgerEntry() {
+
+    }
+
+    public LedgerEntry(String accountId, String transactionId, long amountMinorUnits) {
+        this.accountId = accountId;
+        this.transactionId = transactionId;
+        this.amountMinorUnits = amountMinorUnits;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(String accountId) {
+        this.accountId = accountId;
+    }
+
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    public void setTransactionId(String transactionId) {
+        this.transactionId = transactionId;
+    }
+
+    //negative for debits, positive for credits
+    public long getAmountMinorUnits() {
+        return amountMinorUnits;
+    }
+
+    public void setAmountMinorUnits(long amountMinorUnits) {
+        this.amountMinorUnits = amountMinorUnits;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getSnapshotId() {
+        return snapshotId;
+    }
+
+    public void setSnapshotId(String snapshotId) {
+        this.snapshotId = snapshotId;
+    }
+}
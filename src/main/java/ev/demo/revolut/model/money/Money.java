@@ -0,0 +1,128 @@
+package ev.demo.revolut.model.money;
+
+import ev.demo.revolut.model.ValidationException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+public final class Money {
+
+    public static final int RATE_SCALE = 10;
+
+    private static final int DEFAULT_SCALE = 2;
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+            10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+            1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+
+    private final long minorUnits;
+    private final int scale;
+
+    private Money(long minorUnits, int scale) {
+        this.minorUnits = minorUnits;
+        this.scale = scale;
+    }
+
+    public static Money of(BigDecimal amount, String currency) {
+        return new Money(toMinorUnits(amount, currency), getScale(currency));
+    }
+
+    public static Money ofMinorUnits(long minorUnits, String currency) {
+        return new Money(minorUnits, getScale(currency));
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, scale);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+
+    public static int getScale(String currency) {
+        if (currency == null) {
+            return DEFAULT_SCALE;
+        }
+
+        try {
+            int scale = Currency.getInstance(currency).getDefaultFractionDigits();
+            return scale < 0 ? DEFAULT_SCALE : scale;
+        } catch (IllegalArgumentException e) {
+            return DEFAULT_SCALE;
+        }
+    }
+
+    //an amount is taken as given, never rounded: more decimals than the currency has or a value beyond the minor units range is rejected
+    public static long toMinorUnits(BigDecimal amount, String currency) {
+        int scale = getScale(currency);
+        BigDecimal scaledAmount;
+        try {
+            scaledAmount = amount.setScale(scale, RoundingMode.UNNECESSARY);
+        } catch (ArithmeticException e) {
+            throw new ValidationException("Amount '" + amount.toPlainString() + "' has more than " + scale + " decimal places for currency '" + currency + "'!");
+        }
+
+        try {
+            return scaledAmount.unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new ValidationException("Amount '" + amount.toPlainString() + "' is out of range!");
+        }
+    }
+
+    public static BigDecimal toBigDecimal(long minorUnits, String currency) {
+        return BigDecimal.valueOf(minorUnits, getScale(currency));
+    }
+
+    public static long add(long minorUnits1, long minorUnits2) {
+        return Math.addExact(minorUnits1, minorUnits2);
+    }
+
+    public static long subtract(long minorUnits1, long minorUnits2) {
+        return Math.subtractExact(minorUnits1, minorUnits2);
+    }
+
+    public static long toFixedPointRate(BigDecimal rate) {
+        return rate.setScale(RATE_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal fromFixedPointRate(long fixedPointRate) {
+        BigDecimal rate = BigDecimal.valueOf(fixedPointRate, RATE_SCALE).stripTrailingZeros();
+        return rate.scale() < 0 ? rate.setScale(0) : rate;
+    }
+
+    public static long convert(long minorUnits, String currencyFrom, long fixedPointRate, String currencyTo) {
+        //amount * rate / 10^RATE_SCALE, moved from the scale of currencyFrom to the scale of currencyTo and rounded down
+        int scaleShift = getScale(currencyTo) - getScale(currencyFrom);
+        int divisorPower = RATE_SCALE - scaleShift;
+
+        try {
+            long product = Math.multiplyExact(minorUnits, fixedPointRate);
+            if (divisorPower < 0) {
+                return Math.multiplyExact(product, POWERS_OF_TEN[-divisorPower]);
+            }
+            return product / POWERS_OF_TEN[divisorPower];
+
+        } catch (ArithmeticException e) {
+            //only huge amounts leave the long range of the intermediate product
+            BigInteger product = BigInteger.valueOf(minorUnits).multiply(BigInteger.valueOf(fixedPointRate));
+            BigDecimal converted = new BigDecimal(product, divisorPower).setScale(0, RoundingMode.DOWN);
+            try {
+                return converted.longValueExact();
+            } catch (ArithmeticException overflow) {
+                throw new ArithmeticException("Converted amount of '" + minorUnits + "' minor units is out of range!");
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ev.demo.revolut.model.rate;
+
+import ev.demo.revolut.logging.Log;
+import org.apache.log4j.Logger;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ExchangeRateCache {
+
+    private static Logger logger = Logger.getLogger(ExchangeRateCache.class);
+
+    private static final long TIME_TO_LIVE_SECONDS = Long.getLong("revolut.exchangeRates.ttlSeconds", 60);
+    private static final long HISTORY_SECONDS = Long.getLong("revolut.exchangeRates.historySeconds", 30 * 60);
+
+    private static final ExchangeRateCache instance = new ExchangeRateCache(new LocalExchangeRateProvider());
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "exchange-rate-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ExchangeRateProvider provider;
+    private final AtomicLong lastVersion = new AtomicLong();
+    private final AtomicReference<ExchangeRateTable> currentTable = new AtomicReference<>();
+    private final ConcurrentSkipListMap<Long, ExchangeRateTable> history = new ConcurrentSkipListMap<>();
+
+    ExchangeRateCache(ExchangeRateProvider provider) {
+        this.provider = provider;
+        setCurrentTable(ExchangeRateTable.load(lastVersion.incrementAndGet(), provider));
+    }
+
+    public static ExchangeRateCache getInstance() {
+        return instance;
+    }
+
+    public static void start() {
+        scheduler.scheduleWithFixedDelay(instance::refresh, TIME_TO_LIVE_SECONDS, TIME_TO_LIVE_SECONDS, TimeUnit.SECONDS);
+        logger.info("ExchangeRate refresh ScheduledExecutor started with TTL " + TIME_TO_LIVE_SECONDS + " seconds");
+    }
+
+    public static void stop() {
+        scheduler.shutdown();
+        logger.info("ExchangeRate refresh ScheduledExecutor stopped");
+    }
+
+    public ExchangeRateTable getCurrentTable() {
+        return currentTable.get();
+    }
+
+    public Optional<ExchangeRateTable> getTable(long version) {
+        return Optional.ofNullable(history.get(version));
+    }
+
+    void refresh() {
+        try {
+            ExchangeRateTable table = ExchangeRateTable.load(lastVersion.incrementAndGet(), provider);
+            setCurrentTable(table);
+            Log.debug(logger, "ExchangeRate table version {} loaded", table.getVersion());
+
+        } catch (Exception e) {
+            //keep converting with the previous table until the provider is back
+            logger.error("Failed to refresh ExchangeRate table, version " + currentTable.get().getVersion() + " is still used!", e);
+        }
+    }
+
+    private void setCurrentTable(ExchangeRateTable table) {
+        history.put(table.getVersion(), table);
+        currentTable.set(table);
+
+        //tables stay available for transactions pinned to them until the transactions expire
+        Instant historyStart = table.getLoadedAt().minusSeconds(HISTORY_SECONDS);
+        history.values().removeIf(oldTable -> oldTable.getVersion() != table.getVersion() && oldTable.getLoadedAt().isBefore(historyStart));
+    }
+}
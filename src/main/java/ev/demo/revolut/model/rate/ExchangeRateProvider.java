@@ -0,0 +1,11 @@
+package ev.demo.revolut.model.rate;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+public interface ExchangeRateProvider {
+    //only the currencies the provider quotes
+    Set<String> getCurrencies();
+    //units of the currency for one unit of the base currency of the provider
+    BigDecimal getBaseRate(String currency);
+}
@@ -0,0 +1,85 @@
+package ev.demo.revolut.model.rate;
+
+import ev.demo.revolut.model.ValidationException;
+import ev.demo.revolut.model.money.Money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class ExchangeRateTable {
+
+    private static final long FIXED_POINT_ONE = Money.toFixedPointRate(BigDecimal.ONE);
+
+    private final long version;
+    private final Instant loadedAt;
+    private final Map<String, Integer> currencyIndexes;
+    private final long[][] exchangeRates;
+
+    private ExchangeRateTable(long version, Instant loadedAt, Map<String, Integer> currencyIndexes, long[][] exchangeRates) {
+        this.version = version;
+        this.loadedAt = loadedAt;
+        this.currencyIndexes = currencyIndexes;
+        this.exchangeRates = exchangeRates;
+    }
+
+    static ExchangeRateTable load(long version, ExchangeRateProvider provider) {
+        List<String> currencies = new ArrayList<>(provider.getCurrencies());
+        Collections.sort(currencies);
+
+        Map<String, Integer> currencyIndexes = new HashMap<>();
+        for (int i = 0; i < currencies.size(); i++) {
+            currencyIndexes.put(currencies.get(i), i);
+        }
+
+        //one provider call per currency, the cross rates are derived here once per refresh and a lookup stays one array read
+        BigDecimal[] baseRates = new BigDecimal[currencies.size()];
+        for (int i = 0; i < currencies.size(); i++) {
+            baseRates[i] = provider.getBaseRate(currencies.get(i));
+            if (baseRates[i] == null || baseRates[i].signum() <= 0) {
+                throw new IllegalStateException("Base rate of '" + currencies.get(i) + "' is not positive: " + baseRates[i]);
+            }
+        }
+
+        long[][] exchangeRates = new long[currencies.size()][currencies.size()];
+        for (int from = 0; from < currencies.size(); from++) {
+            for (int to = 0; to < currencies.size(); to++) {
+                BigDecimal exchangeRate = from == to ? BigDecimal.ONE : baseRates[to].divide(baseRates[from], Money.RATE_SCALE, RoundingMode.HALF_UP);
+                exchangeRates[from][to] = Money.toFixedPointRate(exchangeRate);
+            }
+        }
+
+        return new ExchangeRateTable(version, Instant.now(), Collections.unmodifiableMap(currencyIndexes), exchangeRates);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Instant getLoadedAt() {
+        return loadedAt;
+    }
+
+    public BigDecimal getExchangeRate(String currencyFrom, String currencyTo) {
+        return Money.fromFixedPointRate(getFixedPointExchangeRate(currencyFrom, currencyTo));
+    }
+
+    public long getFixedPointExchangeRate(String currencyFrom, String currencyTo) {
+        if (currencyFrom.equals(currencyTo)) {
+            return FIXED_POINT_ONE;
+        }
+
+        Integer fromIndex = currencyIndexes.get(currencyFrom);
+        Integer toIndex = currencyIndexes.get(currencyTo);
+        if (fromIndex == null || toIndex == null) {
+            throw new ValidationException("Exchange rate from '" + currencyFrom + "' to '" + currencyTo + "' is not available!");
+        }
+
+        return exchangeRates[fromIndex][toIndex];
+    }
+}
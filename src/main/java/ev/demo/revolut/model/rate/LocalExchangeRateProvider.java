@@ -0,0 +1,39 @@
+package ev.demo.revolut.model.rate;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+//stub until the remote exchange rate service is connected; powers of two against USD, so every cross rate is exact
+public class LocalExchangeRateProvider implements ExchangeRateProvider {
+
+    private static final Map<String, BigDecimal> BASE_RATES = createBaseRates();
+
+    @Override
+    public Set<String> getCurrencies() {
+        return BASE_RATES.keySet();
+    }
+
+    @Override
+    public BigDecimal getBaseRate(String currency) {
+        BigDecimal baseRate = BASE_RATES.get(currency);
+        if (baseRate == null) {
+            throw new IllegalArgumentException("Currency '" + currency + "' is not quoted!");
+        }
+        return baseRate;
+    }
+
+    private static Map<String, BigDecimal> createBaseRates() {
+        Map<String, BigDecimal> baseRates = new HashMap<>();
+        baseRates.put("USD", BigDecimal.ONE);
+        baseRates.put("EUR", new BigDecimal("0.5"));
+        baseRates.put("GBP", new BigDecimal("0.25"));
+        baseRates.put("CHF", new BigDecimal("0.5"));
+        baseRates.put("JPY", new BigDecimal("128"));
+        baseRates.put("RUB", new BigDecimal("2"));
+        baseRates.put("RUR", new BigDecimal("2"));
+        return Collections.unmodifiableMap(baseRates);
+    }
+}
@@ -0,0 +1,56 @@
+package ev.demo.revolut.model.reconciliation;
+
+import ev.demo.revolut.model.account.entity.Account;
+import ev.demo.revolut.model.money.Money;
+
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+//the balance of each account is kept for the conservation check, which needs the net flows of all completed transactions
+class AccountCheckTask extends RecursiveTask<ReconciliationPart> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Account> accounts;
+    private final int from;
+    private final int to;
+
+    AccountCheckTask(List<Account> accounts, int from, int to) {
+        this.accounts = accounts;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected ReconciliationPart compute() {
+        if (to - from > ReconciliationService.BATCH_SIZE) {
+            int middle = (from + to) >>> 1;
+            AccountCheckTask left = new AccountCheckTask(accounts, from, middle);
+            left.fork();
+            ReconciliationPart right = new AccountCheckTask(accounts, middle, to).compute();
+            return left.join().merge(right);
+        }
+
+        ReconciliationPart part = new ReconciliationPart();
+        for (int i = from; i < to; i++) {
+            check(accounts.get(i), part);
+        }
+        return part;
+    }
+
+    private void check(Account account, ReconciliationPart part) {
+        part.countChecked();
+
+        long balance = Money.add(Money.add(account.getAmountMinorUnits(), account.getShardedMinorUnits()), account.getPendingMinorUnits());
+        part.addBalance(account.getCurrency(), balance);
+
+        if (balance < 0) {
+            part.addViolation("Account '" + account.getId() + "' has negative balance " + balance);
+        }
+        if (account.getReservedMinorUnits() < 0 || account.getReservedMinorUnits() > balance) {
+            part.addViolation("Account '" + account.getId() + "' has reserved amount " + account.getReservedMinorUnits() + " outside of its balance " + balance);
+        }
+
+        part.getAccountBalances().put(account.getId(), balance);
+    }
+}
@@ -0,0 +1,56 @@
+package ev.demo.revolut.model.reconciliation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+//rows of a DB cursor are cut into batches checked on the pool while the cursor is still read;
+//only a bounded number of batches is in flight, so a run never holds a whole table
+class BatchFeeder<T> implements Consumer<T> {
+
+    private final ForkJoinPool pool;
+    private final int maxBatchesInFlight;
+    private final Function<List<T>, ForkJoinTask<ReconciliationPart>> taskFactory;
+    private final Deque<ForkJoinTask<ReconciliationPart>> batchesInFlight = new ArrayDeque<>();
+    private final ReconciliationPart result = new ReconciliationPart();
+    private List<T> batch = new ArrayList<>();
+
+    BatchFeeder(ForkJoinPool pool, int maxBatchesInFlight, Function<List<T>, ForkJoinTask<ReconciliationPart>> taskFactory) {
+        this.pool = pool;
+        this.maxBatchesInFlight = maxBatchesInFlight;
+        this.taskFactory = taskFactory;
+    }
+
+    @Override
+    public void accept(T row) {
+        batch.add(row);
+        if (batch.size() >= ReconciliationService.BATCH_SIZE) {
+            submitBatch();
+        }
+    }
+
+    ReconciliationPart finish() {
+        if (!batch.isEmpty()) {
+            submitBatch();
+        }
+        while (!batchesInFlight.isEmpty()) {
+            result.merge(batchesInFlight.poll().join());
+        }
+        return result;
+    }
+
+    private void submitBatch() {
+        batchesInFlight.add(pool.submit(taskFactory.apply(batch)));
+        batch = new ArrayList<>();
+
+        //the oldest batch is merged first, so the violations keep the order of the rows
+        while (batchesInFlight.size() > maxBatchesInFlight) {
+            result.merge(batchesInFlight.poll().join());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ev.demo.revolut.model.reconciliation;
+
+import ev.demo.revolut.model.money.Money;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class ReconciliationPart {
+
+    private final Map<String, Long> netFlows = new HashMap<>();
+    private final Map<String, String> idempotencyKeys = new HashMap<>();
+    private final Map<String, Long> balanceTotals = new HashMap<>();
+    private final Map<String, Long> accountBalances = new HashMap<>();
+    private final List<String> violations = new ArrayList<>();
+    private long violationCount;
+    private int checkedCount;
+
+    Map<String, Long> getNetFlows() {
+        return netFlows;
+    }
+
+    Map<String, Long> getBalanceTotals() {
+        return balanceTotals;
+    }
+
+    Map<String, Long> getAccountBalances() {
+        return accountBalances;
+    }
+
+    List<String> getViolations() {
+        return violations;
+    }
+
+    long getViolationCount() {
+        return violationCount;
+    }
+
+    int getCheckedCount() {
+        return checkedCount;
+    }
+
+    void countChecked() {
+        checkedCount++;
+    }
+
+    void addViolation(String violation) {
+        violationCount++;
+        if (violations.size() < ReconciliationService.MAX_REPORTED_VIOLATIONS) {
+            violations.add(violation);
+        }
+    }
+
+    void addNetFlow(String accountId, long amount) {
+        netFlows.merge(accountId, amount, Money::add);
+    }
+
+    void addBalance(String currency, long amount) {
+        balanceTotals.merge(currency, amount, Money::add);
+    }
+
+    void addIdempotencyKey(String idempotencyKey, String transactionId) {
+        String completedTransactionId = idempotencyKeys.putIfAbsent(idempotencyKey, transactionId);
+        if (completedTransactionId != null) {
+            addViolation("Transactions '" + completedTransactionId + "' and '" + transactionId + "' are both completed for idempotency key '" + idempotencyKey + "'");
+        }
+    }
+
+    ReconciliationPart merge(ReconciliationPart other) {
+        other.netFlows.forEach(this::addNetFlow);
+        other.balanceTotals.forEach(this::addBalance);
+        other.idempotencyKeys.forEach((idempotencyKey, transactionId) -> addIdempotencyKey(idempotencyKey, transactionId));
+        accountBalances.putAll(other.accountBalances);
+
+        violationCount += other.violationCount;
+        for (String violation : other.violations) {
+            if (violations.size() >= ReconciliationService.MAX_REPORTED_VIOLATIONS) {
+                break;
+            }
+            violations.add(violation);
+        }
+        checkedCount += other.checkedCount;
+        return this;
+    }
+
+    static class AccountState {
+        private final long balance;
+        private final long netFlow;
+
+        AccountState(long balance, long netFlow) {
+            this.balance = balance;
+            this.netFlow = netFlow;
+        }
+
+        long getBalance() {
+            return balance;
+        }
+
+        long getNetFlow() {
+            return netFlow;
+        }
+    }
+}
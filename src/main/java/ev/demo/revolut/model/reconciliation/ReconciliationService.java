@@ -0,0 +1,209 @@
+package ev.demo.revolut.model.reconciliation;
+
+import ev.demo.revolut.db.exception.EntityNotFoundException;
+import ev.demo.revolut.metrics.ReconciliationMetrics;
+import ev.demo.revolut.model.account.AccountService;
+import ev.demo.revolut.model.account.entity.Account;
+import ev.demo.revolut.model.ledger.LedgerRepository;
+import ev.demo.revolut.model.money.Money;
+import ev.demo.revolut.model.reconciliation.entity.ReconciliationReport;
+import ev.demo.revolut.model.transaction.TransactionService;
+import ev.demo.revolut.model.transaction.entity.Transaction;
+import org.apache.log4j.Logger;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ReconciliationService {
+
+    private static Logger logger = Logger.getLogger(ReconciliationService.class);
+
+    private static final long INTERVAL_SECONDS = Long.getLong("revolut.reconciliation.intervalSeconds", 300);
+    private static final int PARALLELISM = Integer.getInteger("revolut.reconciliation.parallelism", Runtime.getRuntime().availableProcessors());
+    static final int BATCH_SIZE = Integer.getInteger("revolut.reconciliation.batchSize", 1000);
+    static final int MAX_REPORTED_VIOLATIONS = Integer.getInteger("revolut.reconciliation.maxReportedViolations", 100);
+    private static final int MAX_BATCHES_IN_FLIGHT = PARALLELISM * 2;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "reconciliation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //own pool, so a long run never occupies the common pool used by parallel streams
+    private static final ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+
+    private static final AtomicReference<ReconciliationReport> lastReport = new AtomicReference<>();
+
+    //balance and net flow of every settled account at the previous run, the base of the conservation check
+    private static final AtomicReference<Map<String, ReconciliationPart.AccountState>> previousStates = new AtomicReference<>(Collections.emptyMap());
+
+    private static final Object runLock = new Object();
+
+    private static final Object queueLock = new Object();
+    private static CompletableFuture<ReconciliationReport> queuedRun;
+
+    private AccountService accountService = new AccountService();
+    private TransactionService transactionService = new TransactionService();
+    private LedgerRepository ledgerRepository = new LedgerRepository();
+
+    public static void start() {
+        scheduler.scheduleWithFixedDelay(() -> new ReconciliationService().reconcileSafely(), INTERVAL_SECONDS, INTERVAL_SECONDS, TimeUnit.SECONDS);
+        logger.info("Reconciliation ScheduledExecutor started with interval " + INTERVAL_SECONDS + " seconds and parallelism " + PARALLELISM);
+    }
+
+    public static void stop() {
+        scheduler.shutdown();
+        pool.shutdown();
+        logger.info("Reconciliation ScheduledExecutor stopped");
+    }
+
+    public ReconciliationReport getLastReport() {
+        ReconciliationReport report = lastReport.get();
+        if (report == null) {
+            throw new EntityNotFoundException("Reconciliation has not been run yet!");
+        }
+        return report;
+    }
+
+    //requests arriving before the queued run starts share it, so a burst of requests never queues a run per request
+    public CompletableFuture<ReconciliationReport> reconcileAsync() {
+        synchronized (queueLock) {
+            if (queuedRun != null) {
+                return queuedRun;
+            }
+
+            CompletableFuture<ReconciliationReport> run = new CompletableFuture<>();
+            try {
+                scheduler.execute(() -> {
+                    synchronized (queueLock) {
+                        queuedRun = null;
+                    }
+                    try {
+                        run.complete(reconcile());
+                    } catch (Exception e) {
+                        run.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                //the scheduler is stopped, the caller gets the failure like a rejected DB task
+                run.completeExceptionally(e);
+                return run;
+            }
+            queuedRun = run;
+            return run;
+        }
+    }
+
+    public ReconciliationReport reconcile() {
+        synchronized (runLock) {
+            try {
+                return reconcileRows();
+            } catch (RuntimeException e) {
+                ReconciliationMetrics.recordFailure();
+                throw e;
+            }
+        }
+    }
+
+    private ReconciliationReport reconcileRows() {
+        Instant startedAt = Instant.now();
+        long startNanos = System.nanoTime();
+
+        //plain reads without locks; the ids of completed transactions are read before the accounts and the transactions after them,
+        //so the ones completed in between are known
+        Set<String> completedBefore = transactionService.getCompletedTransactionIds();
+
+        //rows are checked in batches while the cursors are read, only the per-account figures are kept for the whole run
+        Map<String, String> accountCurrencies = new HashMap<>();
+        BatchFeeder<Account> accountFeeder = new BatchFeeder<>(pool, MAX_BATCHES_IN_FLIGHT, batch -> new AccountCheckTask(batch, 0, batch.size()));
+        int accountsChecked = accountService.forEachAccount(account -> {
+            accountCurrencies.put(account.getId(), account.getCurrency());
+            accountFeeder.accept(account);
+        });
+        ReconciliationPart accountPart = accountFeeder.finish();
+
+        Set<String> unsettledAccountIds = new HashSet<>();
+        BatchFeeder<Transaction> transactionFeeder = new BatchFeeder<>(pool, MAX_BATCHES_IN_FLIGHT,
+                batch -> new TransactionCheckTask(batch, 0, batch.size(), accountCurrencies));
+        int transactionsChecked = transactionService.forEachCompletedTransaction(transaction -> {
+            if (!completedBefore.contains(transaction.getId())) {
+                unsettledAccountIds.add(transaction.getAccountFrom());
+                unsettledAccountIds.add(transaction.getAccountTo());
+            }
+            transactionFeeder.accept(transaction);
+        });
+        ReconciliationPart transactionPart = transactionFeeder.finish();
+
+        ReconciliationPart result = new ReconciliationPart().merge(transactionPart).merge(accountPart);
+        previousStates.set(checkConservation(result, unsettledAccountIds, previousStates.get()));
+        for (String transactionId : ledgerRepository.findTransactionIdsWithExtraEntries()) {
+            result.addViolation("Transaction '" + transactionId + "' has more than one debit and one credit ledger entry");
+        }
+
+        ReconciliationReport report = createReport(result, startedAt, accountsChecked, transactionsChecked, unsettledAccountIds);
+        lastReport.set(report);
+        ReconciliationMetrics.record(System.nanoTime() - startNanos, accountsChecked + transactionsChecked, report.getViolationCount());
+        logger.info("Reconciliation checked " + report.getAccountsChecked() + " accounts and " + report.getTransactionsChecked() + " transactions in "
+                + report.getDurationMillis() + " ms, violations: " + report.getViolationCount());
+        return report;
+    }
+
+    //the balance of a settled account moves by exactly what its completed transactions moved since the previous run
+    private Map<String, ReconciliationPart.AccountState> checkConservation(ReconciliationPart result, Set<String> unsettledAccountIds,
+                                                                          Map<String, ReconciliationPart.AccountState> previousAccountStates) {
+        Map<String, ReconciliationPart.AccountState> accountStates = new HashMap<>();
+        result.getAccountBalances().forEach((accountId, balance) -> {
+            //a transfer completed while the run was reading may or may not be in the balance, such accounts are checked next time
+            if (unsettledAccountIds.contains(accountId)) {
+                return;
+            }
+
+            long netFlow = result.getNetFlows().getOrDefault(accountId, 0L);
+            accountStates.put(accountId, new ReconciliationPart.AccountState(balance, netFlow));
+
+            ReconciliationPart.AccountState previousState = previousAccountStates.get(accountId);
+            if (previousState != null) {
+                long balanceChange = Money.subtract(balance, previousState.getBalance());
+                long netFlowChange = Money.subtract(netFlow, previousState.getNetFlow());
+                if (balanceChange != netFlowChange) {
+                    result.addViolation("Balance of Account '" + accountId + "' changed by " + balanceChange
+                            + " since the previous run, but its completed transactions moved " + netFlowChange);
+                }
+            }
+        });
+        return accountStates;
+    }
+
+    private void reconcileSafely() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            logger.error("Reconciliation failed with exception!", e);
+        }
+    }
+
+    private ReconciliationReport createReport(ReconciliationPart result, Instant startedAt, int accountsChecked, int transactionsChecked, Set<String> unsettledAccountIds) {
+        Map<String, BigDecimal> balanceTotals = new TreeMap<>();
+        result.getBalanceTotals().forEach((currency, total) -> balanceTotals.put(currency, Money.toBigDecimal(total, currency)));
+
+        ReconciliationReport report = new ReconciliationReport();
+        report.setStartedAt(startedAt);
+        report.setDurationMillis(Instant.now().toEpochMilli() - startedAt.toEpochMilli());
+        report.setAccountsChecked(accountsChecked);
+        report.setTransactionsChecked(transactionsChecked);
+        report.setUnsettledAccounts(unsettledAccountIds.size());
+        report.setViolationCount(result.getViolationCount());
+        report.setViolations(result.getViolations());
+        report.setBalanceTotals(balanceTotals);
+        return report;
+    }
+}
@@ -0,0 +1,76 @@
+package ev.demo.revolut.model.reconciliation;
+
+import ev.demo.revolut.model.money.Money;
+import ev.demo.revolut.model.transaction.entity.Transaction;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveTask;
+
+class TransactionCheckTask extends RecursiveTask<ReconciliationPart> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Transaction> transactions;
+    private final int from;
+    private final int to;
+    private final Map<String, String> accountCurrencies;
+
+    TransactionCheckTask(List<Transaction> transactions, int from, int to, Map<String, String> accountCurrencies) {
+        this.transactions = transactions;
+        this.from = from;
+        this.to = to;
+        this.accountCurrencies = accountCurrencies;
+    }
+
+    @Override
+    protected ReconciliationPart compute() {
+        if (to - from > ReconciliationService.BATCH_SIZE) {
+            int middle = (from + to) >>> 1;
+            TransactionCheckTask left = new TransactionCheckTask(transactions, from, middle, accountCurrencies);
+            left.fork();
+            ReconciliationPart right = new TransactionCheckTask(transactions, middle, to, accountCurrencies).compute();
+            return left.join().merge(right);
+        }
+
+        ReconciliationPart part = new ReconciliationPart();
+        for (int i = from; i < to; i++) {
+            check(transactions.get(i), part);
+        }
+        return part;
+    }
+
+    private void check(Transaction transaction, ReconciliationPart part) {
+        part.countChecked();
+
+        if (transaction.getAmountFrom() == null || transaction.getAmountTo() == null) {
+            part.addViolation("Transaction '" + transaction.getId() + "' is completed without converted amounts");
+            return;
+        }
+
+        String currencyFrom = accountCurrencies.get(transaction.getAccountFrom());
+        String currencyTo = accountCurrencies.get(transaction.getAccountTo());
+        if (currencyFrom == null || currencyTo == null) {
+            part.addViolation("Transaction '" + transaction.getId() + "' is completed for a missing Account");
+            return;
+        }
+
+        if (transaction.getFixedPointExchangeRateFrom() != null && transaction.getFixedPointExchangeRateTo() != null) {
+            long expectedAmountFrom = Money.convert(transaction.getAmountMinorUnits(), transaction.getCurrency(), transaction.getFixedPointExchangeRateFrom(), currencyFrom);
+            long expectedAmountTo = Money.convert(transaction.getAmountMinorUnits(), transaction.getCurrency(), transaction.getFixedPointExchangeRateTo(), currencyTo);
+            if (expectedAmountFrom != transaction.getAmountFrom() || expectedAmountTo != transaction.getAmountTo()) {
+                part.addViolation("Transaction '" + transaction.getId() + "' amounts " + transaction.getAmountFrom() + "/" + transaction.getAmountTo()
+                        + " do not match its pinned rates, expected " + expectedAmountFrom + "/" + expectedAmountTo);
+            }
+        }
+
+        if (transaction.getIdempotencyKey() != null) {
+            part.addIdempotencyKey(transaction.getIdempotencyKey(), transaction.getId());
+        }
+
+        //reserved transfers debit the amount held at creation time
+        long debitedAmount = transaction.getReservedAmount() != null ? transaction.getReservedAmount() : transaction.getAmountFrom();
+        part.addNetFlow(transaction.getAccountFrom(), -debitedAmount);
+        part.addNetFlow(transaction.getAccountTo(), transaction.getAmountTo());
+    }
+}
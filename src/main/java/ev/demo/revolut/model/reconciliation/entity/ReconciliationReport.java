@@ -0,0 +1,85 @@
+package ev.demo.revolut.model.reconciliation.entity;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+public class ReconciliationReport {
+    private Instant startedAt;
+    private long durationMillis;
+    private int accountsChecked;
+    private int transactionsChecked;
+    private int unsettledAccounts;
+    private long violationCount;
+    private List<String> violations;
+    private Map<String, BigDecimal> balanceTotals;
+
+    public ReconciliationReport() {
+
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Instant startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public int getAccountsChecked() {
+        return accountsChecked;
+    }
+
+    public void setAccountsChecked(int accountsChecked) {
+        this.accountsChecked = accountsChecked;
+    }
+
+    public int getTransactionsChecked() {
+        return transactionsChecked;
+    }
+
+    public void setTransactionsChecked(int transactionsChecked) {
+        this.transactionsChecked = transactionsChecked;
+    }
+
+    public int getUnsettledAccounts() {
+        return unsettledAccounts;
+    }
+
+    public void setUnsettledAccounts(int unsettledAccounts) {
+        this.unsettledAccounts = unsettledAccounts;
+    }
+
+    public long getViolationCount() {
+        return violationCount;
+    }
+
+    public void setViolationCount(long violationCount) {
+        this.violationCount = violationCount;
+    }
+
+    public List<String> getViolations() {
+        return violations;
+    }
+
+    public void setViolations(List<String> violations) {
+        this.violations = violations;
+    }
+
+    public Map<String, BigDecimal> getBalanceTotals() {
+        return balanceTotals;
+    }
+
+    public void setBalanceTotals(Map<String, BigDecimal> balanceTotals) {
+        this.balanceTotals = balanceTotals;
+    }
+}
@@ -1,18 +1,46 @@
 package ev.demo.revolut.model.transaction;
 
+import ev.demo.revolut.model.money.Money;
+import ev.demo.revolut.model.rate.ExchangeRateCache;
+import ev.demo.revolut.model.rate.ExchangeRateTable;
+import ev.demo.revolut.model.transaction.entity.Transaction;
+
 import java.math.BigDecimal;
 
 public class ExchangeRateService {
 
+    private ExchangeRateCache exchangeRateCache = ExchangeRateCache.getInstance();
+
     public BigDecimal convert(BigDecimal amount, String currencyFrom, String currencyTo) {
+        if (currencyFrom.equals(currencyTo)) {
+            return amount;
+        }
         return amount.multiply(getExchangeRate(currencyFrom, currencyTo));
     }
 
-    BigDecimal getExchangeRate(String currencyFrom, String currencyTo) {
-        if (currencyFrom.equals(currencyTo)) {
-            return new BigDecimal(1.0);
-        } else {
-            return new BigDecimal(currencyFrom.compareTo(currencyTo) > 0 ? 2 : 0.5); //call exchange rate service here
+    public ExchangeRateTable getCurrentExchangeRateTable() {
+        return exchangeRateCache.getCurrentTable();
+    }
+
+    public ExchangeRateTable getExchangeRateTable(Long version) {
+        if (version == null) {
+            return exchangeRateCache.getCurrentTable();
         }
+        return exchangeRateCache.getTable(version).orElseGet(exchangeRateCache::getCurrentTable);
+    }
+
+    void pinExchangeRates(Transaction transaction, ExchangeRateTable exchangeRateTable, String accountFromCurrency, String accountToCurrency) {
+        long exchangeRateFrom = exchangeRateTable.getFixedPointExchangeRate(transaction.getCurrency(), accountFromCurrency);
+        long exchangeRateTo = exchangeRateTable.getFixedPointExchangeRate(transaction.getCurrency(), accountToCurrency);
+
+        transaction.setExchangeRateVersion(exchangeRateTable.getVersion());
+        transaction.setFixedPointExchangeRateFrom(exchangeRateFrom);
+        transaction.setFixedPointExchangeRateTo(exchangeRateTo);
+        transaction.setAmountFrom(Money.convert(transaction.getAmountMinorUnits(), transaction.getCurrency(), exchangeRateFrom, accountFromCurrency));
+        transaction.setAmountTo(Money.convert(transaction.getAmountMinorUnits(), transaction.getCurrency(), exchangeRateTo, accountToCurrency));
+    }
+
+    BigDecimal getExchangeRate(String currencyFrom, String currencyTo) {
+        return exchangeRateCache.getCurrentTable().getExchangeRate(currencyFrom, currencyTo);
     }
 }
@@ -0,0 +1,173 @@
+package ev.demo.revolut.model.transaction;
+
+import ev.demo.revolut.logging.Log;
+import ev.demo.revolut.model.account.AccountService;
+import ev.demo.revolut.model.account.entity.AccountTransfer;
+import ev.demo.revolut.model.money.Money;
+import ev.demo.revolut.model.transaction.entity.Payout;
+import ev.demo.revolut.model.transaction.entity.Transaction;
+import ev.demo.revolut.model.transaction.entity.TransactionStatus;
+import org.apache.log4j.Logger;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class PayoutProcessingService {
+
+    private static Logger logger = Logger.getLogger(PayoutProcessingService.class);
+
+    private static final long INTERVAL_SECONDS = Long.getLong("revolut.payouts.intervalSeconds", 1);
+    private static final int THREADS = Integer.getInteger("revolut.payouts.threads", 4);
+
+    //legs settled by one DB transaction, a payout with no more legs than this completes atomically
+    private static final int CHUNK_SIZE = Integer.getInteger("revolut.payouts.chunkSize", 1000);
+
+    //a payout still IN_PROGRESS this long after creation with no worker of this process on it was abandoned mid-run
+    private static final long RECOVERY_AGE_SECONDS = Long.getLong("revolut.payouts.recoveryAgeSeconds", 60);
+
+    //payouts held by a worker of this process, the recovery never takes over one of them
+    private static final Set<String> processingPayoutIds = ConcurrentHashMap.newKeySet();
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    private PayoutRepository payoutRepository = new PayoutRepository();
+    private TransactionRepository transactionRepository = new TransactionRepository();
+    private AccountService accountService = new AccountService();
+
+    public static void start() {
+        scheduler.scheduleWithFixedDelay(() -> new PayoutProcessingService().processAllPayouts(), INTERVAL_SECONDS, INTERVAL_SECONDS, TimeUnit.SECONDS);
+        logger.info("PayoutProcessing ScheduledExecutor started");
+    }
+
+    public static void stop() {
+        scheduler.shutdown();
+        executor.shutdown();
+        logger.info("PayoutProcessing ScheduledExecutor stopped");
+    }
+
+    void processAllPayouts() {
+        try {
+            payoutRepository.findAllNew().forEach(payout -> executor.submit(() -> processPayout(payout.getId())));
+            payoutRepository.findAllInProgressCreatedBefore(Instant.now().minusSeconds(RECOVERY_AGE_SECONDS)).stream()
+                    .filter(payout -> !processingPayoutIds.contains(payout.getId()))
+                    .forEach(payout -> executor.submit(() -> recoverPayout(payout.getId())));
+        } catch (Exception e) {
+            logger.error("Processing Payouts failed with exception " + e.toString() + ": " + e.getMessage() + "!");
+        }
+    }
+
+    void processPayout(String payoutId) {
+        Log.debug(logger, "Processing payout '{}' started", payoutId);
+
+        if (!processingPayoutIds.add(payoutId)) {
+            Log.debug(logger, "Payout '{}' is currently processing by another thread", payoutId);
+            return;
+        }
+        try {
+            settlePayout(payoutId);
+        } finally {
+            processingPayoutIds.remove(payoutId);
+        }
+
+        Log.debug(logger, "Processing payout '{}' completed", payoutId);
+    }
+
+    void recoverPayout(String payoutId) {
+        if (!processingPayoutIds.add(payoutId)) {
+            return;
+        }
+        try {
+            //like an expired transaction the payout is failed, the legs settled before the worker stopped stay COMPLETED
+            Optional<Payout> stuckPayout = payoutRepository.find(payoutId).filter(payout -> payout.getStatus() == TransactionStatus.IN_PROGRESS);
+            stuckPayout.ifPresent(payout -> {
+                logger.warn("Payout '" + payoutId + "' created at " + payout.getCreatedAt() + " is left IN_PROGRESS, its remaining legs are failed");
+                failRemainingLegs(payout, "Processing abandoned, payout is still in progress " + RECOVERY_AGE_SECONDS + " seconds after creation");
+            });
+        } finally {
+            processingPayoutIds.remove(payoutId);
+        }
+    }
+
+    private void settlePayout(String payoutId) {
+        Optional<Payout> lockedPayout = payoutRepository.lockAndTryChange(payoutId, payout -> {
+            if (payout.getStatus() == TransactionStatus.NEW) {
+                payout.setStatus(TransactionStatus.IN_PROGRESS);
+                return true;
+            }
+            return false;
+        });
+        if (!lockedPayout.isPresent()) {
+            Log.debug(logger, "Payout '{}' is currently processing by another thread", payoutId);
+            return;
+        }
+
+        Payout payout = lockedPayout.get();
+        int completedLegCount = 0;
+        try {
+            //every chunk locks the source Account once, the hold taken at creation guarantees the funds
+            List<Transaction> legs;
+            do {
+                legs = transactionRepository.lockAndChangePayoutLegs(payoutId, CHUNK_SIZE, TransactionStatus.COMPLETED, null,
+                        (connection, lockedLegs) -> accountService.transferReservedAmounts(connection, payout.getAccountFrom(), toTransfers(lockedLegs)));
+                invalidateCachedAccounts(payout, legs);
+                legs.forEach(TransactionEventPublisher::publish);
+                completedLegCount += legs.size();
+            } while (!legs.isEmpty());
+
+            setStatus(payoutId, TransactionStatus.COMPLETED, null);
+
+        } catch (Exception e) {
+            logger.error("Processing Payout '" + payoutId + "' failed after " + completedLegCount + " legs with exception " + e.toString() + ": " + e.getMessage() + "!");
+            failRemainingLegs(payout, "Processing failed with error " + e.toString() + ": " + e.getMessage());
+        }
+    }
+
+    private void failRemainingLegs(Payout payout, String errorMessage) {
+        try {
+            List<Transaction> legs;
+            do {
+                legs = transactionRepository.lockAndChangePayoutLegs(payout.getId(), CHUNK_SIZE, TransactionStatus.FAILED, errorMessage,
+                        (connection, lockedLegs) -> accountService.releaseReservedAmount(connection, payout.getAccountFrom(),
+                                lockedLegs.stream().mapToLong(Transaction::getReservedAmount).reduce(0, Money::add)));
+                legs.forEach(TransactionEventPublisher::publish);
+            } while (!legs.isEmpty());
+
+            accountService.invalidateCachedAccounts(payout.getAccountFrom());
+            setStatus(payout.getId(), TransactionStatus.FAILED, errorMessage);
+
+        } catch (Exception e) {
+            logger.error("Processing failed Payout '" + payout.getId() + "' failed with exception " + e.toString() + ": " + e.getMessage() + "!");
+        }
+    }
+
+    private void setStatus(String payoutId, TransactionStatus status, String errorMessage) {
+        payoutRepository.lockAndTryChange(payoutId, payout -> {
+            payout.setStatus(status);
+            payout.setError(errorMessage);
+            return true;
+        });
+    }
+
+    private void invalidateCachedAccounts(Payout payout, List<Transaction> legs) {
+        if (!legs.isEmpty()) {
+            List<String> accountIds = legs.stream().map(Transaction::getAccountTo).distinct().collect(Collectors.toList());
+            accountIds.add(payout.getAccountFrom());
+            accountService.invalidateCachedAccounts(accountIds.toArray(new String[0]));
+        }
+    }
+
+    private List<AccountTransfer> toTransfers(List<Transaction> legs) {
+        return legs.stream()
+                .map(leg -> new AccountTransfer(leg.getId(), leg.getAccountTo(), leg.getReservedAmount(), leg.getAmountTo()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,108 @@
+package ev.demo.revolut.model.transaction;
+
+import ev.demo.revolut.db.DataBaseRepository;
+import ev.demo.revolut.db.jdbc.DataBaseField;
+import ev.demo.revolut.db.jdbc.JdbcRepository;
+import ev.demo.revolut.db.jdbc.WhereItem;
+import ev.demo.revolut.model.transaction.entity.Payout;
+import ev.demo.revolut.model.transaction.entity.TransactionStatus;
+import jersey.repackaged.com.google.common.collect.Lists;
+import org.apache.commons.lang3.StringUtils;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+public class PayoutRepository extends JdbcRepository<Payout> implements DataBaseRepository<Payout> {
+
+    private static final String TABLE_NAME = "Payout";
+
+    private static final DataBaseField<Payout> ID = new DataBaseField<>("id", Payout::getId, (dbValue, entity) -> entity.setId((String)dbValue), true);
+    private static final DataBaseField<Payout> ACCOUNT_FROM = new DataBaseField<>("accountFrom", Payout::getAccountFrom, (dbValue, entity) -> entity.setAccountFrom((String)dbValue));
+    private static final DataBaseField<Payout> AMOUNT = new DataBaseField<>("amount", Payout::getAmountMinorUnits, (dbValue, entity) -> entity.setAmountMinorUnits((Long)dbValue));
+    private static final DataBaseField<Payout> CURRENCY = new DataBaseField<>("currency", Payout::getCurrency, (dbValue, entity) -> entity.setCurrency((String)dbValue));
+    private static final DataBaseField<Payout> RESERVED_AMOUNT = new DataBaseField<>("reservedAmount", Payout::getReservedAmount, (dbValue, entity) -> entity.setReservedAmount((Long)dbValue));
+    private static final DataBaseField<Payout> LEG_COUNT = new DataBaseField<>("legCount", Payout::getLegCount, (dbValue, entity) -> entity.setLegCount((Integer)dbValue));
+    private static final DataBaseField<Payout> STATUS = new DataBaseField<>("status", entity -> entity.getStatus().name(), (dbValue, entity) -> entity.setStatus(TransactionStatus.valueOf((String)dbValue)));
+    private static final DataBaseField<Payout> ERROR = new DataBaseField<>("error", entity -> StringUtils.left(entity.getError(), 1000), (dbValue, entity) -> entity.setError((String)dbValue));
+    private static final DataBaseField<Payout> CREATED_BY = new DataBaseField<>("createdBy", Payout::getCreatedBy, (dbValue, entity) -> entity.setCreatedBy((String)dbValue));
+    private static final DataBaseField<Payout> CREATED_AT = new DataBaseField<>("createdAt", (entity) -> Timestamp.from(entity.getCreatedAt()), (dbValue, entity) -> entity.setCreatedAt(((Timestamp) dbValue).toInstant()));
+
+    @SuppressWarnings("unchecked")
+    private static List<DataBaseField<Payout>> fields = Collections.unmodifiableList(Lists.newArrayList(
+            ID, ACCOUNT_FROM, AMOUNT, CURRENCY, RESERVED_AMOUNT, LEG_COUNT, STATUS, ERROR, CREATED_BY, CREATED_AT
+    ));
+
+    @Override
+    protected Class<Payout> getEntityClass() {
+        return Payout.class;
+    }
+
+    @Override
+    protected String getTableName() {
+        return TABLE_NAME;
+    }
+
+    @Override
+    protected DataBaseField<Payout> getIdField() {
+        return ID;
+    }
+
+    @Override
+    protected List<DataBaseField<Payout>> getAllFields() {
+        return fields;
+    }
+
+    @Override
+    public Optional<Payout> find(String payoutId) {
+        return Optional.ofNullable(runInNewConnection((Connection connection) -> selectById(connection, payoutId)));
+    }
+
+    @Override
+    public List<Payout> findAll() {
+        return runInNewConnection(this::selectAll);
+    }
+
+    List<Payout> findAllNew() {
+        WhereItem whereItem = new WhereItem(STATUS.getDbFieldName(), TransactionStatus.NEW.name());
+        return runInNewConnection((Connection connection) -> selectList(connection, whereItem));
+    }
+
+    List<Payout> findAllInProgressCreatedBefore(Instant createdBefore) {
+        String sqlQuery = "SELECT * FROM " + TABLE_NAME + " WHERE " + STATUS.getDbFieldName() + " = ? AND " + CREATED_AT.getDbFieldName() + " < ?";
+        return runInNewConnection((Connection connection) -> selectList(connection, sqlQuery, TransactionStatus.IN_PROGRESS.name(), Timestamp.from(createdBefore)));
+    }
+
+    @Override
+    public Payout insert(Payout payout) {
+        return runInNewTransaction((Connection connection) -> insert(connection, payout));
+    }
+
+    Payout insertPayout(Connection connection, Payout payout) {
+        return insert(connection, payout);
+    }
+
+    @Override
+    public Payout update(Payout payout) {
+        return runInNewTransaction((Connection connection) -> save(connection, payout));
+    }
+
+    Optional<Payout> lockAndTryChange(String payoutId, Function<Payout, Boolean> changeAction) {
+        return runInNewTransaction((Connection connection) -> {
+            Payout payout = selectByIdForUpdate(connection, payoutId);
+            if (payout != null && changeAction.apply(payout)) {
+                return Optional.of(save(connection, payout));
+            }
+            return Optional.<Payout>empty();
+        });
+    }
+
+    @Override
+    public boolean delete(String payoutId) {
+        return runInNewTransaction((Connection connection) -> deleteById(connection, payoutId));
+    }
+}
@@ -0,0 +1,159 @@
+package ev.demo.revolut.model.transaction;
+
+import ev.demo.revolut.db.DataBaseExecutor;
+import ev.demo.revolut.db.exception.EntityNotFoundException;
+import ev.demo.revolut.model.ValidationException;
+import ev.demo.revolut.model.account.AccountService;
+import ev.demo.revolut.model.account.entity.AccountMetadata;
+import ev.demo.revolut.model.money.Money;
+import ev.demo.revolut.model.rate.ExchangeRateTable;
+import ev.demo.revolut.model.transaction.entity.Payout;
+import ev.demo.revolut.model.transaction.entity.PayoutCreationInput;
+import ev.demo.revolut.model.transaction.entity.PayoutLegInput;
+import ev.demo.revolut.model.transaction.entity.Transaction;
+import ev.demo.revolut.model.transaction.entity.TransactionStatus;
+import org.apache.commons.lang3.StringUtils;
+
+import java.sql.Connection;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class PayoutService {
+
+    private static final int DEFAULT_TIMEOUT_SECONDS = 60*10;
+
+    private static final int MAX_LEG_COUNT = Integer.getInteger("revolut.payouts.maxLegCount", 100000);
+
+    private PayoutRepository payoutRepository = new PayoutRepository();
+    private TransactionRepository transactionRepository = new TransactionRepository();
+    private AccountService accountService = new AccountService();
+    private ExchangeRateService exchangeRateService = new ExchangeRateService();
+
+    public PayoutService() {
+
+    }
+
+    public Payout getPayoutById(String payoutId) {
+        return payoutRepository.find(payoutId)
+                .orElseThrow(() -> new EntityNotFoundException("Payout with ID '" + payoutId + "' is not found!"));
+    }
+
+    public CompletableFuture<Payout> getPayoutByIdAsync(String payoutId) {
+        return DataBaseExecutor.supplyAsync(() -> getPayoutById(payoutId));
+    }
+
+    public Payout createPayout(PayoutCreationInput creationInput) {
+        validateCreationInput(creationInput);
+
+        //the source and all recipients are checked by one set-based query
+        Set<String> accountIds = new HashSet<>();
+        accountIds.add(creationInput.getAccountFrom());
+        creationInput.getLegs().forEach(legInput -> accountIds.add(legInput.getAccountTo()));
+        Map<String, AccountMetadata> accounts = accountService.getAccountMetadataByIds(accountIds);
+
+        AccountMetadata accountFrom = accounts.get(creationInput.getAccountFrom());
+        if (accountFrom == null) {
+            throw new ValidationException("AccountFrom is not found!");
+        }
+
+        Instant createdAt = Instant.now();
+        ExchangeRateTable exchangeRateTable = exchangeRateService.getCurrentExchangeRateTable();
+        List<Transaction> legs = new ArrayList<>();
+        long amount = 0;
+        long reservedAmount = 0;
+        for (int i = 0; i < creationInput.getLegs().size(); i++) {
+            PayoutLegInput legInput = creationInput.getLegs().get(i);
+            validateLegInput(i, legInput, creationInput, accounts.keySet());
+
+            Transaction leg = new Transaction();
+            leg.setAccountFrom(creationInput.getAccountFrom());
+            leg.setAccountTo(legInput.getAccountTo());
+            leg.setAmountMinorUnits(Money.toMinorUnits(legInput.getAmount(), creationInput.getCurrency()));
+            leg.setCurrency(creationInput.getCurrency());
+            leg.setStatus(TransactionStatus.NEW);
+            leg.setCreatedBy(creationInput.getCreatedBy());
+            leg.setCreatedAt(createdAt);
+            leg.setExpiredAt(createdAt.plusSeconds(DEFAULT_TIMEOUT_SECONDS));
+            exchangeRateService.pinExchangeRates(leg, exchangeRateTable, accountFrom.getCurrency(), accounts.get(leg.getAccountTo()).getCurrency());
+            leg.setReservedAmount(leg.getAmountFrom());
+            legs.add(leg);
+
+            amount = Money.add(amount, leg.getAmountMinorUnits());
+            reservedAmount = Money.add(reservedAmount, leg.getAmountFrom());
+        }
+
+        Payout payout = new Payout();
+        payout.setAccountFrom(creationInput.getAccountFrom());
+        payout.setAmountMinorUnits(amount);
+        payout.setCurrency(creationInput.getCurrency());
+        payout.setReservedAmount(reservedAmount);
+        payout.setLegCount(legs.size());
+        payout.setStatus(TransactionStatus.NEW);
+        payout.setCreatedBy(creationInput.getCreatedBy());
+        payout.setCreatedAt(createdAt);
+
+        //the source is locked once and the total is held together with the insert of the payout and all of its legs
+        AtomicReference<Payout> insertedPayout = new AtomicReference<>();
+        long totalToReserve = reservedAmount;
+        transactionRepository.insertBatch((Connection connection) -> {
+            accountService.reserveAmount(connection, payout.getAccountFrom(), totalToReserve);
+            insertedPayout.set(payoutRepository.insertPayout(connection, payout));
+            legs.forEach(leg -> leg.setPayoutId(insertedPayout.get().getId()));
+            return legs;
+        });
+
+        accountService.invalidateCachedAccounts(payout.getAccountFrom());
+        return insertedPayout.get();
+    }
+
+    public CompletableFuture<Payout> createPayoutAsync(PayoutCreationInput creationInput) {
+        return DataBaseExecutor.supplyAsync(() -> createPayout(creationInput));
+    }
+
+    private void validateCreationInput(PayoutCreationInput creationInput) {
+        if (creationInput == null) {
+            throw new ValidationException("Payout Creation Input cannot be null!");
+        }
+
+        if (StringUtils.isEmpty(creationInput.getAccountFrom())) {
+            throw new ValidationException("AccountFrom cannot be empty!");
+        }
+
+        if (StringUtils.isEmpty(creationInput.getCurrency())) {
+            throw new ValidationException("Currency cannot be empty!");
+        }
+
+        if (creationInput.getLegs() == null || creationInput.getLegs().isEmpty()) {
+            throw new ValidationException("Legs cannot be empty!");
+        }
+
+        if (creationInput.getLegs().size() > MAX_LEG_COUNT) {
+            throw new ValidationException("Payout cannot contain more than " + MAX_LEG_COUNT + " Legs!");
+        }
+    }
+
+    private void validateLegInput(int index, PayoutLegInput legInput, PayoutCreationInput creationInput, Set<String> existingAccountIds) {
+        //the payout is accepted or rejected as a whole, the message names the first invalid leg
+        if (legInput == null) {
+            throw new ValidationException("Leg " + index + " cannot be null!");
+        }
+
+        if (StringUtils.isEmpty(legInput.getAccountTo()) || !existingAccountIds.contains(legInput.getAccountTo())) {
+            throw new ValidationException("AccountTo of Leg " + index + " is not found!");
+        }
+
+        if (legInput.getAccountTo().equals(creationInput.getAccountFrom())) {
+            throw new ValidationException("AccountTo of Leg " + index + " cannot be the same as AccountFrom!");
+        }
+
+        if (legInput.getAmount() == null || legInput.getAmount().signum() != 1) {
+            throw new ValidationException("Amount of Leg " + index + " must be positive!");
+        }
+
+        if (Money.toMinorUnits(legInput.getAmount(), creationInput.getCurrency()) == 0) {
+            throw new ValidationException("Amount of Leg " + index + " cannot be less than the minor unit of the currency!");
+        }
+    }
+}
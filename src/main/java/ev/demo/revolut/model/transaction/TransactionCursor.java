@@ -0,0 +1,46 @@
+package ev.demo.revolut.model.transaction;
+
+import ev.demo.revolut.model.ValidationException;
+import ev.demo.revolut.model.transaction.entity.Transaction;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+final class TransactionCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private final Instant createdAt;
+    private final String id;
+
+    TransactionCursor(Instant createdAt, String id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    static String encode(Transaction lastTransaction) {
+        String value = lastTransaction.getCreatedAt().toString() + SEPARATOR + lastTransaction.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static TransactionCursor decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separatorIndex = value.indexOf(SEPARATOR);
+
+            return new TransactionCursor(Instant.parse(value.substring(0, separatorIndex)), value.substring(separatorIndex + 1));
+
+        } catch (RuntimeException e) {
+            throw new ValidationException("Cursor '" + cursor + "' is not valid!");
+        }
+    }
+}
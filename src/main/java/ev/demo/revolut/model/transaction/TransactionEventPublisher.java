@@ -0,0 +1,124 @@
+package ev.demo.revolut.model.transaction;
+
+import ev.demo.revolut.model.transaction.entity.Transaction;
+import org.apache.log4j.Logger;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TransactionEventPublisher {
+
+    private static Logger logger = Logger.getLogger(TransactionEventPublisher.class);
+
+    private static final int MAX_SUBSCRIBERS = Integer.getInteger("revolut.events.maxSubscribers", 1000);
+    private static final long HEARTBEAT_SECONDS = Long.getLong("revolut.events.heartbeatSeconds", 15);
+
+    private static final String TRANSACTION_KEY_PREFIX = "transaction:";
+    private static final String ACCOUNT_KEY_PREFIX = "account:";
+
+    private static final Map<String, Set<TransactionEventSubscriber>> subscribersByKey = new ConcurrentHashMap<>();
+    private static final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private static final ScheduledExecutorService heartbeatScheduler = Executors.newSingleThreadScheduledExecutor();
+
+    //subscribers are written to by this thread, so a slow client never holds up the processing
+    private static final ExecutorService notifier = Executors.newSingleThreadExecutor();
+
+    public static void start() {
+        heartbeatScheduler.scheduleWithFixedDelay(TransactionEventPublisher::sendHeartbeats, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+        logger.info("TransactionEventPublisher heartbeat ScheduledExecutor started");
+    }
+
+    public static void stop() {
+        heartbeatScheduler.shutdown();
+        notifier.shutdown();
+        logger.info("TransactionEventPublisher heartbeat ScheduledExecutor stopped");
+    }
+
+    public static boolean subscribeToTransaction(String transactionId, TransactionEventSubscriber subscriber) {
+        return subscribe(TRANSACTION_KEY_PREFIX + transactionId, subscriber);
+    }
+
+    public static boolean subscribeToAccount(String accountId, TransactionEventSubscriber subscriber) {
+        return subscribe(ACCOUNT_KEY_PREFIX + accountId, subscriber);
+    }
+
+    public static void unsubscribeFromTransaction(String transactionId, TransactionEventSubscriber subscriber) {
+        unsubscribe(TRANSACTION_KEY_PREFIX + transactionId, subscriber);
+    }
+
+    public static void unsubscribeFromAccount(String accountId, TransactionEventSubscriber subscriber) {
+        unsubscribe(ACCOUNT_KEY_PREFIX + accountId, subscriber);
+    }
+
+    public static int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    static void publish(Transaction transaction) {
+        //without subscribers a status change costs three map lookups
+        String[] keys = {TRANSACTION_KEY_PREFIX + transaction.getId(), ACCOUNT_KEY_PREFIX + transaction.getAccountFrom(), ACCOUNT_KEY_PREFIX + transaction.getAccountTo()};
+        boolean subscribed = false;
+        for (String key : keys) {
+            subscribed |= subscribersByKey.containsKey(key);
+        }
+        if (!subscribed) {
+            return;
+        }
+
+        notifier.execute(() -> {
+            for (String key : keys) {
+                Set<TransactionEventSubscriber> subscribers = subscribersByKey.get(key);
+                if (subscribers != null) {
+                    subscribers.forEach(subscriber -> {
+                        if (!subscriber.onTransaction(transaction)) {
+                            unsubscribe(key, subscriber);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    static void sendHeartbeats() {
+        try {
+            subscribersByKey.forEach((key, subscribers) -> subscribers.forEach(subscriber -> {
+                if (!subscriber.onHeartbeat()) {
+                    unsubscribe(key, subscriber);
+                }
+            }));
+        } catch (Exception e) {
+            logger.error("Sending heartbeats failed with exception " + e.toString() + ": " + e.getMessage() + "!");
+        }
+    }
+
+    private static boolean subscribe(String key, TransactionEventSubscriber subscriber) {
+        if (subscriberCount.incrementAndGet() > MAX_SUBSCRIBERS) {
+            subscriberCount.decrementAndGet();
+            return false;
+        }
+
+        //added inside compute, so a concurrent unsubscribe cannot drop the set in between
+        subscribersByKey.compute(key, (k, subscribers) -> {
+            Set<TransactionEventSubscriber> keySubscribers = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+            keySubscribers.add(subscriber);
+            return keySubscribers;
+        });
+        return true;
+    }
+
+    private static void unsubscribe(String key, TransactionEventSubscriber subscriber) {
+        subscribersByKey.computeIfPresent(key, (k, subscribers) -> {
+            if (subscribers.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+            }
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+}
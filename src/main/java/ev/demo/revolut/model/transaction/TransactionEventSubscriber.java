@@ -0,0 +1,11 @@
+package ev.demo.revolut.model.transaction;
+
+import ev.demo.revolut.model.transaction.entity.Transaction;
+
+public interface TransactionEventSubscriber {
+
+    //both return false once the subscriber is gone, it is dropped then
+    boolean onTransaction(Transaction transaction);
+
+    boolean onHeartbeat();
+}
@@ -1,12 +1,16 @@
 package ev.demo.revolut.model.transaction;
 
+import ev.demo.revolut.logging.Log;
 import ev.demo.revolut.model.account.AccountService;
-import ev.demo.revolut.model.account.entity.Account;
+import ev.demo.revolut.model.account.entity.AccountMetadata;
+import ev.demo.revolut.model.rate.ExchangeRateTable;
 import ev.demo.revolut.model.transaction.entity.Transaction;
 import ev.demo.revolut.model.transaction.entity.TransactionStatus;
+import ev.demo.revolut.tracing.TracingContext;
+import ev.demo.revolut.tracing.TransactionStage;
 import org.apache.log4j.Logger;
 
-import java.math.BigDecimal;
+import java.sql.Connection;
 import java.time.Instant;
 import java.util.Comparator;
 import java.util.List;
@@ -24,6 +28,9 @@ public class TransactionProcessingService {
 
     private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
 
+    //active transactions found by the last run, read by the admission control instead of counting on every request
+    private static volatile int backlogSize;
+
     private ExecutorService executor = Executors.newCachedThreadPool();
 
     private TransactionRepository transactionRepository = new TransactionRepository();
@@ -48,12 +55,17 @@ public class TransactionProcessingService {
         logger.info("TransactionProcessing ScheduledExecutor stopped");
     }
 
+    public static int getBacklogSize() {
+        return backlogSize;
+    }
+
     void processAllTransactions() {
         Instant currentTime = Instant.now();
 
         List<Transaction> transactions = transactionRepository.findAllNewOrInProgress();
         List<Transaction> expiredTransactions = transactions.stream().filter(transaction -> !currentTime.isBefore(transaction.getExpiredAt())).collect(Collectors.toList());
         transactions.removeAll(expiredTransactions);
+        backlogSize = transactions.size();
 
         processActiveTransactions(transactions);
 
@@ -75,57 +87,121 @@ public class TransactionProcessingService {
     }
 
     private void processTransaction(String transactionId) {
-        logger.debug("Processing transaction '" + transactionId + "' started");
+        Log.debug(logger, "Processing transaction '{}' started", transactionId);
 
-        try{
+        TracingContext.setTransactionId(transactionId);
+        try (TransactionStage processStage = TransactionStage.start(TransactionStage.PROCESS, transactionId)) {
             Optional<Transaction> lockedTransaction = setInProgressStatusIfActual(transactionId);
             if (!lockedTransaction.isPresent()) {
-                logger.debug("Transaction '" + transactionId + "' is currently processing by another thread");
+                Log.debug(logger, "Transaction '{}' is currently processing by another thread", transactionId);
+                processStage.complete();
                 return;
             }
 
             Transaction transaction = lockedTransaction.get();
+            processStage.setAccounts(transaction.getAccountFrom(), transaction.getAccountTo());
 
-            Account accountFrom = accountService.getAccountById(transaction.getAccountFrom());
-            Account accountTo = accountService.getAccountById(transaction.getAccountTo());
-
-            BigDecimal amountToRemove = exchangeRateService.convert(transaction.getAmount(), transaction.getCurrency(), accountFrom.getCurrency());
-            BigDecimal amountToAdd = exchangeRateService.convert(transaction.getAmount(), transaction.getCurrency(), accountTo.getCurrency());
+            if (transaction.getAmountFrom() == null || transaction.getAmountTo() == null) {
+                pinExchangeRates(transaction);
+            }
 
-            transactionRepository.runInNewTransaction(connection -> {
-                accountService.transferAmount(connection, transaction.getAccountFrom(), transaction.getAccountTo(), amountToRemove, amountToAdd);
-                transaction.setStatus(TransactionStatus.COMPLETED);
-                transactionRepository.update(connection, transaction);
-            });
+            try {
+                try (TransactionStage commitStage = startStage(TransactionStage.TRANSFER_COMMIT, transaction)) {
+                    transactionRepository.runInNewTransaction(connection -> {
+                        try (TransactionStage transferStage = startStage(TransactionStage.TRANSFER, transaction)) {
+                            if (transaction.getReservedAmount() != null) {
+                                accountService.transferReservedAmount(connection, transaction.getId(), transaction.getAccountFrom(), transaction.getAccountTo(), transaction.getReservedAmount(), transaction.getAmountTo());
+                            } else {
+                                accountService.transferAmount(connection, transaction.getId(), transaction.getAccountFrom(), transaction.getAccountTo(), transaction.getAmountFrom(), transaction.getAmountTo());
+                            }
+                            transferStage.complete();
+                        }
+
+                        try (TransactionStage statusStage = startStage(TransactionStage.STATUS_UPDATE, transaction)) {
+                            transaction.setStatus(TransactionStatus.COMPLETED);
+                            transactionRepository.update(connection, transaction);
+                            statusStage.complete();
+                        }
+                    });
+                    commitStage.complete();
+                }
+                TransactionEventPublisher.publish(transaction);
+            } finally {
+                accountService.invalidateCachedAccounts(transaction.getAccountFrom(), transaction.getAccountTo());
+            }
+            processStage.complete();
 
         } catch (Exception e) {
+            //the process stage is closed before this block, a stage that threw is recorded as failed
             logger.error("Processing Transaction '" + transactionId + "' failed with exception " + e.toString() + ": " + e.getMessage() + "!");
             setErrorStatusIfActual(transactionId, "Processing failed with error "  + e.toString() + ": " + e.getMessage());
+        } finally {
+            TracingContext.clear();
+        }
+
+        Log.debug(logger, "Processing transaction '{}' completed", transactionId);
+    }
+
+    private void pinExchangeRates(Transaction transaction) {
+        //transactions stored without pinned rates use the table of their version, if it is still in the history
+        ExchangeRateTable exchangeRateTable;
+        AccountMetadata accountFrom;
+        AccountMetadata accountTo;
+        try (TransactionStage loadStage = startStage(TransactionStage.ACCOUNT_LOAD, transaction)) {
+            exchangeRateTable = exchangeRateService.getExchangeRateTable(transaction.getExchangeRateVersion());
+            accountFrom = accountService.getAccountMetadata(transaction.getAccountFrom());
+            accountTo = accountService.getAccountMetadata(transaction.getAccountTo());
+            loadStage.complete();
         }
 
-        logger.debug("Processing transaction '" + transactionId + "' completed");
+        try (TransactionStage conversionStage = startStage(TransactionStage.RATE_CONVERSION, transaction)) {
+            exchangeRateService.pinExchangeRates(transaction, exchangeRateTable, accountFrom.getCurrency(), accountTo.getCurrency());
+            conversionStage.complete();
+        }
+    }
+
+    private static TransactionStage startStage(String stage, Transaction transaction) {
+        return TransactionStage.start(stage, transaction.getId(), transaction.getAccountFrom(), transaction.getAccountTo());
     }
 
     private Optional<Transaction> setInProgressStatusIfActual(String transactionId) {
-        return transactionRepository.lockAndTryChange(transactionId, transaction -> {
-            if (transaction.getStatus() == TransactionStatus.NEW) {
-                transaction.setStatus(TransactionStatus.IN_PROGRESS);
-                return true;
-            }
-            return false;
-        });
+        try (TransactionStage claimStage = TransactionStage.start(TransactionStage.CLAIM, transactionId)) {
+            Optional<Transaction> claimedTransaction = transactionRepository.lockAndTryChange(transactionId, transaction -> {
+                claimStage.setAccounts(transaction.getAccountFrom(), transaction.getAccountTo());
+                if (transaction.getStatus() == TransactionStatus.NEW) {
+                    transaction.setStatus(TransactionStatus.IN_PROGRESS);
+                    return true;
+                }
+                return false;
+            });
+            claimStage.complete();
+            return claimedTransaction;
+        }
+    }
+
+    private void releaseReservedAmount(Connection connection, Transaction failedTransaction) {
+        if (failedTransaction.getReservedAmount() != null) {
+            accountService.releaseReservedAmount(connection, failedTransaction.getAccountFrom(), failedTransaction.getReservedAmount());
+        }
     }
 
     private void setErrorStatusIfActual(String transactionId, String errorMessage) {
-        try{
-            transactionRepository.lockAndTryChange(transactionId, transaction -> {
+        try (TransactionStage statusStage = TransactionStage.start(TransactionStage.STATUS_UPDATE, transactionId)) {
+            Optional<Transaction> failedTransaction = transactionRepository.lockAndTryChange(transactionId, transaction -> {
+                statusStage.setAccounts(transaction.getAccountFrom(), transaction.getAccountTo());
                 if (transaction.getStatus() == TransactionStatus.IN_PROGRESS || transaction.getStatus() == TransactionStatus.NEW) {
                     transaction.setStatus(TransactionStatus.FAILED);
                     transaction.setError(errorMessage);
                     return true;
                 }
                 return false;
+            }, this::releaseReservedAmount);
+
+            failedTransaction.ifPresent(transaction -> {
+                accountService.invalidateCachedAccounts(transaction.getAccountFrom());
+                TransactionEventPublisher.publish(transaction);
             });
+            statusStage.complete();
         } catch (Exception e) {
             logger.error("Processing failed Transaction '" + transactionId + "' failed with exception " + e.toString() + ": " + e.getMessage() + "!");
         }
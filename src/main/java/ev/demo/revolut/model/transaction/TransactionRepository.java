@@ -5,14 +5,16 @@ import ev.demo.revolut.db.jdbc.DataBaseField;
 import ev.demo.revolut.db.jdbc.WhereItem;
 import ev.demo.revolut.db.jdbc.JdbcRepository;
 import ev.demo.revolut.model.transaction.entity.Transaction;
+import ev.demo.revolut.model.transaction.entity.TransactionHistoryFilter;
 import ev.demo.revolut.model.transaction.entity.TransactionStatus;
 import jersey.repackaged.com.google.common.collect.Lists;
 import org.apache.commons.lang3.StringUtils;
 
-import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 public class TransactionRepository extends JdbcRepository<Transaction> implements DataBaseRepository<Transaction> {
@@ -22,17 +24,26 @@ public class TransactionRepository extends JdbcRepository<Transaction> implement
     private static final DataBaseField<Transaction> ID = new DataBaseField<>("id", Transaction::getId, (dbValue, entity) -> entity.setId((String)dbValue), true);
     private static final DataBaseField<Transaction> ACCOUNT_FROM = new DataBaseField<>("accountFrom", Transaction::getAccountFrom, (dbValue, entity) -> entity.setAccountFrom((String)dbValue));
     private static final DataBaseField<Transaction> ACCOUNT_TO = new DataBaseField<>("accountTo", Transaction::getAccountTo, (dbValue, entity) -> entity.setAccountTo((String)dbValue));
-    private static final DataBaseField<Transaction> AMOUNT = new DataBaseField<>("amount", Transaction::getAmount, (dbValue, entity) -> entity.setAmount((BigDecimal)dbValue));
+    private static final DataBaseField<Transaction> AMOUNT = new DataBaseField<>("amount", Transaction::getAmountMinorUnits, (dbValue, entity) -> entity.setAmountMinorUnits((Long)dbValue));
     private static final DataBaseField<Transaction> CURRENCY = new DataBaseField<>("currency", Transaction::getCurrency, (dbValue, entity) -> entity.setCurrency((String)dbValue));
     private static final DataBaseField<Transaction> STATUS = new DataBaseField<>("status", entity -> entity.getStatus().name(), (dbValue, entity) -> entity.setStatus(TransactionStatus.valueOf((String)dbValue)));
     private static final DataBaseField<Transaction> ERROR = new DataBaseField<>("error", entity -> StringUtils.left(entity.getError(), 1000), (dbValue, entity) -> entity.setError((String)dbValue));
     private static final DataBaseField<Transaction> CREATED_BY = new DataBaseField<>("createdBy", Transaction::getCreatedBy, (dbValue, entity) -> entity.setCreatedBy((String)dbValue));
     private static final DataBaseField<Transaction> CREATED_AT = new DataBaseField<>("createdAt", (entity) -> Timestamp.from(entity.getCreatedAt()), (dbValue, entity) -> entity.setCreatedAt(((Timestamp) dbValue).toInstant()));
     private static final DataBaseField<Transaction> EXPIRED_AT = new DataBaseField<>("expiredAt", (entity) -> Timestamp.from(entity.getExpiredAt()), (dbValue, entity) -> entity.setExpiredAt(((Timestamp) dbValue).toInstant()));
+    private static final DataBaseField<Transaction> IDEMPOTENCY_KEY = new DataBaseField<>("idempotencyKey", Transaction::getIdempotencyKey, (dbValue, entity) -> entity.setIdempotencyKey((String)dbValue));
+    private static final DataBaseField<Transaction> RESERVED_AMOUNT = new DataBaseField<>("reservedAmount", Transaction::getReservedAmount, (dbValue, entity) -> entity.setReservedAmount((Long)dbValue));
+    private static final DataBaseField<Transaction> EXCHANGE_RATE_VERSION = new DataBaseField<>("exchangeRateVersion", Transaction::getExchangeRateVersion, (dbValue, entity) -> entity.setExchangeRateVersion((Long)dbValue));
+    private static final DataBaseField<Transaction> EXCHANGE_RATE_FROM = new DataBaseField<>("exchangeRateFrom", Transaction::getFixedPointExchangeRateFrom, (dbValue, entity) -> entity.setFixedPointExchangeRateFrom((Long)dbValue));
+    private static final DataBaseField<Transaction> EXCHANGE_RATE_TO = new DataBaseField<>("exchangeRateTo", Transaction::getFixedPointExchangeRateTo, (dbValue, entity) -> entity.setFixedPointExchangeRateTo((Long)dbValue));
+    private static final DataBaseField<Transaction> AMOUNT_FROM = new DataBaseField<>("amountFrom", Transaction::getAmountFrom, (dbValue, entity) -> entity.setAmountFrom((Long)dbValue));
+    private static final DataBaseField<Transaction> AMOUNT_TO = new DataBaseField<>("amountTo", Transaction::getAmountTo, (dbValue, entity) -> entity.setAmountTo((Long)dbValue));
+    private static final DataBaseField<Transaction> PAYOUT_ID = new DataBaseField<>("payoutId", Transaction::getPayoutId, (dbValue, entity) -> entity.setPayoutId((String)dbValue));
 
     @SuppressWarnings("unchecked")
     private static List<DataBaseField<Transaction>> fields = Collections.unmodifiableList(Lists.newArrayList(
-            ID, ACCOUNT_FROM, ACCOUNT_TO, AMOUNT, CURRENCY, STATUS, ERROR, CREATED_BY, CREATED_AT, EXPIRED_AT
+            ID, ACCOUNT_FROM, ACCOUNT_TO, AMOUNT, CURRENCY, STATUS, ERROR, CREATED_BY, CREATED_AT, EXPIRED_AT, IDEMPOTENCY_KEY, RESERVED_AMOUNT,
+            EXCHANGE_RATE_VERSION, EXCHANGE_RATE_FROM, EXCHANGE_RATE_TO, AMOUNT_FROM, AMOUNT_TO, PAYOUT_ID
     ));
 
 
@@ -66,9 +77,74 @@ public class TransactionRepository extends JdbcRepository<Transaction> implement
         return runInNewConnection(this::selectAll);
     }
 
+    int forEach(Consumer<Transaction> rowConsumer) {
+        return runInNewConnection((Connection connection) -> selectEach(connection, "SELECT * FROM " + TABLE_NAME, rowConsumer));
+    }
+
+    Optional<Transaction> findByIdempotencyKey(String idempotencyKey) {
+        WhereItem whereItem = new WhereItem(IDEMPOTENCY_KEY.getDbFieldName(), idempotencyKey);
+        return runInNewConnection((Connection connection) -> selectList(connection, whereItem)).stream().findFirst();
+    }
+
     List<Transaction> findAllNewOrInProgress() {
-        WhereItem whereItem = new WhereItem(STATUS.getDbFieldName(), TransactionStatus.NEW.name(), TransactionStatus.IN_PROGRESS.name());
-        return runInNewConnection((Connection connection) -> selectList(connection, whereItem));
+        //payout legs are settled together by PayoutProcessingService
+        String sqlQuery = "SELECT * FROM " + TABLE_NAME + " WHERE " + STATUS.getDbFieldName() + " IN (?, ?) AND " + PAYOUT_ID.getDbFieldName() + " IS NULL";
+        return runInNewConnection((Connection connection) -> selectList(connection, sqlQuery, TransactionStatus.NEW.name(), TransactionStatus.IN_PROGRESS.name()));
+    }
+
+    Set<String> findCompletedIds() {
+        WhereItem whereItem = new WhereItem(STATUS.getDbFieldName(), TransactionStatus.COMPLETED.name());
+        List<Object> ids = runInNewConnection((Connection connection) -> selectIds(connection, whereItem));
+
+        Set<String> completedIds = new HashSet<>(ids.size() * 2);
+        ids.forEach(id -> completedIds.add((String) id));
+        return completedIds;
+    }
+
+    int forEachCompleted(Consumer<Transaction> rowConsumer) {
+        //in id order, so a run lists its violations in the same order every time
+        String sqlQuery = "SELECT * FROM " + TABLE_NAME + " WHERE " + STATUS.getDbFieldName() + " = ? ORDER BY " + ID.getDbFieldName();
+        return runInNewConnection((Connection connection) -> selectEach(connection, sqlQuery, rowConsumer, TransactionStatus.COMPLETED.name()));
+    }
+
+    List<Transaction> findByAccountFrom(TransactionHistoryFilter filter, TransactionCursor cursor, int limit) {
+        return findByAccount(ACCOUNT_FROM, filter, cursor, limit);
+    }
+
+    List<Transaction> findByAccountTo(TransactionHistoryFilter filter, TransactionCursor cursor, int limit) {
+        return findByAccount(ACCOUNT_TO, filter, cursor, limit);
+    }
+
+    private List<Transaction> findByAccount(DataBaseField<Transaction> accountField, TransactionHistoryFilter filter, TransactionCursor cursor, int limit) {
+        //served by the (account, createdAt, id) indexes, the keyset condition keeps every page as cheap as the first one
+        String sqlQuery = "SELECT * FROM " + TABLE_NAME + " WHERE " + accountField.getDbFieldName() + " = ?";
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(filter.getAccountId());
+
+        if (filter.getStatus() != null) {
+            sqlQuery += " AND " + STATUS.getDbFieldName() + " = ?";
+            parameters.add(filter.getStatus().name());
+        }
+        if (filter.getCreatedFrom() != null) {
+            sqlQuery += " AND " + CREATED_AT.getDbFieldName() + " >= ?";
+            parameters.add(Timestamp.from(filter.getCreatedFrom()));
+        }
+        if (filter.getCreatedTo() != null) {
+            sqlQuery += " AND " + CREATED_AT.getDbFieldName() + " < ?";
+            parameters.add(Timestamp.from(filter.getCreatedTo()));
+        }
+        if (cursor != null) {
+            sqlQuery += " AND (" + CREATED_AT.getDbFieldName() + " < ? OR (" + CREATED_AT.getDbFieldName() + " = ? AND " + ID.getDbFieldName() + " < ?))";
+            parameters.add(Timestamp.from(cursor.getCreatedAt()));
+            parameters.add(Timestamp.from(cursor.getCreatedAt()));
+            parameters.add(cursor.getId());
+        }
+
+        sqlQuery += " ORDER BY " + CREATED_AT.getDbFieldName() + " DESC, " + ID.getDbFieldName() + " DESC LIMIT ?";
+        parameters.add(limit);
+
+        String finalSqlQuery = sqlQuery;
+        return runInNewConnection((Connection connection) -> selectList(connection, finalSqlQuery, parameters.toArray()));
     }
 
     @Override
@@ -76,6 +152,18 @@ public class TransactionRepository extends JdbcRepository<Transaction> implement
         return runInNewTransaction((Connection connection) -> insert(connection, transaction));
     }
 
+    Transaction insert(Transaction transaction, Consumer<Connection> beforeInsert) {
+        return runInNewTransaction((Connection connection) -> {
+            beforeInsert.accept(connection);
+            return insert(connection, transaction);
+        });
+    }
+
+    //the function prepares the batch in the same DB transaction and returns the transactions to insert
+    List<Transaction> insertBatch(Function<Connection, List<Transaction>> prepareBatch) {
+        return runInNewTransaction((Connection connection) -> insertBatch(connection, prepareBatch.apply(connection)));
+    }
+
     @Override
     public Transaction update(Transaction transaction) {
         return runInNewTransaction((Connection connection) -> save(connection, transaction));
@@ -90,6 +178,14 @@ public class TransactionRepository extends JdbcRepository<Transaction> implement
         return runInNewTransaction((Connection connection) -> lockAndTryChange(connection, transactionId, changeAction));
     }
 
+    Optional<Transaction> lockAndTryChange(String transactionId, Function<Transaction, Boolean> changeAction, BiConsumer<Connection, Transaction> afterChange) {
+        return runInNewTransaction((Connection connection) -> {
+            Optional<Transaction> changedTransaction = lockAndTryChange(connection, transactionId, changeAction);
+            changedTransaction.ifPresent(transaction -> afterChange.accept(connection, transaction));
+            return changedTransaction;
+        });
+    }
+
     private Optional<Transaction> lockAndTryChange(Connection connection, String transactionId, Function<Transaction, Boolean> changeAction) {
         Transaction transaction = selectByIdForUpdate(connection, transactionId);
         if (transaction != null) {
@@ -101,8 +197,44 @@ public class TransactionRepository extends JdbcRepository<Transaction> implement
         return Optional.empty();
     }
 
+    //locks up to limit NEW legs of the payout, the action runs in the same DB transaction before the legs get the new status
+    List<Transaction> lockAndChangePayoutLegs(String payoutId, int limit, TransactionStatus status, String error, BiConsumer<Connection, List<Transaction>> beforeChange) {
+        return runInNewTransaction((Connection connection) -> {
+            String sqlQuery = "SELECT * FROM " + TABLE_NAME + " WHERE " + PAYOUT_ID.getDbFieldName() + " = ? AND " + STATUS.getDbFieldName() + " = ?" +
+                    " ORDER BY " + ID.getDbFieldName() + " LIMIT ? FOR UPDATE";
+            List<Transaction> legs = selectList(connection, sqlQuery, payoutId, TransactionStatus.NEW.name(), limit);
+            if (legs.isEmpty()) {
+                return legs;
+            }
+
+            beforeChange.accept(connection, legs);
+
+            Object[][] parameters = new Object[legs.size()][];
+            for (int i = 0; i < legs.size(); i++) {
+                Transaction leg = legs.get(i);
+                leg.setStatus(status);
+                leg.setError(error);
+                parameters[i] = new Object[] {status.name(), StringUtils.left(error, 1000), leg.getId()};
+            }
+            batchUpdate(connection, "UPDATE " + TABLE_NAME + " SET " + STATUS.getDbFieldName() + " = ?, " + ERROR.getDbFieldName() + " = ? WHERE " + ID.getDbFieldName() + " = ?", parameters);
+            return legs;
+        });
+    }
+
     @Override
     public boolean delete(String transactionId) {
         return runInNewTransaction((Connection connection) -> deleteById(connection, transactionId));
     }
+
+    boolean delete(String transactionId, BiConsumer<Connection, Transaction> beforeDelete) {
+        return runInNewTransaction((Connection connection) -> {
+            Transaction transaction = selectByIdForUpdate(connection, transactionId);
+            if (transaction == null) {
+                return false;
+            }
+
+            beforeDelete.accept(connection, transaction);
+            return deleteById(connection, transactionId);
+        });
+    }
 }
@@ -1,22 +1,57 @@
 package ev.demo.revolut.model.transaction;
 
+import ev.demo.revolut.cache.BoundedCache;
+import ev.demo.revolut.db.DataBaseExecutor;
+import ev.demo.revolut.db.exception.DuplicateKeyException;
 import ev.demo.revolut.db.exception.EntityNotFoundException;
 import ev.demo.revolut.model.ValidationException;
 import ev.demo.revolut.model.account.AccountService;
+import ev.demo.revolut.model.account.entity.AccountMetadata;
+import ev.demo.revolut.model.money.Money;
+import ev.demo.revolut.model.rate.ExchangeRateTable;
 import ev.demo.revolut.model.transaction.entity.Transaction;
+import ev.demo.revolut.model.transaction.entity.TransactionBatchItem;
+import ev.demo.revolut.model.transaction.entity.TransactionBatchResult;
 import ev.demo.revolut.model.transaction.entity.TransactionCreationInput;
+import ev.demo.revolut.model.transaction.entity.TransactionDirection;
+import ev.demo.revolut.model.transaction.entity.TransactionHistoryFilter;
+import ev.demo.revolut.model.transaction.entity.TransactionPage;
 import ev.demo.revolut.model.transaction.entity.TransactionStatus;
 import org.apache.commons.lang3.StringUtils;
 
+import java.sql.Connection;
 import java.time.Instant;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 public class TransactionService {
 
     private static final int DEFAULT_TIMEOUT_SECONDS = 60*10;
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    //same order as the history query: newest first, ID breaks ties of the same creation time
+    private static final Comparator<Transaction> NEWEST_FIRST = Comparator.comparing(Transaction::getCreatedAt)
+            .thenComparing(Transaction::getId).reversed();
+
+    private static final int MAX_BATCH_SIZE = Integer.getInteger("revolut.transactions.maxBatchSize", 10000);
+
+    private static final int IDEMPOTENCY_KEY_MAX_LENGTH = 255;
+    private static final int IDEMPOTENCY_CACHE_SIZE = Integer.getInteger("revolut.idempotency.cacheSize", 10000);
+    private static final long IDEMPOTENCY_CACHE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(Long.getLong("revolut.idempotency.cacheTtlMinutes", 60));
+
+    //idempotency key -> transaction ID, the unique idempotencyKey column is the durable fallback
+    private static final BoundedCache<String, String> idempotencyCache = new BoundedCache<>(IDEMPOTENCY_CACHE_SIZE, IDEMPOTENCY_CACHE_TTL_MILLIS);
+
     private TransactionRepository transactionRepository = new TransactionRepository();
     private AccountService accountService = new AccountService();
+    private ExchangeRateService exchangeRateService = new ExchangeRateService();
+
+    private boolean reservationEnabled = Boolean.getBoolean("revolut.reservation.enabled");
 
     public TransactionService() {
 
@@ -26,35 +61,299 @@ public class TransactionService {
         return transactionRepository.findAll();
     }
 
+    public int forEachTransaction(Consumer<Transaction> transactionConsumer) {
+        return transactionRepository.forEach(transactionConsumer);
+    }
+
+    public Set<String> getCompletedTransactionIds() {
+        return transactionRepository.findCompletedIds();
+    }
+
+    public int forEachCompletedTransaction(Consumer<Transaction> transactionConsumer) {
+        return transactionRepository.forEachCompleted(transactionConsumer);
+    }
+
     public Transaction getTransactionById(String transactionId) {
         return transactionRepository.find(transactionId)
                 .orElseThrow(() -> new EntityNotFoundException("Transaction with ID '" + transactionId + "' is not found!"));
     }
 
+    public CompletableFuture<Transaction> getTransactionByIdAsync(String transactionId) {
+        return DataBaseExecutor.supplyAsync(() -> getTransactionById(transactionId));
+    }
+
+    public TransactionPage getAccountTransactions(TransactionHistoryFilter filter) {
+        validateHistoryFilter(filter);
+
+        int limit = filter.getLimit() != null ? filter.getLimit() : DEFAULT_PAGE_SIZE;
+        TransactionCursor cursor = StringUtils.isEmpty(filter.getCursor()) ? null : TransactionCursor.decode(filter.getCursor());
+        TransactionDirection direction = filter.getDirection() != null ? filter.getDirection() : TransactionDirection.BOTH;
+
+        //one more row than requested tells whether there is a next page
+        List<Transaction> transactions = new ArrayList<>();
+        if (direction != TransactionDirection.IN) {
+            transactions.addAll(transactionRepository.findByAccountFrom(filter, cursor, limit + 1));
+        }
+        if (direction != TransactionDirection.OUT) {
+            transactions.addAll(transactionRepository.findByAccountTo(filter, cursor, limit + 1));
+        }
+        transactions.sort(NEWEST_FIRST);
+
+        if (transactions.size() <= limit) {
+            return new TransactionPage(transactions, null);
+        }
+
+        List<Transaction> pageTransactions = new ArrayList<>(transactions.subList(0, limit));
+        return new TransactionPage(pageTransactions, TransactionCursor.encode(pageTransactions.get(limit - 1)));
+    }
+
+    public CompletableFuture<TransactionPage> getAccountTransactionsAsync(TransactionHistoryFilter filter) {
+        return DataBaseExecutor.supplyAsync(() -> getAccountTransactions(filter));
+    }
+
     public Transaction createTransaction(TransactionCreationInput creationInput) {
+        return createTransaction(creationInput, null);
+    }
+
+    public Transaction createTransaction(TransactionCreationInput creationInput, String idempotencyKey) {
+        if (StringUtils.isEmpty(idempotencyKey)) {
+            validateCreationInput(creationInput);
+            return insertTransaction(newTransaction(creationInput, null));
+        }
+
+        if (idempotencyKey.length() > IDEMPOTENCY_KEY_MAX_LENGTH) {
+            throw new ValidationException("Idempotency-Key cannot be longer than " + IDEMPOTENCY_KEY_MAX_LENGTH + " characters!");
+        }
+
+        if (creationInput != null) {
+            Optional<Transaction> originalTransaction = findByIdempotencyKey(idempotencyKey);
+            if (originalTransaction.isPresent()) {
+                return checkSameCreationInput(originalTransaction.get(), creationInput);
+            }
+        }
+
         validateCreationInput(creationInput);
 
+        try {
+            Transaction transaction = insertTransaction(newTransaction(creationInput, idempotencyKey));
+            idempotencyCache.put(idempotencyKey, transaction.getId());
+            return transaction;
+
+        } catch (DuplicateKeyException e) {
+            //concurrent request with the same key has inserted the transaction first
+            Transaction originalTransaction = findByIdempotencyKey(idempotencyKey).orElseThrow(() -> e);
+            return checkSameCreationInput(originalTransaction, creationInput);
+        }
+    }
+
+    public CompletableFuture<Transaction> createTransactionAsync(TransactionCreationInput creationInput, String idempotencyKey) {
+        return DataBaseExecutor.supplyAsync(() -> createTransaction(creationInput, idempotencyKey));
+    }
+
+    public TransactionBatchResult createTransactions(List<TransactionCreationInput> creationInputs) {
+        if (creationInputs == null || creationInputs.isEmpty()) {
+            throw new ValidationException("Transaction Creation Inputs cannot be empty!");
+        }
+        if (creationInputs.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException("Batch cannot contain more than " + MAX_BATCH_SIZE + " Transactions!");
+        }
+
+        TransactionBatchItem[] items = new TransactionBatchItem[creationInputs.size()];
+
+        //all referenced accounts are checked by one set-based query instead of two lookups per item
+        Set<String> accountIds = new HashSet<>();
+        for (TransactionCreationInput creationInput : creationInputs) {
+            if (creationInput != null) {
+                accountIds.add(creationInput.getAccountFrom());
+                accountIds.add(creationInput.getAccountTo());
+            }
+        }
+        accountIds.remove(null);
+        accountIds.remove("");
+        Map<String, AccountMetadata> accounts = accountService.getAccountMetadataByIds(accountIds);
+
+        ExchangeRateTable exchangeRateTable = exchangeRateService.getCurrentExchangeRateTable();
+        Map<Integer, Transaction> validTransactions = new LinkedHashMap<>();
+        for (int i = 0; i < creationInputs.size(); i++) {
+            TransactionCreationInput creationInput = creationInputs.get(i);
+            try {
+                validateAccountIdsNotEmpty(creationInput);
+                validateCreationInput(creationInput, accounts.keySet());
+
+                Transaction transaction = newTransaction(creationInput, null);
+                exchangeRateService.pinExchangeRates(transaction, exchangeRateTable,
+                        accounts.get(transaction.getAccountFrom()).getCurrency(), accounts.get(transaction.getAccountTo()).getCurrency());
+                validTransactions.put(i, transaction);
+
+            } catch (ValidationException e) {
+                items[i] = new TransactionBatchItem(i, null, e.getMessage());
+            }
+        }
+
+        transactionRepository.insertBatch((Connection connection) -> {
+            if (!reservationEnabled) {
+                return new ArrayList<>(validTransactions.values());
+            }
+
+            //a failed hold rejects only its own item, the check throws before anything of the item is changed
+            List<Transaction> reservedTransactions = new ArrayList<>();
+            for (Iterator<Map.Entry<Integer, Transaction>> iterator = validTransactions.entrySet().iterator(); iterator.hasNext(); ) {
+                Map.Entry<Integer, Transaction> entry = iterator.next();
+                Transaction transaction = entry.getValue();
+                try {
+                    transaction.setReservedAmount(transaction.getAmountFrom());
+                    accountService.reserveAmount(connection, transaction.getAccountFrom(), transaction.getAmountFrom());
+                    reservedTransactions.add(transaction);
+
+                } catch (ValidationException e) {
+                    items[entry.getKey()] = new TransactionBatchItem(entry.getKey(), null, e.getMessage());
+                    iterator.remove();
+                }
+            }
+            return reservedTransactions;
+        });
+
+        validTransactions.forEach((index, transaction) -> items[index] = new TransactionBatchItem(index, transaction, null));
+        if (reservationEnabled) {
+            accountService.invalidateCachedAccounts(validTransactions.values().stream().map(Transaction::getAccountFrom).distinct().toArray(String[]::new));
+        }
+        return new TransactionBatchResult(Arrays.asList(items));
+    }
+
+    public CompletableFuture<TransactionBatchResult> createTransactionsAsync(List<TransactionCreationInput> creationInputs) {
+        return DataBaseExecutor.supplyAsync(() -> createTransactions(creationInputs));
+    }
+
+    public CompletableFuture<Void> deleteTransactionByIdAsync(String transactionId) {
+        return DataBaseExecutor.runAsync(() -> deleteTransactionById(transactionId));
+    }
+
+    public void deleteTransactionById(String transactionId) {
+        AtomicReference<Transaction> deletedTransaction = new AtomicReference<>();
+        boolean deleted = transactionRepository.delete(transactionId, (Connection connection, Transaction transaction) -> {
+            //a completed transfer is in the balances and the ledger, removing it would leave them without their source
+            if (transaction.getStatus() == TransactionStatus.COMPLETED) {
+                throw new ValidationException("Transaction with ID '" + transactionId + "' is completed and cannot be deleted!");
+            }
+            releaseReservedAmountIfActive(connection, transaction);
+            deletedTransaction.set(transaction);
+        });
+        if (!deleted) {
+            throw new EntityNotFoundException("Transaction with ID '" + transactionId + "' is not found!");
+        }
+
+        //a released hold is visible to cached balance reads only after the delete is committed
+        if (deletedTransaction.get() != null) {
+            accountService.invalidateCachedAccounts(deletedTransaction.get().getAccountFrom());
+        }
+    }
+
+    private Transaction newTransaction(TransactionCreationInput creationInput, String idempotencyKey) {
         Transaction transaction = new Transaction();
         transaction.setAccountFrom(creationInput.getAccountFrom());
         transaction.setAccountTo(creationInput.getAccountTo());
-        transaction.setAmount(creationInput.getAmount());
+        transaction.setAmountMinorUnits(Money.toMinorUnits(creationInput.getAmount(), creationInput.getCurrency()));
         transaction.setCurrency(creationInput.getCurrency());
         transaction.setStatus(TransactionStatus.NEW);
         transaction.setCreatedBy(creationInput.getCreatedBy());
         transaction.setCreatedAt(Instant.now());
         transaction.setExpiredAt(transaction.getCreatedAt().plusSeconds(DEFAULT_TIMEOUT_SECONDS));
+        transaction.setIdempotencyKey(idempotencyKey);
+        return transaction;
+    }
+
+    private Transaction insertTransaction(Transaction transaction) {
+        pinExchangeRates(transaction);
 
-        return transactionRepository.insert(transaction);
+        if (!reservationEnabled) {
+            return transactionRepository.insert(transaction);
+        }
+
+        //funds are put on hold together with the insert, so the transfer cannot fail later for insufficient amount
+        long amountToReserve = transaction.getAmountFrom();
+        transaction.setReservedAmount(amountToReserve);
+
+        Transaction insertedTransaction = transactionRepository.insert(transaction,
+                (Connection connection) -> accountService.reserveAmount(connection, transaction.getAccountFrom(), amountToReserve));
+
+        accountService.invalidateCachedAccounts(transaction.getAccountFrom());
+        return insertedTransaction;
     }
 
-    public void deleteTransactionById(String transactionId) {
-        boolean deleted = transactionRepository.delete(transactionId);
-        if (!deleted) {
-            throw new EntityNotFoundException("Transaction with ID '" + transactionId + "' is not found!");
+    private void pinExchangeRates(Transaction transaction) {
+        //processing converts with the rates of creation time, so the result does not depend on the backlog delay
+        ExchangeRateTable exchangeRateTable = exchangeRateService.getCurrentExchangeRateTable();
+        String currencyFrom = accountService.getAccountMetadata(transaction.getAccountFrom()).getCurrency();
+        String currencyTo = accountService.getAccountMetadata(transaction.getAccountTo()).getCurrency();
+
+        exchangeRateService.pinExchangeRates(transaction, exchangeRateTable, currencyFrom, currencyTo);
+    }
+
+    private void releaseReservedAmountIfActive(Connection connection, Transaction transaction) {
+        boolean active = transaction.getStatus() == TransactionStatus.NEW || transaction.getStatus() == TransactionStatus.IN_PROGRESS;
+        if (active && transaction.getReservedAmount() != null) {
+            accountService.releaseReservedAmount(connection, transaction.getAccountFrom(), transaction.getReservedAmount());
+        }
+    }
+
+    void setReservationEnabled(boolean reservationEnabled) {
+        this.reservationEnabled = reservationEnabled;
+    }
+
+    private Optional<Transaction> findByIdempotencyKey(String idempotencyKey) {
+        Optional<String> cachedTransactionId = idempotencyCache.get(idempotencyKey);
+        if (cachedTransactionId.isPresent()) {
+            Optional<Transaction> transaction = transactionRepository.find(cachedTransactionId.get());
+            if (transaction.isPresent()) {
+                return transaction;
+            }
+            idempotencyCache.invalidate(idempotencyKey);
+        }
+
+        Optional<Transaction> transaction = transactionRepository.findByIdempotencyKey(idempotencyKey);
+        transaction.ifPresent(t -> idempotencyCache.put(idempotencyKey, t.getId()));
+        return transaction;
+    }
+
+    private Transaction checkSameCreationInput(Transaction transaction, TransactionCreationInput creationInput) {
+        boolean sameInput = StringUtils.equals(transaction.getAccountFrom(), creationInput.getAccountFrom())
+                && StringUtils.equals(transaction.getAccountTo(), creationInput.getAccountTo())
+                && StringUtils.equals(transaction.getCurrency(), creationInput.getCurrency())
+                && creationInput.getAmount() != null
+                && transaction.getAmountMinorUnits() == Money.toMinorUnits(creationInput.getAmount(), creationInput.getCurrency());
+
+        if (!sameInput) {
+            throw new ValidationException("Idempotency-Key '" + transaction.getIdempotencyKey() + "' is already used for another Transaction!");
+        }
+        return transaction;
+    }
+
+    private void validateHistoryFilter(TransactionHistoryFilter filter) {
+        if (filter == null || StringUtils.isEmpty(filter.getAccountId())) {
+            throw new ValidationException("Account ID cannot be empty!");
+        }
+
+        if (filter.getLimit() != null && (filter.getLimit() < 1 || filter.getLimit() > MAX_PAGE_SIZE)) {
+            throw new ValidationException("Limit must be between 1 and " + MAX_PAGE_SIZE + "!");
+        }
+
+        if (filter.getCreatedFrom() != null && filter.getCreatedTo() != null && !filter.getCreatedFrom().isBefore(filter.getCreatedTo())) {
+            throw new ValidationException("CreatedFrom must be before CreatedTo!");
+        }
+
+        if (accountService.findExistingAccountIds(filter.getAccountId()).isEmpty()) {
+            throw new EntityNotFoundException("Account with ID '" + filter.getAccountId() + "' is not found!");
         }
     }
 
     private void validateCreationInput(TransactionCreationInput creationInput) {
+        validateAccountIdsNotEmpty(creationInput);
+
+        Set<String> existingAccountIds = accountService.findExistingAccountIds(creationInput.getAccountFrom(), creationInput.getAccountTo());
+        validateCreationInput(creationInput, existingAccountIds);
+    }
+
+    private void validateAccountIdsNotEmpty(TransactionCreationInput creationInput) {
         if (creationInput == null) {
             throw new ValidationException("Transaction Creation Input cannot be null!");
         }
@@ -62,14 +361,16 @@ public class TransactionService {
         if (StringUtils.isEmpty(creationInput.getAccountFrom())) {
             throw new ValidationException("AccountFrom cannot be empty!");
         }
-        if (!accountService.findAccountById(creationInput.getAccountFrom()).isPresent()) {
-            throw new ValidationException("AccountFrom is not found!");
-        }
-
         if (StringUtils.isEmpty(creationInput.getAccountTo())) {
             throw new ValidationException("AccountTo cannot be empty!");
         }
-        if (!accountService.findAccountById(creationInput.getAccountTo()).isPresent()) {
+    }
+
+    private void validateCreationInput(TransactionCreationInput creationInput, Set<String> existingAccountIds) {
+        if (!existingAccountIds.contains(creationInput.getAccountFrom())) {
+            throw new ValidationException("AccountFrom is not found!");
+        }
+        if (!existingAccountIds.contains(creationInput.getAccountTo())) {
             throw new ValidationException("AccountTo is not found!");
         }
 
@@ -92,5 +393,9 @@ public class TransactionService {
         if (StringUtils.isEmpty(creationInput.getCurrency())) {
             throw new ValidationException("Currency cannot be empty!");
         }
+
+        if (Money.toMinorUnits(creationInput.getAmount(), creationInput.getCurrency()) == 0) {
+            throw new ValidationException("Amount cannot be less than the minor unit of the currency!");
+        }
     }
 }
@@ -0,0 +1,111 @@
+package ev.demo.revolut.model.transaction.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import ev.demo.revolut.model.money.Money;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+public class Payout {
+
+    private String id;
+    private String accountFrom;
+    private long amountMinorUnits;
+    private String currency;
+    private long reservedAmount;
+    private int legCount;
+    private TransactionStatus status;
+    private String error;
+    private String createdBy;
+    private Instant createdAt;
+
+    public Payout() {
+
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getAccountFrom() {
+        return accountFrom;
+    }
+
+    public void setAccountFrom(String accountFrom) {
+        this.accountFrom = accountFrom;
+    }
+
+    public BigDecimal getAmount() {
+        return Money.toBigDecimal(amountMinorUnits, currency);
+    }
+
+    @JsonIgnore
+    public long getAmountMinorUnits() {
+        return amountMinorUnits;
+    }
+
+    public void setAmountMinorUnits(long amountMinorUnits) {
+        this.amountMinorUnits = amountMinorUnits;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    @JsonIgnore
+    public long getReservedAmount() {
+        return reservedAmount;
+    }
+
+    public void setReservedAmount(long reservedAmount) {
+        this.reservedAmount = reservedAmount;
+    }
+
+    public int getLegCount() {
+        return legCount;
+    }
+
+    public void setLegCount(int legCount) {
+        this.legCount = legCount;
+    }
+
+    public TransactionStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(TransactionStatus status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public String getCreatedBy() {
+        return createdBy;
+    }
+
+    public void setCreatedBy(String createdBy) {
+        this.createdBy = createdBy;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
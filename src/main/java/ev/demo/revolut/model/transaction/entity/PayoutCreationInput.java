@@ -0,0 +1,46 @@
+package ev.demo.revolut.model.transaction.entity;
+
+import java.util.List;
+
+public class PayoutCreationInput {
+    private String createdBy;
+    private String accountFrom;
+    private String currency;
+    private List<PayoutLegInput> legs;
+
+    public PayoutCreationInput() {
+
+    }
+
+    public String getCreatedBy() {
+        return createdBy;
+    }
+
+    public void setCreatedBy(String createdBy) {
+        this.createdBy = createdBy;
+    }
+
+    public String getAccountFrom() {
+        return accountFrom;
+    }
+
+    public void setAccountFrom(String accountFrom) {
+        this.accountFrom = accountFrom;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public List<PayoutLegInput> getLegs() {
+        return legs;
+    }
+
+    public void setLegs(List<PayoutLegInput> legs) {
+        this.legs = legs;
+    }
+}
@@ -0,0 +1,28 @@
+package ev.demo.revolut.model.transaction.entity;
+
+import java.math.BigDecimal;
+
+public class PayoutLegInput {
+    private String accountTo;
+    private BigDecimal amount;
+
+    public PayoutLegInput() {
+
+    }
+
+    public String getAccountTo() {
+        return accountTo;
+    }
+
+    public void setAccountTo(String accountTo) {
+        this.accountTo = accountTo;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+}
@@ -1,5 +1,8 @@
 package ev.demo.revolut.model.transaction.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import ev.demo.revolut.model.money.Money;
+
 import java.math.BigDecimal;
 import java.time.Instant;
 
@@ -8,13 +11,21 @@ public class Transaction {
     private String id;
     private String accountFrom;
     private String accountTo;
-    private BigDecimal amount;
+    private long amountMinorUnits;
     private String currency;
     private TransactionStatus status;
     private String error;
     private String createdBy;
     private Instant createdAt;
     private Instant expiredAt;
+    private String idempotencyKey;
+    private Long reservedAmount;
+    private Long exchangeRateVersion;
+    private Long exchangeRateFrom;
+    private Long exchangeRateTo;
+    private Long amountFrom;
+    private Long amountTo;
+    private String payoutId;
 
     public Transaction() {
 
@@ -53,11 +64,16 @@ public class Transaction {
     }
 
     public BigDecimal getAmount() {
-        return amount;
+        return Money.toBigDecimal(amountMinorUnits, currency);
+    }
+
+    @JsonIgnore
+    public long getAmountMinorUnits() {
+        return amountMinorUnits;
     }
 
-    public void setAmount(BigDecimal amount) {
-        this.amount = amount;
+    public void setAmountMinorUnits(long amountMinorUnits) {
+        this.amountMinorUnits = amountMinorUnits;
     }
 
     public String getCurrency() {
@@ -99,4 +115,81 @@ public class Transaction {
     public void setExpiredAt(Instant expiredAt) {
         this.expiredAt = expiredAt;
     }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    @JsonIgnore
+    public Long getReservedAmount() {
+        return reservedAmount;
+    }
+
+    public void setReservedAmount(Long reservedAmount) {
+        this.reservedAmount = reservedAmount;
+    }
+
+    public Long getExchangeRateVersion() {
+        return exchangeRateVersion;
+    }
+
+    public void setExchangeRateVersion(Long exchangeRateVersion) {
+        this.exchangeRateVersion = exchangeRateVersion;
+    }
+
+    public BigDecimal getExchangeRateFrom() {
+        return exchangeRateFrom == null ? null : Money.fromFixedPointRate(exchangeRateFrom);
+    }
+
+    @JsonIgnore
+    public Long getFixedPointExchangeRateFrom() {
+        return exchangeRateFrom;
+    }
+
+    public void setFixedPointExchangeRateFrom(Long exchangeRateFrom) {
+        this.exchangeRateFrom = exchangeRateFrom;
+    }
+
+    public BigDecimal getExchangeRateTo() {
+        return exchangeRateTo == null ? null : Money.fromFixedPointRate(exchangeRateTo);
+    }
+
+    @JsonIgnore
+    public Long getFixedPointExchangeRateTo() {
+        return exchangeRateTo;
+    }
+
+    public void setFixedPointExchangeRateTo(Long exchangeRateTo) {
+        this.exchangeRateTo = exchangeRateTo;
+    }
+
+    @JsonIgnore
+    public Long getAmountFrom() {
+        return amountFrom;
+    }
+
+    public void setAmountFrom(Long amountFrom) {
+        this.amountFrom = amountFrom;
+    }
+
+    @JsonIgnore
+    public Long getAmountTo() {
+        return amountTo;
+    }
+
+    public void setAmountTo(Long amountTo) {
+        this.amountTo = amountTo;
+    }
+
+    public String getPayoutId() {
+        return payoutId;
+    }
+
+    public void setPayoutId(String payoutId) {
+        this.payoutId = payoutId;
+    }
 }
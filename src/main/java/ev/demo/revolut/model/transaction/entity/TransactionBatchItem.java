@@ -0,0 +1,41 @@
+package ev.demo.revolut.model.transaction.entity;
+
+public class TransactionBatchItem {
+    private int index;
+    private Transaction transaction;
+    private String error;
+
+    public TransactionBatchItem() {
+
+    }
+
+    public TransactionBatchItem(int index, Transaction transaction, String error) {
+        this.index = index;
+        this.transaction = transaction;
+        this.error = error;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    public void setTransaction(Transaction transaction) {
+        this.transaction = transaction;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,43 @@
+package ev.demo.revolut.model.transaction.entity;
+
+import java.util.List;
+
+public class TransactionBatchResult {
+    private int createdCount;
+    private int rejectedCount;
+    private List<TransactionBatchItem> items;
+
+    public TransactionBatchResult() {
+
+    }
+
+    public TransactionBatchResult(List<TransactionBatchItem> items) {
+        this.items = items;
+        this.createdCount = (int) items.stream().filter(item -> item.getTransaction() != null).count();
+        this.rejectedCount = items.size() - createdCount;
+    }
+
+    public int getCreatedCount() {
+        return createdCount;
+    }
+
+    public void setCreatedCount(int createdCount) {
+        this.createdCount = createdCount;
+    }
+
+    public int getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public void setRejectedCount(int rejectedCount) {
+        this.rejectedCount = rejectedCount;
+    }
+
+    public List<TransactionBatchItem> getItems() {
+        return items;
+    }
+
+    public void setItems(List<TransactionBatchItem> items) {
+        this.items = items;
+    }
+}
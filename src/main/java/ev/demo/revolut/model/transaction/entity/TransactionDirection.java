@@ -0,0 +1,7 @@
+package ev.demo.revolut.model.transaction.entity;
+
+public enum TransactionDirection {
+    IN,
+    OUT,
+    BOTH
+}
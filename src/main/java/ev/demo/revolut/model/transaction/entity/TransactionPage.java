@@ -0,0 +1,33 @@
+package ev.demo.revolut.model.transaction.entity;
+
+import java.util.List;
+
+public class TransactionPage {
+    private List<Transaction> transactions;
+    private String nextCursor;
+
+    public TransactionPage() {
+
+    }
+
+    public TransactionPage(List<Transaction> transactions, String nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    public void setTransactions(List<Transaction> transactions) {
+        this.transactions = transactions;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,30 @@
+package ev.demo.revolut.tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("ev.demo.revolut.ConnectionAcquisition")
+@Label("Connection Acquisition")
+@Description("Time taken to get a DB connection")
+@Category({"Revolut", "DataBase"})
+@Threshold("1 ms")
+@StackTrace(false)
+class ConnectionAcquisitionEvent extends Event implements Tracing.ConnectionTrace {
+
+    @Label("Transaction Id")
+    private String transactionId;
+
+    @Override
+    public void finish() {
+        end();
+        if (shouldCommit()) {
+            this.transactionId = TracingContext.getTransactionId();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package ev.demo.revolut.tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+//statements under the threshold are left out of the recording unless its settings lower it
+@Name("ev.demo.revolut.DataBaseStatement")
+@Label("DataBase Statement")
+@Description("A statement executed by JdbcRepository")
+@Category({"Revolut", "DataBase"})
+@Threshold("1 ms")
+@StackTrace(false)
+class DataBaseStatementEvent extends Event implements Tracing.StatementTrace {
+
+    @Label("Statement")
+    private String statement;
+
+    @Label("Rows")
+    private long rows;
+
+    @Label("Failed")
+    private boolean failed;
+
+    @Label("Transaction Id")
+    private String transactionId;
+
+    @Override
+    public void finish(String statement, long rows, boolean failed) {
+        end();
+        if (shouldCommit()) {
+            this.statement = statement;
+            this.rows = rows;
+            this.failed = failed;
+            this.transactionId = TracingContext.getTransactionId();
+            commit();
+        }
+    }
+}
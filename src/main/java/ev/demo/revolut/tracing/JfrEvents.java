@@ -0,0 +1,27 @@
+package ev.demo.revolut.tracing;
+
+//the only class referring to the event classes, it is loaded by Tracing once jdk.jfr is known to exist
+class JfrEvents {
+
+    private JfrEvents() {
+
+    }
+
+    static Tracing.ConnectionTrace startConnectionAcquisition() {
+        ConnectionAcquisitionEvent event = new ConnectionAcquisitionEvent();
+        event.begin();
+        return event;
+    }
+
+    static Tracing.StatementTrace startStatement() {
+        DataBaseStatementEvent event = new DataBaseStatementEvent();
+        event.begin();
+        return event;
+    }
+
+    static Tracing.StageTrace startStage() {
+        TransactionStageEvent event = new TransactionStageEvent();
+        event.begin();
+        return event;
+    }
+}
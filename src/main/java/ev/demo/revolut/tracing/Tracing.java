@@ -0,0 +1,53 @@
+package ev.demo.revolut.tracing;
+
+import org.apache.log4j.Logger;
+
+//JFR events are emitted only where jdk.jfr exists, a Java 8 runtime without it gets traces that do nothing
+public class Tracing {
+
+    private static Logger logger = Logger.getLogger(Tracing.class);
+
+    private static final ConnectionTrace NO_CONNECTION_TRACE = () -> { };
+    private static final StatementTrace NO_STATEMENT_TRACE = (statement, rows, failed) -> { };
+    private static final StageTrace NO_STAGE_TRACE = (stage, transactionId, accountFrom, accountTo, failed) -> { };
+
+    private static final boolean JFR_AVAILABLE = isJfrAvailable();
+
+    private Tracing() {
+
+    }
+
+    public static ConnectionTrace startConnectionAcquisition() {
+        return JFR_AVAILABLE ? JfrEvents.startConnectionAcquisition() : NO_CONNECTION_TRACE;
+    }
+
+    public static StatementTrace startStatement() {
+        return JFR_AVAILABLE ? JfrEvents.startStatement() : NO_STATEMENT_TRACE;
+    }
+
+    static StageTrace startStage() {
+        return JFR_AVAILABLE ? JfrEvents.startStage() : NO_STAGE_TRACE;
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, Tracing.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            logger.info("jdk.jfr is not available, tracing events are not emitted");
+            return false;
+        }
+    }
+
+    public interface ConnectionTrace {
+        void finish();
+    }
+
+    public interface StatementTrace {
+        void finish(String statement, long rows, boolean failed);
+    }
+
+    interface StageTrace {
+        void finish(String stage, String transactionId, String accountFrom, String accountTo, boolean failed);
+    }
+}
@@ -0,0 +1,23 @@
+package ev.demo.revolut.tracing;
+
+//the transaction processed by the current thread, so the DB events can be matched with its stages
+public class TracingContext {
+
+    private static final ThreadLocal<String> transactionId = new ThreadLocal<>();
+
+    private TracingContext() {
+
+    }
+
+    public static void setTransactionId(String id) {
+        transactionId.set(id);
+    }
+
+    public static String getTransactionId() {
+        return transactionId.get();
+    }
+
+    public static void clear() {
+        transactionId.remove();
+    }
+}
@@ -0,0 +1,50 @@
+package ev.demo.revolut.tracing;
+
+//a stage is opened in try-with-resources and recorded when it is closed; a stage closed without complete() is recorded as failed
+public class TransactionStage implements AutoCloseable {
+
+    public static final String PROCESS = "process";
+    public static final String CLAIM = "claim";
+    public static final String ACCOUNT_LOAD = "accountLoad";
+    public static final String RATE_CONVERSION = "rateConversion";
+    public static final String TRANSFER = "transfer";
+    public static final String TRANSFER_COMMIT = "transferCommit";
+    public static final String STATUS_UPDATE = "statusUpdate";
+
+    private final Tracing.StageTrace trace = Tracing.startStage();
+    private final String stage;
+    private final String transactionId;
+    private String accountFrom;
+    private String accountTo;
+    private boolean completed;
+
+    private TransactionStage(String stage, String transactionId) {
+        this.stage = stage;
+        this.transactionId = transactionId;
+    }
+
+    public static TransactionStage start(String stage, String transactionId) {
+        return new TransactionStage(stage, transactionId);
+    }
+
+    public static TransactionStage start(String stage, String transactionId, String accountFrom, String accountTo) {
+        TransactionStage transactionStage = start(stage, transactionId);
+        transactionStage.setAccounts(accountFrom, accountTo);
+
+        return transactionStage;
+    }
+
+    public void setAccounts(String accountFrom, String accountTo) {
+        this.accountFrom = accountFrom;
+        this.accountTo = accountTo;
+    }
+
+    public void complete() {
+        completed = true;
+    }
+
+    @Override
+    public void close() {
+        trace.finish(stage, transactionId, accountFrom, accountTo, !completed);
+    }
+}
@@ -0,0 +1,44 @@
+package ev.demo.revolut.tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ev.demo.revolut.TransactionStage")
+@Label("Transaction Stage")
+@Description("A stage of the transaction processing")
+@Category({"Revolut", "Transactions"})
+@StackTrace(false)
+class TransactionStageEvent extends Event implements Tracing.StageTrace {
+
+    @Label("Stage")
+    private String stage;
+
+    @Label("Transaction Id")
+    private String transactionId;
+
+    @Label("Account From")
+    private String accountFrom;
+
+    @Label("Account To")
+    private String accountTo;
+
+    @Label("Failed")
+    private boolean failed;
+
+    @Override
+    public void finish(String stage, String transactionId, String accountFrom, String accountTo, boolean failed) {
+        end();
+        if (shouldCommit()) {
+            this.stage = stage;
+            this.transactionId = transactionId;
+            this.accountFrom = accountFrom;
+            this.accountTo = accountTo;
+            this.failed = failed;
+            commit();
+        }
+    }
+}
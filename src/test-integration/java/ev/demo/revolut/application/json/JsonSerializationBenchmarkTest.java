@@ -0,0 +1,211 @@
+package ev.demo.revolut.application.json;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ev.demo.revolut.model.account.entity.Account;
+import ev.demo.revolut.model.transaction.entity.Transaction;
+import ev.demo.revolut.model.transaction.entity.TransactionCreationInput;
+import ev.demo.revolut.model.transaction.entity.TransactionStatus;
+import org.apache.log4j.Logger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+//the build only checks the JSON, gzip and Smile output; -Drevolut.benchmark=true adds the timings, raise revolut.benchmark.iterations for stable numbers
+@RunWith(MockitoJUnitRunner.class)
+public class JsonSerializationBenchmarkTest {
+
+    private static Logger logger = Logger.getLogger(JsonSerializationBenchmarkTest.class);
+
+    private static final boolean BENCHMARK = Boolean.getBoolean("revolut.benchmark");
+    private static final int LIST_SIZE = Integer.getInteger("revolut.benchmark.listSize", 1000);
+    private static final int ITERATIONS = Integer.getInteger("revolut.benchmark.iterations", 20);
+    private static final int ROUNDS = 3;
+
+    private ObjectMapper sharedMapper = ObjectMapperProvider.getObjectMapper();
+    private ObjectMapper defaultMapper = new ObjectMapper();
+    private ObjectMapper smileMapper = ObjectMapperProvider.getSmileObjectMapper();
+
+    @Test
+    public void transactionCreationInput_smileRequestBody() throws Exception {
+        TransactionCreationInput creationInput = new TransactionCreationInput();
+        creationInput.setCreatedBy("benchmark");
+        creationInput.setAccountFrom(UUID.randomUUID().toString());
+        creationInput.setAccountTo(UUID.randomUUID().toString());
+        creationInput.setAmount(new BigDecimal("10.25"));
+        creationInput.setCurrency("EUR");
+
+        TransactionCreationInput decoded = smileMapper.readValue(smileMapper.writeValueAsBytes(creationInput), TransactionCreationInput.class);
+        assertEquals(sharedMapper.writeValueAsString(creationInput), sharedMapper.writeValueAsString(decoded));
+    }
+
+    @Test
+    public void accountList() throws Exception {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < LIST_SIZE; i++) {
+            Account account = new Account();
+            account.setId(UUID.randomUUID().toString());
+            account.setOwnerId("owner" + i);
+            account.setName("Account " + i);
+            account.setCurrency("USD");
+            account.setAmountMinorUnits(100_000L + i);
+            accounts.add(account);
+        }
+
+        compare("Account", accounts);
+    }
+
+    @Test
+    public void transactionList() throws Exception {
+        Instant now = Instant.now();
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < LIST_SIZE; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setId(UUID.randomUUID().toString());
+            transaction.setAccountFrom(UUID.randomUUID().toString());
+            transaction.setAccountTo(UUID.randomUUID().toString());
+            transaction.setCurrency("EUR");
+            transaction.setAmountMinorUnits(1_000L + i);
+            transaction.setStatus(TransactionStatus.COMPLETED);
+            transaction.setCreatedBy("benchmark");
+            transaction.setCreatedAt(now.plusMillis(i));
+            transaction.setExpiredAt(now.plusSeconds(3600));
+            transaction.setExchangeRateVersion(1L);
+            transaction.setFixedPointExchangeRateFrom(1_000_000L);
+            transaction.setFixedPointExchangeRateTo(1_100_000L);
+            transactions.add(transaction);
+        }
+
+        compare("Transaction", transactions);
+    }
+
+    private void compare(String name, List<?> values) throws Exception {
+        //the tuned mapper must not change what clients receive; trees are compared, the field order of a bean differs between JDKs
+        byte[] sharedJson = sharedMapper.writeValueAsBytes(values);
+        assertEquals(defaultMapper.readTree(defaultMapper.writeValueAsBytes(values)), defaultMapper.readTree(sharedJson));
+
+        byte[] gzipJson = gzip(sharedJson);
+        assertTrue(gzipJson.length < sharedJson.length);
+        assertTrue(Arrays.equals(sharedJson, gunzip(gzipJson)));
+
+        //a Smile body carries the same values, amounts are read as BigDecimal because Smile keeps them exact
+        byte[] smile = smileMapper.writeValueAsBytes(values);
+        assertTrue(smile.length < sharedJson.length);
+        assertEquals(sharedMapper.reader(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS).readTree(new ByteArrayInputStream(sharedJson)),
+                smileMapper.reader(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS).readTree(new ByteArrayInputStream(smile)));
+
+        //wall-clock timings fail or pass by the load of the machine, they are left out of the build
+        if (!BENCHMARK) {
+            return;
+        }
+
+        //alternating rounds, so neither mapper profits from the JIT warming up during the other one
+        long sharedNanos = Long.MAX_VALUE;
+        long defaultNanos = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            sharedNanos = Math.min(sharedNanos, measure(sharedMapper, values));
+            defaultNanos = Math.min(defaultNanos, measure(defaultMapper, values));
+        }
+
+        logger.info(name + " list of " + values.size() + ": " + sharedJson.length + " bytes, shared mapper " +
+                TimeUnit.NANOSECONDS.toMicros(sharedNanos) + " us, default mapper " + TimeUnit.NANOSECONDS.toMicros(defaultNanos) + " us per list");
+
+        measureGzip(name, sharedJson, gzipJson);
+        measureSmile(name, values, sharedJson, smile);
+    }
+
+    //what the application/x-jackson-smile media type saves against JSON, both ways
+    private void measureSmile(String name, List<?> values, byte[] json, byte[] smile) throws Exception {
+        long jsonEncodeNanos = Long.MAX_VALUE;
+        long smileEncodeNanos = Long.MAX_VALUE;
+        long jsonDecodeNanos = Long.MAX_VALUE;
+        long smileDecodeNanos = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            jsonEncodeNanos = Math.min(jsonEncodeNanos, measure(sharedMapper, values));
+            smileEncodeNanos = Math.min(smileEncodeNanos, measure(smileMapper, values));
+            jsonDecodeNanos = Math.min(jsonDecodeNanos, measureDecode(sharedMapper, json));
+            smileDecodeNanos = Math.min(smileDecodeNanos, measureDecode(smileMapper, smile));
+        }
+
+        logger.info(name + " list smile: " + smile.length + " of " + json.length + " bytes, encode " +
+                TimeUnit.NANOSECONDS.toMicros(smileEncodeNanos) + " us (json " + TimeUnit.NANOSECONDS.toMicros(jsonEncodeNanos) + " us), decode " +
+                TimeUnit.NANOSECONDS.toMicros(smileDecodeNanos) + " us (json " + TimeUnit.NANOSECONDS.toMicros(jsonDecodeNanos) + " us) per list");
+    }
+
+    //what the gzip Content-Encoding of the list endpoints costs and saves
+    private void measureGzip(String name, byte[] json, byte[] gzipJson) throws Exception {
+        long encodeNanos = Long.MAX_VALUE;
+        long decodeNanos = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                gzip(json);
+            }
+            encodeNanos = Math.min(encodeNanos, (System.nanoTime() - startNanos) / ITERATIONS);
+
+            startNanos = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                gunzip(gzipJson);
+            }
+            decodeNanos = Math.min(decodeNanos, (System.nanoTime() - startNanos) / ITERATIONS);
+        }
+
+        logger.info(name + " list gzip: " + gzipJson.length + " of " + json.length + " bytes, encode " +
+                TimeUnit.NANOSECONDS.toMicros(encodeNanos) + " us, decode " + TimeUnit.NANOSECONDS.toMicros(decodeNanos) + " us per list");
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4);
+        try (OutputStream output = new GZIPOutputStream(bytes)) {
+            output.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length * 4);
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    //the response entities have no setters, a client decodes them into its own types; a tree costs the same parsing
+    private long measureDecode(ObjectMapper mapper, byte[] body) throws Exception {
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            mapper.readTree(body);
+        }
+        return (System.nanoTime() - startNanos) / ITERATIONS;
+    }
+
+    private long measure(ObjectMapper mapper, List<?> values) throws Exception {
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            mapper.writeValueAsBytes(values);
+        }
+        return (System.nanoTime() - startNanos) / ITERATIONS;
+    }
+}
@@ -6,15 +6,20 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertSame;
 import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 
@@ -219,6 +224,66 @@ public class JdbcRepositoryTest {
         assertFalse(wasDeletedAfterDelete);
     }
 
+    @Test
+    public void selectEach_streamMatchingRows() {
+        String name = "streamedName";
+        List<String> createdIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            TestDbEntity testDbEntity = createTestDbEntity();
+            testDbEntity.setName(name);
+            createdIds.add(testDbRepository.runInNewTransaction((Connection connection) -> testDbRepository.insert(connection, testDbEntity)).getId());
+        }
+
+        List<TestDbEntity> streamedEntities = new ArrayList<>();
+        Integer rowCount = testDbRepository.runInNewConnection((Connection connection) ->
+                testDbRepository.selectEach(connection, "SELECT * FROM Test WHERE name = ?", streamedEntities::add, name));
+
+        assertEquals(Integer.valueOf(3), rowCount);
+        assertEquals(3, streamedEntities.size());
+        assertTrue(streamedEntities.stream().allMatch(entity -> createdIds.contains(entity.getId()) && name.equals(entity.getName())));
+    }
+
+    @Test
+    public void selectEach_noRows() {
+        List<TestDbEntity> streamedEntities = new ArrayList<>();
+        Integer rowCount = testDbRepository.runInNewConnection((Connection connection) ->
+                testDbRepository.selectEach(connection, "SELECT * FROM Test WHERE name = ?", streamedEntities::add, "missingName"));
+
+        assertEquals(Integer.valueOf(0), rowCount);
+        assertTrue(streamedEntities.isEmpty());
+    }
+
+    @Test(expected = DataBaseRuntimeException.class)
+    public void selectEach_exceptionIfQueryFails() {
+        testDbRepository.runInNewConnection((Connection connection) ->
+                testDbRepository.selectEach(connection, "SELECT * FROM MissingTable", entity -> fail("Row of a failed query is streamed")));
+    }
+
+    @Test
+    public void selectEach_consumerExceptionStopsTheScan() {
+        String name = "interruptedName";
+        for (int i = 0; i < 2; i++) {
+            TestDbEntity testDbEntity = createTestDbEntity();
+            testDbEntity.setName(name);
+            testDbRepository.runInNewTransaction((Connection connection) -> testDbRepository.insert(connection, testDbEntity));
+        }
+
+        List<TestDbEntity> streamedEntities = new ArrayList<>();
+        UncheckedIOException clientGone = new UncheckedIOException(new IOException("Broken pipe"));
+        try {
+            testDbRepository.runInNewConnection((Connection connection) ->
+                    testDbRepository.selectEach(connection, "SELECT * FROM Test WHERE name = ?", entity -> {
+                        streamedEntities.add(entity);
+                        throw clientGone;
+                    }, name));
+            fail("Exception of the row consumer is lost");
+        } catch (UncheckedIOException e) {
+            //the consumer's exception reaches the caller as it is, the rest of the rows are not read
+            assertSame(clientGone, e);
+            assertEquals(1, streamedEntities.size());
+        }
+    }
+
     private TestDbEntity createTestDbEntity() {
         TestDbEntity testDbEntity = new TestDbEntity();
         testDbEntity.setName("name");
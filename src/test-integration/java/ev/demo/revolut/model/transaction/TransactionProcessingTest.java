@@ -4,6 +4,12 @@ import ev.demo.revolut.db.jdbc.h2.H2DataBaseProvider;
 import ev.demo.revolut.model.account.AccountService;
 import ev.demo.revolut.model.account.entity.Account;
 import ev.demo.revolut.model.account.entity.AccountCreationInput;
+import ev.demo.revolut.model.ValidationException;
+import ev.demo.revolut.model.ledger.LedgerRepository;
+import ev.demo.revolut.model.money.Money;
+import ev.demo.revolut.model.transaction.entity.Payout;
+import ev.demo.revolut.model.transaction.entity.PayoutCreationInput;
+import ev.demo.revolut.model.transaction.entity.PayoutLegInput;
 import ev.demo.revolut.model.transaction.entity.Transaction;
 import ev.demo.revolut.model.transaction.entity.TransactionCreationInput;
 import ev.demo.revolut.model.transaction.entity.TransactionStatus;
@@ -13,6 +19,8 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.BooleanSupplier;
@@ -21,6 +29,7 @@ import java.util.function.Function;
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertNotNull;
 import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
 
 @RunWith(MockitoJUnitRunner.class)
 public class TransactionProcessingTest {
@@ -33,6 +42,9 @@ public class TransactionProcessingTest {
     private AccountService accountService = new AccountService();
     private ExchangeRateService exchangeRateService = new ExchangeRateService();
     private TransactionRepository transactionRepository = new TransactionRepository();
+    private PayoutService payoutService = new PayoutService();
+    private PayoutProcessingService payoutProcessingService = new PayoutProcessingService();
+    private LedgerRepository ledgerRepository = new LedgerRepository();
 
     private Function<String, Boolean> isTransactionProcessed = (String id) -> {
         Transaction transaction = transactionService.getTransactionById(id);
@@ -273,6 +285,57 @@ public class TransactionProcessingTest {
     }
 
 
+    @Test
+    public void processPayout_allLegsCompletedInChunks() {
+        Account treasury = createAccount(100000, "USD");
+        Account recipient1 = createAccount(0, "USD");
+        Account recipient2 = createAccount(0, "USD");
+
+        List<PayoutLegInput> legs = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            legs.add(createLegInput(i % 2 == 0 ? recipient1.getId() : recipient2.getId(), new BigDecimal("1.5")));
+        }
+
+        Payout payout = payoutService.createPayout(createPayoutInput(treasury.getId(), legs));
+        assertEquals(TransactionStatus.NEW, payout.getStatus());
+        assertEquals(2500, payout.getLegCount());
+        assertEquals(new BigDecimal("3750.00"), accountService.getAccountById(treasury.getId()).getReserved());
+
+        payoutProcessingService.processPayout(payout.getId());
+
+        assertEquals(TransactionStatus.COMPLETED, payoutService.getPayoutById(payout.getId()).getStatus());
+        Account processedTreasury = accountService.getAccountById(treasury.getId());
+        assertEquals(new BigDecimal("96250.00"), processedTreasury.getAmount());
+        assertEquals(new BigDecimal("0.00"), processedTreasury.getReserved());
+        assertEquals(new BigDecimal("1875.00"), accountService.getAccountById(recipient1.getId()).getAmount());
+        assertEquals(new BigDecimal("1875.00"), accountService.getAccountById(recipient2.getId()).getAmount());
+    }
+
+    @Test(expected = ValidationException.class)
+    public void createPayout_exceptionIfTotalExceedsBalance() {
+        Account treasury = createAccount(100, "USD");
+        Account recipient = createAccount(0, "USD");
+
+        List<PayoutLegInput> legs = new ArrayList<>();
+        legs.add(createLegInput(recipient.getId(), new BigDecimal(60)));
+        legs.add(createLegInput(recipient.getId(), new BigDecimal(60)));
+
+        payoutService.createPayout(createPayoutInput(treasury.getId(), legs));
+    }
+
+    @Test
+    public void deleteAccount_exceptionIfAccountHasLedgerHistory() {
+        Account account = createAccount(1000, "USD");
+        ledgerRepository.runInNewTransaction(connection -> ledgerRepository.append(connection, account.getId(), null, 100));
+
+        try {
+            accountService.deleteAccountById(account.getId());
+            fail("Account with ledger history is deleted");
+        } catch (ValidationException e) {
+            assertNotNull(accountService.getAccountById(account.getId()));
+        }
+    }
+
     private Account createAccount(int amount, String currency) {
         AccountCreationInput creationInput = new AccountCreationInput();
         creationInput.setName("account");
@@ -298,11 +361,27 @@ public class TransactionProcessingTest {
         return transaction;
     }
 
+    private PayoutCreationInput createPayoutInput(String accountFrom, List<PayoutLegInput> legs) {
+        PayoutCreationInput creationInput = new PayoutCreationInput();
+        creationInput.setAccountFrom(accountFrom);
+        creationInput.setCurrency("USD");
+        creationInput.setCreatedBy("user1");
+        creationInput.setLegs(legs);
+        return creationInput;
+    }
+
+    private PayoutLegInput createLegInput(String accountTo, BigDecimal amount) {
+        PayoutLegInput legInput = new PayoutLegInput();
+        legInput.setAccountTo(accountTo);
+        legInput.setAmount(amount);
+        return legInput;
+    }
+
     private Transaction createExpiredTransaction(String accountFrom, String accountTo, BigDecimal amount, TransactionStatus status) {
         Transaction transaction = new Transaction();
         transaction.setAccountFrom(accountFrom);
         transaction.setAccountTo(accountTo);
-        transaction.setAmount(amount);
+        transaction.setAmountMinorUnits(Money.toMinorUnits(amount, "USD"));
         transaction.setCurrency("USD");
         transaction.setStatus(status);
         transaction.setCreatedBy("user1");
@@ -0,0 +1,174 @@
+package ev.demo.revolut.application.admission;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.TestCase.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+//Silent: a request rejected early never reads the method, path or properties stubbed for it
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AdmissionControlFilterTest {
+
+    private AtomicInteger backlogSize = new AtomicInteger();
+
+    @Test
+    public void filter_tooManyRequestsWithRetryAfterIfClientRateIsExceeded() {
+        AdmissionControlFilter filter = new AdmissionControlFilter(1, 1, 0, 100, backlogSize::get);
+
+        ContainerRequestContext firstRequest = mockRequest(HttpMethod.GET, "accounts", "client1");
+        filter.filter(firstRequest);
+        verify(firstRequest, never()).abortWith(any(Response.class));
+
+        ContainerRequestContext secondRequest = mockRequest(HttpMethod.GET, "accounts", "client1");
+        filter.filter(secondRequest);
+        Response response = captureAbortResponse(secondRequest);
+        assertEquals(429, response.getStatus());
+        assertEquals("1", response.getHeaderString(HttpHeaders.RETRY_AFTER));
+
+        //the limit is kept per client
+        ContainerRequestContext otherClientRequest = mockRequest(HttpMethod.GET, "accounts", "client2");
+        filter.filter(otherClientRequest);
+        verify(otherClientRequest, never()).abortWith(any(Response.class));
+    }
+
+    @Test
+    public void filter_serviceUnavailableIfTooManyRequestsAreInProgress() {
+        AdmissionControlFilter filter = new AdmissionControlFilter(0, 1, 1, 100, backlogSize::get);
+
+        ContainerRequestContext firstRequest = mockRequest(HttpMethod.GET, "accounts", null);
+        filter.filter(firstRequest);
+        verify(firstRequest, never()).abortWith(any(Response.class));
+
+        ContainerRequestContext secondRequest = mockRequest(HttpMethod.GET, "accounts", null);
+        filter.filter(secondRequest);
+        Response response = captureAbortResponse(secondRequest);
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+        assertEquals("1", response.getHeaderString(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    public void filter_serviceUnavailableForTransferCreationIfBacklogIsFull() {
+        AdmissionControlFilter filter = new AdmissionControlFilter(0, 1, 0, 100, backlogSize::get);
+        backlogSize.set(101);
+
+        ContainerRequestContext transactionRequest = mockRequest(HttpMethod.POST, "transactions", null);
+        filter.filter(transactionRequest);
+        Response response = captureAbortResponse(transactionRequest);
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+        assertEquals("5", response.getHeaderString(HttpHeaders.RETRY_AFTER));
+
+        ContainerRequestContext payoutRequest = mockRequest(HttpMethod.POST, "payouts", null);
+        filter.filter(payoutRequest);
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), captureAbortResponse(payoutRequest).getStatus());
+
+        //reads and other writes are not held back by the backlog
+        ContainerRequestContext readRequest = mockRequest(HttpMethod.GET, "transactions", null);
+        filter.filter(readRequest);
+        verify(readRequest, never()).abortWith(any(Response.class));
+
+        ContainerRequestContext accountRequest = mockRequest(HttpMethod.POST, "accounts", null);
+        filter.filter(accountRequest);
+        verify(accountRequest, never()).abortWith(any(Response.class));
+
+        backlogSize.set(100);
+        ContainerRequestContext acceptedRequest = mockRequest(HttpMethod.POST, "transactions", null);
+        filter.filter(acceptedRequest);
+        verify(acceptedRequest, never()).abortWith(any(Response.class));
+    }
+
+    @Test
+    public void filter_permitReleasedWhenResumedResponseIsWritten() {
+        AdmissionControlFilter filter = new AdmissionControlFilter(0, 1, 1, 100, backlogSize::get);
+
+        ContainerRequestContext suspendedRequest = mockRequest(HttpMethod.GET, "accounts", null);
+        filter.filter(suspendedRequest);
+        verify(suspendedRequest, never()).abortWith(any(Response.class));
+
+        //the response filter runs once the suspended request is resumed by the DB executor
+        filter.filter(suspendedRequest, mock(ContainerResponseContext.class));
+
+        ContainerRequestContext nextRequest = mockRequest(HttpMethod.GET, "accounts", null);
+        filter.filter(nextRequest);
+        verify(nextRequest, never()).abortWith(any(Response.class));
+    }
+
+    @Test
+    public void filter_permitReleasedOnceIfAdmittedRequestIsAborted() {
+        AdmissionControlFilter filter = new AdmissionControlFilter(0, 1, 1, 100, backlogSize::get);
+
+        ContainerRequestContext abortedRequest = mockRequest(HttpMethod.GET, "accounts", null);
+        filter.filter(abortedRequest);
+
+        //a later filter aborts the admitted request, the response filter still runs for it, even twice
+        filter.filter(abortedRequest, mock(ContainerResponseContext.class));
+        filter.filter(abortedRequest, mock(ContainerResponseContext.class));
+
+        ContainerRequestContext firstRequest = mockRequest(HttpMethod.GET, "accounts", null);
+        filter.filter(firstRequest);
+        verify(firstRequest, never()).abortWith(any(Response.class));
+
+        ContainerRequestContext secondRequest = mockRequest(HttpMethod.GET, "accounts", null);
+        filter.filter(secondRequest);
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), captureAbortResponse(secondRequest).getStatus());
+    }
+
+    @Test
+    public void filter_rejectedRequestDoesNotReleasePermit() {
+        AdmissionControlFilter filter = new AdmissionControlFilter(0, 1, 1, 100, backlogSize::get);
+
+        ContainerRequestContext admittedRequest = mockRequest(HttpMethod.GET, "accounts", null);
+        filter.filter(admittedRequest);
+
+        ContainerRequestContext rejectedRequest = mockRequest(HttpMethod.GET, "accounts", null);
+        filter.filter(rejectedRequest);
+        captureAbortResponse(rejectedRequest);
+        filter.filter(rejectedRequest, mock(ContainerResponseContext.class));
+
+        ContainerRequestContext nextRequest = mockRequest(HttpMethod.GET, "accounts", null);
+        filter.filter(nextRequest);
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), captureAbortResponse(nextRequest).getStatus());
+    }
+
+    private ContainerRequestContext mockRequest(String method, String path, String clientId) {
+        ContainerRequestContext requestContext = mock(ContainerRequestContext.class);
+        UriInfo uriInfo = mock(UriInfo.class);
+        when(uriInfo.getPath()).thenReturn(path);
+        when(requestContext.getUriInfo()).thenReturn(uriInfo);
+        when(requestContext.getMethod()).thenReturn(method);
+        when(requestContext.getHeaderString("X-Client-Id")).thenReturn(clientId);
+
+        Map<String, Object> properties = new HashMap<>();
+        doAnswer(invocation -> properties.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(requestContext).setProperty(anyString(), any());
+        doAnswer(invocation -> properties.get(invocation.<String>getArgument(0)))
+                .when(requestContext).getProperty(anyString());
+        doAnswer(invocation -> properties.remove(invocation.<String>getArgument(0)))
+                .when(requestContext).removeProperty(anyString());
+        return requestContext;
+    }
+
+    private Response captureAbortResponse(ContainerRequestContext requestContext) {
+        ArgumentCaptor<Response> response = ArgumentCaptor.forClass(Response.class);
+        verify(requestContext).abortWith(response.capture());
+        return response.getValue();
+    }
+}
@@ -0,0 +1,46 @@
+package ev.demo.revolut.application.admission;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TokenBucketTest {
+
+    private AtomicLong currentNanos = new AtomicLong(1000);
+
+    @Test
+    public void tryAcquire_burstUpToCapacityThenWait() {
+        TokenBucket bucket = new TokenBucket(3, 1, currentNanos::get);
+
+        assertEquals(0, bucket.tryAcquire());
+        assertEquals(0, bucket.tryAcquire());
+        assertEquals(0, bucket.tryAcquire());
+
+        long waitNanos = bucket.tryAcquire();
+        assertTrue(waitNanos > 0);
+        assertTrue(waitNanos <= TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void tryAcquire_refillsWithRateUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(2, 10, currentNanos::get);
+        bucket.tryAcquire();
+        bucket.tryAcquire();
+
+        currentNanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(0, bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire() > 0);
+
+        currentNanos.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(0, bucket.tryAcquire());
+        assertEquals(0, bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire() > 0);
+    }
+}
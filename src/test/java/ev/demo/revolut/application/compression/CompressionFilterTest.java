@@ -0,0 +1,27 @@
+package ev.demo.revolut.application.compression;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CompressionFilterTest {
+
+    @Test
+    public void acceptsGzip_listedOrWildcard() {
+        assertTrue(CompressionFilter.acceptsGzip("gzip"));
+        assertTrue(CompressionFilter.acceptsGzip("deflate, GZIP;q=0.5"));
+        assertTrue(CompressionFilter.acceptsGzip("br, *"));
+    }
+
+    @Test
+    public void acceptsGzip_missingOrRefused() {
+        assertFalse(CompressionFilter.acceptsGzip(null));
+        assertFalse(CompressionFilter.acceptsGzip("deflate, br"));
+        assertFalse(CompressionFilter.acceptsGzip("gzip;q=0"));
+        assertFalse(CompressionFilter.acceptsGzip("identity, *;q=0.0"));
+    }
+}
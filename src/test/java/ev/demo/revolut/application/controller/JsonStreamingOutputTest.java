@@ -0,0 +1,105 @@
+package ev.demo.revolut.application.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.jaxrs.smile.SmileMediaTypes;
+import ev.demo.revolut.application.json.ObjectMapperProvider;
+import ev.demo.revolut.db.exception.DataBaseRuntimeException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.fail;
+
+@RunWith(MockitoJUnitRunner.class)
+public class JsonStreamingOutputTest {
+
+    private static final List<Map<String, Object>> ROWS = Arrays.asList(
+            Collections.singletonMap("id", "1"),
+            Collections.singletonMap("id", "2"));
+
+    @Test
+    public void write_jsonArrayOfRows() throws IOException {
+        assertEquals("[{\"id\":\"1\"},{\"id\":\"2\"}]", write(rowSource(ROWS), MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    public void write_emptyJsonArrayIfNoRows() throws IOException {
+        assertEquals("[]", write(rowSource(Collections.emptyList()), MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    public void write_rowPerLineForNdjson() throws IOException {
+        assertEquals("{\"id\":\"1\"}\n{\"id\":\"2\"}\n", write(rowSource(ROWS), JsonStreamingOutput.NDJSON_MEDIA_TYPE));
+        assertEquals("", write(rowSource(Collections.emptyList()), JsonStreamingOutput.NDJSON_MEDIA_TYPE));
+    }
+
+    @Test
+    public void write_smileArrayOfRows() throws IOException {
+        ObjectMapper smileMapper = ObjectMapperProvider.getSmileObjectMapper();
+
+        assertEquals(ROWS, smileMapper.readValue(writeBytes(rowSource(ROWS), SmileMediaTypes.APPLICATION_JACKSON_SMILE), List.class));
+        assertEquals(Collections.emptyList(), smileMapper.readValue(writeBytes(rowSource(Collections.emptyList()), SmileMediaTypes.APPLICATION_JACKSON_SMILE), List.class));
+    }
+
+    @Test
+    public void write_exceptionIfRowSourceFails() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        JsonStreamingOutput<Map<String, Object>> streamingOutput = new JsonStreamingOutput<>(rowConsumer -> {
+            rowConsumer.accept(ROWS.get(0));
+            throw new DataBaseRuntimeException(new SQLException("Cursor is closed"));
+        }, MediaType.APPLICATION_JSON);
+
+        try {
+            streamingOutput.write(outputStream);
+            fail("Failure of the row source is lost");
+        } catch (DataBaseRuntimeException e) {
+            //the array is never closed, so the client cannot take a cut body for a complete list
+            assertEquals("[{\"id\":\"1\"}", new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void write_ioExceptionIfClientIsGone() throws IOException {
+        JsonStreamingOutput<Map<String, Object>> streamingOutput = new JsonStreamingOutput<>(rowSource(ROWS), MediaType.APPLICATION_JSON);
+
+        //the opening bracket reaches the client, flushing the first row fails
+        streamingOutput.write(new ByteArrayOutputStream() {
+            @Override
+            public void flush() throws IOException {
+                if (size() > 1) {
+                    throw new IOException("Broken pipe");
+                }
+            }
+        });
+    }
+
+    private Function<Consumer<Map<String, Object>>, Integer> rowSource(List<Map<String, Object>> rows) {
+        return rowConsumer -> {
+            rows.forEach(rowConsumer);
+            return rows.size();
+        };
+    }
+
+    private String write(Function<Consumer<Map<String, Object>>, Integer> rowSource, String mediaType) throws IOException {
+        return new String(writeBytes(rowSource, mediaType), StandardCharsets.UTF_8);
+    }
+
+    private byte[] writeBytes(Function<Consumer<Map<String, Object>>, Integer> rowSource, String mediaType) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new JsonStreamingOutput<>(rowSource, mediaType).write(outputStream);
+        return outputStream.toByteArray();
+    }
+}
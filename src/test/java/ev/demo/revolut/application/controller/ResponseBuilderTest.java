@@ -0,0 +1,85 @@
+package ev.demo.revolut.application.controller;
+
+import ev.demo.revolut.db.DataBaseExecutor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ResponseBuilderTest {
+
+    private static final int MAX_TASKS = 100000;
+
+    @Mock
+    private AsyncResponse asyncResponse;
+
+    private ResponseBuilder responseBuilder = new ResponseBuilder();
+
+    @Test
+    public void resume_serviceUnavailableIfDataBaseExecutorIsSaturated() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Void>> blockingTasks = new ArrayList<>();
+        try {
+            //busy threads and a full queue, the next call is rejected
+            CompletableFuture<Void> rejected = null;
+            for (int i = 0; i < MAX_TASKS && rejected == null; i++) {
+                CompletableFuture<Void> task = DataBaseExecutor.runAsync(() -> await(release));
+                if (task.isCompletedExceptionally()) {
+                    rejected = task;
+                } else {
+                    blockingTasks.add(task);
+                }
+            }
+            assertTrue("DB executor never rejected a task", rejected != null);
+
+            responseBuilder.resume(asyncResponse, rejected, entity -> responseBuilder.getResponse(entity), throwable -> assertTrue(throwable instanceof RejectedExecutionException));
+
+            Response response = captureResponse();
+            assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+            assertEquals("1", response.getHeaderString(HttpHeaders.RETRY_AFTER));
+
+        } finally {
+            release.countDown();
+            CompletableFuture.allOf(blockingTasks.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void exceptionResponse_serviceUnavailableForRejectedExecution() {
+        Response response = responseBuilder.exceptionResponse(new RejectedExecutionException());
+
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+        assertEquals("1", response.getHeaderString(HttpHeaders.RETRY_AFTER));
+    }
+
+    private Response captureResponse() {
+        ArgumentCaptor<Response> response = ArgumentCaptor.forClass(Response.class);
+        verify(asyncResponse, timeout(1000)).resume(response.capture());
+        return response.getValue();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ev.demo.revolut.application.json;
+
+import com.fasterxml.jackson.jaxrs.smile.SmileMediaTypes;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SmileNegotiationFilterTest {
+
+    private static final MediaType SMILE = MediaType.valueOf(SmileMediaTypes.APPLICATION_JACKSON_SMILE);
+
+    private SmileNegotiationFilter filter = new SmileNegotiationFilter();
+
+    @Test
+    public void filter_jsonIfSmileIsOnlyCoveredByWildcard() {
+        assertEquals(MediaType.APPLICATION_JSON_TYPE, filter(SMILE, MediaType.WILDCARD_TYPE));
+        assertEquals(MediaType.APPLICATION_JSON_TYPE, filter(SMILE, MediaType.valueOf("application/*")));
+    }
+
+    @Test
+    public void filter_smileIfAskedForByName() {
+        assertEquals(SMILE, filter(SMILE, MediaType.APPLICATION_JSON_TYPE, SMILE));
+    }
+
+    @Test
+    public void filter_otherMediaTypesUntouched() {
+        assertEquals(MediaType.TEXT_PLAIN_TYPE, filter(MediaType.TEXT_PLAIN_TYPE, MediaType.WILDCARD_TYPE));
+    }
+
+    private Object filter(MediaType responseType, MediaType... acceptedTypes) {
+        ContainerRequestContext requestContext = mock(ContainerRequestContext.class);
+        List<MediaType> acceptableMediaTypes = Arrays.asList(acceptedTypes);
+        when(requestContext.getAcceptableMediaTypes()).thenReturn(acceptableMediaTypes);
+
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        headers.putSingle(HttpHeaders.CONTENT_TYPE, responseType);
+        ContainerResponseContext responseContext = mock(ContainerResponseContext.class);
+        when(responseContext.getMediaType()).thenReturn(responseType);
+        when(responseContext.getHeaders()).thenReturn(headers);
+
+        filter.filter(requestContext, responseContext);
+        return headers.getFirst(HttpHeaders.CONTENT_TYPE);
+    }
+}
@@ -0,0 +1,83 @@
+package ev.demo.revolut.cache;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BoundedCacheTest {
+
+    private AtomicLong currentTime = new AtomicLong(1000);
+
+    @Test
+    public void get_returnPutValue() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 100, currentTime::get);
+        cache.put("key1", "value1");
+
+        assertEquals("value1", cache.get("key1").get());
+        assertFalse(cache.get("key2").isPresent());
+    }
+
+    @Test
+    public void putIf_onlyWhenConditionHolds() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 100, currentTime::get);
+
+        assertFalse(cache.putIf("key1", "value1", () -> false));
+        assertFalse(cache.get("key1").isPresent());
+
+        assertTrue(cache.putIf("key1", "value1", () -> true));
+        assertEquals("value1", cache.get("key1").get());
+    }
+
+    @Test
+    public void get_emptyAfterTimeToLive() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 100, currentTime::get);
+        cache.put("key1", "value1");
+
+        currentTime.addAndGet(99);
+        assertTrue(cache.get("key1").isPresent());
+
+        currentTime.addAndGet(1);
+        assertFalse(cache.get("key1").isPresent());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void get_emptyIfOlderThanMaxAge() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 100, currentTime::get);
+        cache.put("key1", "value1");
+
+        currentTime.addAndGet(20);
+        assertFalse(cache.get("key1", 10).isPresent());
+        assertTrue(cache.get("key1", 20).isPresent());
+    }
+
+    @Test
+    public void put_evictLeastRecentlyUsed() {
+        BoundedCache<String, String> cache = new BoundedCache<>(2, 100, currentTime::get);
+        cache.put("key1", "value1");
+        cache.put("key2", "value2");
+        cache.get("key1");
+        cache.put("key3", "value3");
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.get("key1").isPresent());
+        assertFalse(cache.get("key2").isPresent());
+        assertTrue(cache.get("key3").isPresent());
+    }
+
+    @Test
+    public void invalidate_removeValue() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 100, currentTime::get);
+        cache.put("key1", "value1");
+        cache.invalidate("key1");
+
+        assertFalse(cache.get("key1").isPresent());
+    }
+}
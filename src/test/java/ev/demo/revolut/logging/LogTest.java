@@ -0,0 +1,32 @@
+package ev.demo.revolut.logging;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Map;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LogTest {
+
+    @Test
+    public void format_replacesPlaceholdersInOrder() {
+        assertEquals("Execute 'SELECT 1' with parameters 'a, 1, null'", Log.format("Execute '{}' with parameters '{}'", "SELECT 1", new Object[] {"a", 1, null}));
+        assertEquals("Streamed 5 rows", Log.format("Streamed {} rows", 5));
+        assertEquals("no placeholder", Log.format("no placeholder", "ignored"));
+        assertEquals("missing arg {}", Log.format("missing {} {}", "arg"));
+    }
+
+    @Test
+    public void parseSampleRates_skipsMalformedEntries() {
+        Map<String, Long> rates = Log.parseSampleRates(" ev.demo.revolut.db = 100 ,broken,ev.demo.revolut.model=0");
+
+        assertEquals(2, rates.size());
+        assertEquals(Long.valueOf(100), rates.get("ev.demo.revolut.db"));
+        assertEquals(Long.valueOf(1), rates.get("ev.demo.revolut.model"));
+        assertTrue(Log.parseSampleRates("").isEmpty());
+    }
+}
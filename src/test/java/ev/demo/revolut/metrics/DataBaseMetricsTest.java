@@ -0,0 +1,37 @@
+package ev.demo.revolut.metrics;
+
+import ev.demo.revolut.metrics.entity.StatementMetricsReport;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.assertEquals;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DataBaseMetricsTest {
+
+    @Test
+    public void recordStatement_inListsOfAnySizeShareOneTemplate() {
+        String statement = "SELECT * FROM MetricsTest WHERE id IN (?, ...)";
+        DataBaseMetrics.recordStatement("SELECT * FROM MetricsTest WHERE id IN (?, ?)", TimeUnit.MILLISECONDS.toNanos(2), 2, false);
+        DataBaseMetrics.recordStatement("SELECT * FROM MetricsTest WHERE id IN (?,?,?)", TimeUnit.MILLISECONDS.toNanos(4), 3, false);
+        DataBaseMetrics.recordStatement("SELECT * FROM MetricsTest WHERE id IN (?, ?)", TimeUnit.MILLISECONDS.toNanos(1), -1, true);
+
+        StatementMetricsReport report = DataBaseMetrics.getReport().getStatements().stream()
+                .filter(statementReport -> statementReport.getStatement().equals(statement))
+                .findFirst().get();
+
+        assertEquals(3, report.getCount());
+        assertEquals(5, report.getRows());
+        assertEquals(1, report.getErrors());
+        assertEquals(7, report.getTotalMillis());
+    }
+
+    @Test
+    public void normalize_keepsSingleParameters() {
+        assertEquals("UPDATE Account SET amount = ? WHERE id = ?", DataBaseMetrics.normalize("UPDATE Account SET amount = ? WHERE id = ?"));
+        assertEquals("INSERT INTO Account (a, b, id) VALUES (?, ...)", DataBaseMetrics.normalize("INSERT INTO Account (a, b, id) VALUES (?, ?, ?)"));
+    }
+}
@@ -0,0 +1,44 @@
+package ev.demo.revolut.metrics;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LatencyHistogramTest {
+
+    @Test
+    public void getValueAtPercentile_withinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 10000; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000, histogram.getMax());
+        assertEquals(5000.5, histogram.getMean(), 0.001);
+        assertNear(5000, histogram.getValueAtPercentile(50));
+        assertNear(9900, histogram.getValueAtPercentile(99));
+        assertNear(9990, histogram.getValueAtPercentile(99.9));
+        assertEquals(10000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void toIndex_bucketsCoverValuesInOrder() {
+        assertEquals(0, LatencyHistogram.toIndex(0));
+        assertEquals(31, LatencyHistogram.toIndex(31));
+
+        for (long value = 1; value < 1_000_000; value = value * 3 / 2 + 1) {
+            int index = LatencyHistogram.toIndex(value);
+            assertTrue(LatencyHistogram.highestValueOf(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.highestValueOf(index - 1) < value);
+        }
+    }
+
+    private static void assertNear(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 32 + 1);
+    }
+}
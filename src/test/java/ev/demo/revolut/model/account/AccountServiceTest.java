@@ -4,6 +4,7 @@ import ev.demo.revolut.db.exception.EntityNotFoundException;
 import ev.demo.revolut.model.ValidationException;
 import ev.demo.revolut.model.account.entity.Account;
 import ev.demo.revolut.model.account.entity.AccountCreationInput;
+import ev.demo.revolut.model.ledger.LedgerRepository;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
@@ -11,21 +12,32 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.sql.*;
 import java.util.*;
 
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertNotNull;
 import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-@RunWith(MockitoJUnitRunner.class)
+//Silent: the metadata of an account may already be cached by a previous test, leaving its stub unused
+@RunWith(MockitoJUnitRunner.Silent.class)
 public class AccountServiceTest {
 
     @Mock
     private AccountRepository accountRepository;
 
+    @Mock
+    private LedgerRepository ledgerRepository;
+
     @Mock
     private Connection connection;
 
@@ -75,6 +87,102 @@ public class AccountServiceTest {
         accountService.getAccountById(id);
     }
 
+    @Test
+    public void getAccountById_cachedIfMaxAgeAllows() {
+        String id = UUID.randomUUID().toString();
+        when(accountRepository.find(id)).thenReturn(Optional.of(createAccount(id)));
+
+        accountService.getAccountById(id);
+        Account cachedAccount = accountService.getAccountById(id, 60000);
+
+        assertEquals(id, cachedAccount.getId());
+        verify(accountRepository, times(1)).find(id);
+    }
+
+    @Test
+    public void getAccountById_consistentReadIgnoresCache() {
+        String id = UUID.randomUUID().toString();
+        when(accountRepository.find(id)).thenReturn(Optional.of(createAccount(id, 100))).thenReturn(Optional.of(createAccount(id, 200)));
+
+        accountService.getAccountById(id, 60000);
+
+        assertEquals(200, accountService.getAccountById(id).getAmountMinorUnits());
+    }
+
+    @Test
+    public void getAccountById_reloadedAfterInvalidation() {
+        String id = UUID.randomUUID().toString();
+        when(accountRepository.find(id)).thenReturn(Optional.of(createAccount(id, 100))).thenReturn(Optional.of(createAccount(id, 200)));
+
+        accountService.getAccountById(id, 60000);
+        accountService.invalidateCachedAccounts(id);
+
+        assertEquals(200, accountService.getAccountById(id, 60000).getAmountMinorUnits());
+    }
+
+    @Test
+    public void getAccountById_readRacingWithInvalidationIsNotCached() {
+        String id = UUID.randomUUID().toString();
+        //the account changes and is invalidated while the first read is in flight
+        when(accountRepository.find(id)).thenAnswer(invocation -> {
+            accountService.invalidateCachedAccounts(id);
+            return Optional.of(createAccount(id, 100));
+        }).thenReturn(Optional.of(createAccount(id, 200)));
+
+        accountService.getAccountById(id, 60000);
+
+        assertEquals(200, accountService.getAccountById(id, 60000).getAmountMinorUnits());
+    }
+
+    @Test
+    public void getAccountsByOwnerId_queryByOwnerIfIndexDisabled() {
+        String ownerId = UUID.randomUUID().toString();
+        when(accountRepository.findByOwnerId(ownerId)).thenReturn(Collections.singletonList(createAccount("id1")));
+
+        accountService.getAccountsByOwnerId(ownerId);
+        accountService.getAccountsByOwnerId(ownerId);
+
+        verify(accountRepository, times(2)).findByOwnerId(ownerId);
+    }
+
+    @Test
+    public void getAccountsByOwnerId_indexedIdsLookedUp() {
+        String ownerId = UUID.randomUUID().toString();
+        Account account = createAccount(UUID.randomUUID().toString());
+        account.setOwnerId(ownerId);
+        accountService.setOwnerIndexEnabled(true);
+
+        when(accountRepository.findByOwnerId(ownerId)).thenReturn(Collections.singletonList(account));
+        when(accountRepository.findByIds(Collections.singleton(account.getId()))).thenReturn(Collections.singletonList(account));
+
+        assertEquals(1, accountService.getAccountsByOwnerId(ownerId).size());
+        assertEquals(1, accountService.getAccountsByOwnerId(ownerId).size());
+
+        verify(accountRepository, times(1)).findByOwnerId(ownerId);
+    }
+
+    @Test
+    public void getAccountsByOwnerId_createdAccountIndexed() {
+        String ownerId = UUID.randomUUID().toString();
+        String id = UUID.randomUUID().toString();
+        AccountCreationInput creationInput = getFullCreationInput();
+        creationInput.setOwnerId(ownerId);
+        accountService.setOwnerIndexEnabled(true);
+
+        when(accountRepository.findByOwnerId(ownerId)).thenReturn(new ArrayList<>());
+        when(accountRepository.insert(any())).thenAnswer(i -> {
+            Account account = i.getArgument(0);
+            account.setId(id);
+            return account;
+        });
+
+        assertTrue(accountService.getAccountsByOwnerId(ownerId).isEmpty());
+        Account createdAccount = accountService.createAccount(creationInput);
+
+        when(accountRepository.findByIds(Collections.singleton(id))).thenReturn(Collections.singletonList(createdAccount));
+        assertEquals(id, accountService.getAccountsByOwnerId(ownerId).get(0).getId());
+    }
+
     @Test
     public void createAccount_returnAccount() {
         String id = "id1";
@@ -91,7 +199,7 @@ public class AccountServiceTest {
         assertNotNull(accountFromService);
         assertEquals(id, accountFromService.getId());
         assertEquals(creationInput.getName(), accountFromService.getName());
-        assertEquals(creationInput.getAmount(), accountFromService.getAmount());
+        assertEquals(creationInput.getAmount().setScale(2, RoundingMode.HALF_UP), accountFromService.getAmount());
         assertEquals(creationInput.getCurrency(), accountFromService.getCurrency());
         assertEquals(creationInput.getOwnerId(), accountFromService.getOwnerId());
     }
@@ -149,6 +257,84 @@ public class AccountServiceTest {
         accountService.createAccount(creationInput);
     }
 
+    @Test (expected = ValidationException.class)
+    public void createAccount_exceptionIfShardCountNegative() {
+        AccountCreationInput creationInput = getFullCreationInput();
+        creationInput.setShardCount(-1);
+
+        accountService.createAccount(creationInput);
+    }
+
+    @Test
+    public void transferAmount_creditToShardedAccountLocksShardOnly() {
+        Account account1 = createAccount(UUID.randomUUID().toString(), 100);
+        Account account2 = createAccount(UUID.randomUUID().toString(), 200);
+        account2.setShardCount(4);
+        when(accountRepository.findForUpdate(connection, account1.getId())).thenReturn(Optional.of(account1));
+        stubAccountMetadata(account2);
+
+        accountService.transferAmount(connection, "transaction1", account1.getId(), account2.getId(), 20, 50);
+
+        assertEquals(80, account1.getAmountMinorUnits());
+        verify(accountRepository).addToShard(eq(connection), eq(account2.getId()), anyInt(), eq(50L));
+        verify(accountRepository, never()).findForUpdate(connection, account2.getId());
+    }
+
+    @Test
+    public void transferAmount_shardsConsolidatedIfRowNotEnough() {
+        Account account1 = createAccount(UUID.randomUUID().toString(), 10);
+        account1.setShardCount(2);
+        Account account2 = createAccount(UUID.randomUUID().toString(), 200);
+        when(accountRepository.findForUpdate(connection, account1.getId())).thenReturn(Optional.of(account1));
+        when(accountRepository.findForUpdate(connection, account2.getId())).thenReturn(Optional.of(account2));
+        when(accountRepository.takeShardedAmount(connection, account1.getId())).thenReturn(100L);
+        stubAccountMetadata(account2);
+
+        accountService.transferAmount(connection, "transaction1", account1.getId(), account2.getId(), 50, 50);
+
+        assertEquals(60, account1.getAmountMinorUnits());
+        assertEquals(250, account2.getAmountMinorUnits());
+    }
+
+    @Test
+    public void transferAmount_ledgerEntriesAppendedWithoutCreditLock() {
+        accountService.setLedgerEnabled(true);
+        Account account1 = createAccount(UUID.randomUUID().toString(), 100);
+        Account account2 = createAccount(UUID.randomUUID().toString(), 200);
+        when(accountRepository.findForUpdate(connection, account1.getId())).thenReturn(Optional.of(account1));
+        when(ledgerRepository.getPendingAmount(connection, account1.getId())).thenReturn(0L);
+
+        accountService.transferAmount(connection, "transaction1", account1.getId(), account2.getId(), 20, 50);
+
+        assertEquals(100, account1.getAmountMinorUnits());
+        verify(ledgerRepository).append(connection, account1.getId(), "transaction1", -20);
+        verify(ledgerRepository).append(connection, account2.getId(), "transaction1", 50);
+        verify(accountRepository, never()).findForUpdate(connection, account2.getId());
+    }
+
+    @Test
+    public void transferAmount_pendingLedgerEntriesCountedAsAvailable() {
+        accountService.setLedgerEnabled(true);
+        Account account1 = createAccount(UUID.randomUUID().toString(), 10);
+        Account account2 = createAccount(UUID.randomUUID().toString(), 200);
+        when(accountRepository.findForUpdate(connection, account1.getId())).thenReturn(Optional.of(account1));
+        when(ledgerRepository.getPendingAmount(connection, account1.getId())).thenReturn(40L);
+
+        accountService.transferAmount(connection, "transaction1", account1.getId(), account2.getId(), 50, 50);
+
+        verify(ledgerRepository).append(connection, account1.getId(), "transaction1", -50);
+    }
+
+    @Test(expected = ValidationException.class)
+    public void transferAmount_ledgerDebitThrowExceptionIfAmountBigger() {
+        accountService.setLedgerEnabled(true);
+        Account account1 = createAccount(UUID.randomUUID().toString(), 10);
+        when(accountRepository.findForUpdate(connection, account1.getId())).thenReturn(Optional.of(account1));
+        when(ledgerRepository.getPendingAmount(connection, account1.getId())).thenReturn(-5L);
+
+        accountService.transferAmount(connection, "transaction1", account1.getId(), "id2", 10, 10);
+    }
+
     @Test
     public void deleteAccountById_noErrorIfFound() {
         String id = "id1";
@@ -165,14 +351,91 @@ public class AccountServiceTest {
         accountService.deleteAccountById(id);
     }
 
+    @Test
+    public void getAccountMetadata_loadedOnce() {
+        String id = UUID.randomUUID().toString();
+        Account account = createAccount(id);
+        account.setCurrency("EUR");
+        when(accountRepository.find(id)).thenReturn(Optional.of(account));
+
+        assertEquals("EUR", accountService.getAccountMetadata(id).getCurrency());
+        assertEquals("EUR", accountService.getAccountMetadata(id).getCurrency());
+
+        verify(accountRepository, times(1)).find(id);
+    }
+
+    @Test
+    public void getAccountMetadata_reloadedAfterDelete() {
+        String id = UUID.randomUUID().toString();
+        when(accountRepository.find(id)).thenReturn(Optional.of(createAccount(id))).thenReturn(Optional.empty());
+        when(accountRepository.delete(id)).thenReturn(true);
+
+        accountService.getAccountMetadata(id);
+        accountService.deleteAccountById(id);
+
+        try {
+            accountService.getAccountMetadata(id);
+            fail();
+        } catch (EntityNotFoundException e) {
+            verify(accountRepository, times(2)).find(id);
+        }
+    }
+
+    @Test
+    public void findExistingAccountIds_onlyUnknownIdsQueried() {
+        String existingId = UUID.randomUUID().toString();
+        String missingId = UUID.randomUUID().toString();
+        when(accountRepository.findExistingIds(new HashSet<>(Arrays.asList(existingId, missingId))))
+                .thenReturn(new HashSet<>(Collections.singleton(existingId)));
+        when(accountRepository.findExistingIds(Collections.singleton(missingId))).thenReturn(new HashSet<>());
+
+        assertEquals(Collections.singleton(existingId), accountService.findExistingAccountIds(existingId, missingId));
+        assertEquals(Collections.singleton(existingId), accountService.findExistingAccountIds(existingId, missingId));
+
+        verify(accountRepository).findExistingIds(Collections.singleton(missingId));
+    }
+
+    @Test
+    public void findExistingAccountIds_deletedIdQueriedAgain() {
+        String id = UUID.randomUUID().toString();
+        when(accountRepository.findExistingIds(Collections.singleton(id)))
+                .thenReturn(new HashSet<>(Collections.singleton(id)))
+                .thenReturn(new HashSet<>());
+        when(accountRepository.delete(id)).thenReturn(true);
+
+        assertEquals(Collections.singleton(id), accountService.findExistingAccountIds(id));
+        accountService.deleteAccountById(id);
+
+        assertTrue(accountService.findExistingAccountIds(id).isEmpty());
+    }
+
+    @Test
+    public void findExistingAccountIds_idDeletedDuringLookupNotRemembered() {
+        String id = UUID.randomUUID().toString();
+        when(accountRepository.delete(id)).thenReturn(true);
+        //the lookup reads the row, the delete completes before the lookup remembers the ID
+        when(accountRepository.findExistingIds(Collections.singleton(id)))
+                .thenAnswer(invocation -> {
+                    accountService.deleteAccountById(id);
+                    return new HashSet<>(Collections.singleton(id));
+                })
+                .thenReturn(new HashSet<>());
+
+        assertEquals(Collections.singleton(id), accountService.findExistingAccountIds(id));
+
+        assertTrue(accountService.findExistingAccountIds(id).isEmpty());
+        verify(accountRepository, times(2)).findExistingIds(Collections.singleton(id));
+    }
+
     @Test(expected = ValidationException.class)
     public void transferAmount_throwExceptionIfAmountBigger(){
         Account account1 = createAccount("id1", 100);
         Account account2 = createAccount("id2", 200);
         when(accountRepository.findForUpdate(connection, account1.getId())).thenReturn(Optional.of(account1));
+        stubAccountMetadata(account2);
         when(accountRepository.findForUpdate(connection, account2.getId())).thenReturn(Optional.of(account2));
 
-        accountService.transferAmount(connection, account1.getId(), account2.getId(), new BigDecimal(300), new BigDecimal(300));
+        accountService.transferAmount(connection, "transaction1", account1.getId(), account2.getId(), 300, 300);
     }
 
     @Test
@@ -180,20 +443,98 @@ public class AccountServiceTest {
         Account account1 = createAccount("id1", 100);
         Account account2 = createAccount("id2", 200);
         when(accountRepository.findForUpdate(connection, account1.getId())).thenReturn(Optional.of(account1));
+        stubAccountMetadata(account2);
         when(accountRepository.findForUpdate(connection, account2.getId())).thenReturn(Optional.of(account2));
 
         when(accountRepository.update(connection, account1)).thenAnswer(i -> {
             Account account1AfterUpdate = i.getArgument(1);
-            assertEquals(new BigDecimal(80), account1AfterUpdate.getAmount());
+            assertEquals(80, account1AfterUpdate.getAmountMinorUnits());
             return account1AfterUpdate;
         });
         when(accountRepository.update(connection, account2)).thenAnswer(i -> {
             Account account2AfterUpdate = i.getArgument(1);
-            assertEquals(new BigDecimal(250), account2AfterUpdate.getAmount());
+            assertEquals(250, account2AfterUpdate.getAmountMinorUnits());
             return account2AfterUpdate;
         });
 
-        accountService.transferAmount(connection, account1.getId(), account2.getId(), new BigDecimal(20), new BigDecimal(50));
+        accountService.transferAmount(connection, "transaction1", account1.getId(), account2.getId(), 20, 50);
+    }
+
+    @Test(expected = ValidationException.class)
+    public void transferAmount_throwExceptionIfAmountReserved(){
+        Account account1 = createAccount("id1", 100);
+        Account account2 = createAccount("id2", 200);
+        account1.setReservedMinorUnits(90);
+        when(accountRepository.findForUpdate(connection, account1.getId())).thenReturn(Optional.of(account1));
+        stubAccountMetadata(account2);
+        when(accountRepository.findForUpdate(connection, account2.getId())).thenReturn(Optional.of(account2));
+
+        accountService.transferAmount(connection, "transaction1", account1.getId(), account2.getId(), 20, 20);
+    }
+
+    @Test
+    public void reserveAmount_reservedChanged(){
+        Account account = createAccount("id1", 100);
+        account.setReservedMinorUnits(10);
+        when(accountRepository.findForUpdate(connection, account.getId())).thenReturn(Optional.of(account));
+
+        accountService.reserveAmount(connection, account.getId(), 90);
+
+        assertEquals(100, account.getAmountMinorUnits());
+        assertEquals(100, account.getReservedMinorUnits());
+        verify(accountRepository).update(connection, account);
+    }
+
+    @Test(expected = ValidationException.class)
+    public void reserveAmount_throwExceptionIfAmountBiggerThanAvailable(){
+        Account account = createAccount("id1", 100);
+        account.setReservedMinorUnits(10);
+        when(accountRepository.findForUpdate(connection, account.getId())).thenReturn(Optional.of(account));
+
+        accountService.reserveAmount(connection, account.getId(), 91);
+    }
+
+    @Test
+    public void releaseReservedAmount_reservedChanged(){
+        Account account = createAccount("id1", 100);
+        account.setReservedMinorUnits(30);
+        when(accountRepository.findForUpdate(connection, account.getId())).thenReturn(Optional.of(account));
+
+        accountService.releaseReservedAmount(connection, account.getId(), 20);
+
+        assertEquals(100, account.getAmountMinorUnits());
+        assertEquals(10, account.getReservedMinorUnits());
+    }
+
+    @Test
+    public void releaseReservedAmount_throwExceptionIfAmountBiggerThanReserved(){
+        Account account = createAccount("id1", 100);
+        account.setReservedMinorUnits(30);
+        when(accountRepository.findForUpdate(connection, account.getId())).thenReturn(Optional.of(account));
+
+        try {
+            accountService.releaseReservedAmount(connection, account.getId(), 31);
+            fail("Release above the reserved amount must be rejected");
+        } catch (ValidationException e) {
+            assertEquals(30, account.getReservedMinorUnits());
+            verify(accountRepository, never()).update(connection, account);
+        }
+    }
+
+    @Test
+    public void transferReservedAmount_amountsChanged(){
+        Account account1 = createAccount("id1", 100);
+        Account account2 = createAccount("id2", 200);
+        account1.setReservedMinorUnits(30);
+        when(accountRepository.findForUpdate(connection, account1.getId())).thenReturn(Optional.of(account1));
+        stubAccountMetadata(account2);
+        when(accountRepository.findForUpdate(connection, account2.getId())).thenReturn(Optional.of(account2));
+
+        accountService.transferReservedAmount(connection, "transaction1", account1.getId(), account2.getId(), 20, 50);
+
+        assertEquals(80, account1.getAmountMinorUnits());
+        assertEquals(10, account1.getReservedMinorUnits());
+        assertEquals(250, account2.getAmountMinorUnits());
     }
 
     private Account createAccount(String id) {
@@ -205,14 +546,18 @@ public class AccountServiceTest {
     private Account createAccount(String id, int amount) {
         Account account = new Account();
         account.setId(id);
-        account.setAmount(new BigDecimal(amount));
+        account.setAmountMinorUnits(amount);
         return account;
     }
 
+    private void stubAccountMetadata(Account account) {
+        when(accountRepository.find(account.getId())).thenReturn(Optional.of(account));
+    }
+
     private AccountCreationInput getFullCreationInput() {
         AccountCreationInput creationInput = new AccountCreationInput();
         creationInput.setName("name1");
-        creationInput.setAmount(new BigDecimal(11111.11));
+        creationInput.setAmount(new BigDecimal("11111.11"));
         creationInput.setCurrency("USD");
         creationInput.setOwnerId("user1");
         return creationInput;
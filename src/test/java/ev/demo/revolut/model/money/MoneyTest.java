@@ -0,0 +1,74 @@
+package ev.demo.revolut.model.money;
+
+import ev.demo.revolut.model.ValidationException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.math.BigDecimal;
+
+import static junit.framework.TestCase.assertEquals;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MoneyTest {
+
+    @Test
+    public void of_minorUnitsWithCurrencyScale() {
+        assertEquals(123456, Money.of(new BigDecimal("1234.56"), "USD").getMinorUnits());
+        assertEquals(1234, Money.of(new BigDecimal("1234.00"), "JPY").getMinorUnits());
+        assertEquals(new BigDecimal("1234.56"), Money.ofMinorUnits(123456, "EUR").toBigDecimal());
+    }
+
+    @Test(expected = ValidationException.class)
+    public void toMinorUnits_exceptionIfScaleExceedsCurrencyScale() {
+        Money.toMinorUnits(new BigDecimal("10.005"), "USD");
+    }
+
+    @Test(expected = ValidationException.class)
+    public void toMinorUnits_exceptionIfAmountIsOutOfRange() {
+        Money.toMinorUnits(new BigDecimal("100000000000000000.00"), "USD");
+    }
+
+    @Test
+    public void toMinorUnits_trailingZerosAccepted() {
+        assertEquals(1000, Money.toMinorUnits(new BigDecimal("10.000"), "USD"));
+        assertEquals(10, Money.toMinorUnits(new BigDecimal("10.0"), "JPY"));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void add_exceptionIfOverflow() {
+        Money.add(Long.MAX_VALUE, 1);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void subtract_exceptionIfOverflow() {
+        Money.subtract(Long.MIN_VALUE, 1);
+    }
+
+    @Test
+    public void fixedPointRate_roundTrip() {
+        assertEquals(new BigDecimal("0.5"), Money.fromFixedPointRate(Money.toFixedPointRate(new BigDecimal("0.5"))));
+        assertEquals(new BigDecimal("10"), Money.fromFixedPointRate(Money.toFixedPointRate(new BigDecimal("10.000"))));
+        assertEquals(new BigDecimal("1"), Money.fromFixedPointRate(Money.toFixedPointRate(BigDecimal.ONE)));
+    }
+
+    @Test
+    public void convert_sameScale() {
+        long rate = Money.toFixedPointRate(new BigDecimal("0.9"));
+        assertEquals(9000, Money.convert(10000, "USD", rate, "EUR"));
+    }
+
+    @Test
+    public void convert_differentScalesRoundedDown() {
+        long rate = Money.toFixedPointRate(new BigDecimal("151.237"));
+        assertEquals(15123, Money.convert(10000, "USD", rate, "JPY"));
+        assertEquals(66, Money.convert(100, "JPY", Money.toFixedPointRate(new BigDecimal("0.0066")), "USD"));
+    }
+
+    @Test
+    public void convert_hugeAmountWithoutOverflow() {
+        long amount = Long.MAX_VALUE / 1000;
+        long rate = Money.toFixedPointRate(new BigDecimal("0.5"));
+        assertEquals(amount / 2, Money.convert(amount, "USD", rate, "EUR"));
+    }
+}
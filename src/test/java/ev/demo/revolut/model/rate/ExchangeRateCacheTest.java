@@ -0,0 +1,84 @@
+package ev.demo.revolut.model.rate;
+
+import ev.demo.revolut.model.ValidationException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNotSame;
+import static junit.framework.TestCase.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExchangeRateCacheTest {
+
+    @Mock
+    private ExchangeRateProvider provider;
+
+    @Test
+    public void getCurrentTable_crossRatesDerivedFromBaseRates() {
+        when(provider.getCurrencies()).thenReturn(new HashSet<>(Arrays.asList("USD", "EUR", "GBP")));
+        when(provider.getBaseRate("USD")).thenReturn(BigDecimal.ONE);
+        when(provider.getBaseRate("EUR")).thenReturn(new BigDecimal("1.5"));
+        when(provider.getBaseRate("GBP")).thenReturn(new BigDecimal("0.75"));
+
+        ExchangeRateCache cache = new ExchangeRateCache(provider);
+        ExchangeRateTable table = cache.getCurrentTable();
+
+        assertEquals(BigDecimal.ONE, table.getExchangeRate("USD", "USD"));
+        assertEquals(new BigDecimal("1.5"), table.getExchangeRate("USD", "EUR"));
+        assertEquals(new BigDecimal("1.3333333333"), table.getExchangeRate("GBP", "USD"));
+        assertEquals(new BigDecimal("0.5"), table.getExchangeRate("EUR", "GBP"));
+        verify(provider, times(3)).getBaseRate(any());
+    }
+
+    @Test(expected = ValidationException.class)
+    public void getExchangeRate_exceptionIfCurrencyUnknown() {
+        when(provider.getCurrencies()).thenReturn(new HashSet<>(Arrays.asList("USD", "EUR")));
+        when(provider.getBaseRate(any())).thenReturn(new BigDecimal("1.5"));
+
+        new ExchangeRateCache(provider).getCurrentTable().getExchangeRate("USD", "XXX");
+    }
+
+    @Test
+    public void refresh_swapTableWithNewVersion() {
+        when(provider.getCurrencies()).thenReturn(new HashSet<>(Arrays.asList("USD", "EUR")));
+        when(provider.getBaseRate("USD")).thenReturn(BigDecimal.ONE);
+        when(provider.getBaseRate("EUR")).thenReturn(new BigDecimal("0.9"), new BigDecimal("0.8"));
+
+        ExchangeRateCache cache = new ExchangeRateCache(provider);
+        ExchangeRateTable oldTable = cache.getCurrentTable();
+
+        cache.refresh();
+        ExchangeRateTable newTable = cache.getCurrentTable();
+
+        assertNotSame(oldTable, newTable);
+        assertEquals(oldTable.getVersion() + 1, newTable.getVersion());
+        assertSame(oldTable, cache.getTable(oldTable.getVersion()).get());
+        assertSame(newTable, cache.getTable(newTable.getVersion()).get());
+        assertEquals(new BigDecimal("0.9"), oldTable.getExchangeRate("USD", "EUR"));
+        assertEquals(new BigDecimal("0.8"), newTable.getExchangeRate("USD", "EUR"));
+    }
+
+    @Test
+    public void refresh_keepTableIfProviderFailed() {
+        when(provider.getCurrencies()).thenReturn(new HashSet<>(Arrays.asList("USD", "EUR"))).thenThrow(new RuntimeException("unavailable"));
+        when(provider.getBaseRate(any())).thenReturn(new BigDecimal("1.5"));
+
+        ExchangeRateCache cache = new ExchangeRateCache(provider);
+        ExchangeRateTable table = cache.getCurrentTable();
+
+        cache.refresh();
+
+        assertSame(table, cache.getCurrentTable());
+    }
+}
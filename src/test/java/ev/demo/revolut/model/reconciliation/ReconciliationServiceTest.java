@@ -0,0 +1,176 @@
+package ev.demo.revolut.model.reconciliation;
+
+import ev.demo.revolut.metrics.ReconciliationMetrics;
+import ev.demo.revolut.model.account.AccountService;
+import ev.demo.revolut.model.account.entity.Account;
+import ev.demo.revolut.model.ledger.LedgerRepository;
+import ev.demo.revolut.model.money.Money;
+import ev.demo.revolut.model.reconciliation.entity.ReconciliationReport;
+import ev.demo.revolut.model.transaction.TransactionService;
+import ev.demo.revolut.model.transaction.entity.Transaction;
+import ev.demo.revolut.model.transaction.entity.TransactionStatus;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReconciliationServiceTest {
+
+    @Mock
+    private AccountService accountService;
+
+    @Mock
+    private TransactionService transactionService;
+
+    @Mock
+    private LedgerRepository ledgerRepository;
+
+    @InjectMocks
+    private ReconciliationService reconciliationService = new ReconciliationService();
+
+    @Test
+    public void reconcile_noViolationsForConsistentData() {
+        Account account1 = createAccount(UUID.randomUUID().toString(), 900, "USD");
+        Account account2 = createAccount(UUID.randomUUID().toString(), 2100, "USD");
+        Transaction transaction = createTransaction(account1.getId(), account2.getId(), 100, 100);
+
+        mockAccounts(account1, account2);
+        mockCompletedTransactions(transaction);
+        when(ledgerRepository.findTransactionIdsWithExtraEntries()).thenReturn(Collections.emptyList());
+
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        assertEquals(0, report.getViolationCount());
+        assertEquals(2, report.getAccountsChecked());
+        assertEquals(1, report.getTransactionsChecked());
+        assertEquals(new BigDecimal("30.00"), report.getBalanceTotals().get("USD"));
+    }
+
+    @Test
+    public void reconcile_negativeBalanceAndWrongConversionReported() {
+        Account account1 = createAccount(UUID.randomUUID().toString(), -10, "USD");
+        Account account2 = createAccount(UUID.randomUUID().toString(), 100, "USD");
+        Transaction transaction = createTransaction(account1.getId(), account2.getId(), 100, 90);
+
+        mockAccounts(account1, account2);
+        mockCompletedTransactions(transaction);
+        when(ledgerRepository.findTransactionIdsWithExtraEntries()).thenReturn(Collections.emptyList());
+
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        assertEquals(3, report.getViolationCount());
+        assertTrue(report.getViolations().stream().anyMatch(violation -> violation.contains("negative balance")));
+        assertTrue(report.getViolations().stream().anyMatch(violation -> violation.contains("pinned rates")));
+    }
+
+    @Test
+    public void reconcile_balanceChangeWithoutTransactionReported() {
+        Account account = createAccount(UUID.randomUUID().toString(), 100, "USD");
+        mockAccounts(account);
+        mockCompletedTransactions();
+        when(ledgerRepository.findTransactionIdsWithExtraEntries()).thenReturn(Collections.emptyList());
+
+        assertEquals(0, reconciliationService.reconcile().getViolationCount());
+
+        account.setAmountMinorUnits(150);
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        assertEquals(1, report.getViolationCount());
+        assertTrue(report.getViolations().get(0).contains("changed by 50"));
+    }
+
+    @Test
+    public void reconcile_rowsOfManyBatchesAreAllChecked() {
+        int accountCount = ReconciliationService.BATCH_SIZE * 3 + 1;
+        Account[] accounts = new Account[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accounts[i] = createAccount(UUID.randomUUID().toString(), i == accountCount - 1 ? -1 : 100, "USD");
+        }
+        mockAccounts(accounts);
+        mockCompletedTransactions(createTransaction(accounts[0].getId(), accounts[1].getId(), 100, 100));
+        when(ledgerRepository.findTransactionIdsWithExtraEntries()).thenReturn(Collections.emptyList());
+
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        assertEquals(accountCount, report.getAccountsChecked());
+        //negative balance and reserved amount outside of it, both for the account of the last batch
+        assertEquals(2, report.getViolationCount());
+        assertTrue(report.getViolations().stream().allMatch(violation -> violation.contains(accounts[accountCount - 1].getId())));
+        assertEquals(accountCount + 1, ReconciliationMetrics.getReport().getLastRowsChecked());
+    }
+
+    @Test
+    public void reconcile_accountOfTransactionCompletedDuringRunIsNotCheckedForConservation() {
+        Account account1 = createAccount(UUID.randomUUID().toString(), 100, "USD");
+        Account account2 = createAccount(UUID.randomUUID().toString(), 100, "USD");
+        mockAccounts(account1, account2);
+        mockCompletedTransactions();
+        when(ledgerRepository.findTransactionIdsWithExtraEntries()).thenReturn(Collections.emptyList());
+        reconciliationService.reconcile();
+
+        //the transfer completes after the ids are read, the accounts may or may not show it yet
+        Transaction transaction = createTransaction(account1.getId(), account2.getId(), 100, 100);
+        when(transactionService.getCompletedTransactionIds()).thenReturn(Collections.emptySet());
+        when(transactionService.forEachCompletedTransaction(any())).thenAnswer(invocation -> feed(invocation.getArgument(0), transaction));
+
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        assertEquals(0, report.getViolationCount());
+        assertEquals(2, report.getUnsettledAccounts());
+    }
+
+    private void mockAccounts(Account... accounts) {
+        when(accountService.forEachAccount(any())).thenAnswer(invocation -> feed(invocation.getArgument(0), accounts));
+    }
+
+    private void mockCompletedTransactions(Transaction... transactions) {
+        Set<String> completedIds = new HashSet<>();
+        for (Transaction transaction : transactions) {
+            completedIds.add(transaction.getId());
+        }
+        when(transactionService.getCompletedTransactionIds()).thenReturn(completedIds);
+        when(transactionService.forEachCompletedTransaction(any())).thenAnswer(invocation -> feed(invocation.getArgument(0), transactions));
+    }
+
+    @SafeVarargs
+    private static <T> int feed(Consumer<T> rowConsumer, T... rows) {
+        for (T row : rows) {
+            rowConsumer.accept(row);
+        }
+        return rows.length;
+    }
+
+    private Account createAccount(String id, long amount, String currency) {
+        Account account = new Account();
+        account.setId(id);
+        account.setAmountMinorUnits(amount);
+        account.setCurrency(currency);
+        return account;
+    }
+
+    private Transaction createTransaction(String accountFrom, String accountTo, long amountFrom, long amountTo) {
+        Transaction transaction = new Transaction();
+        transaction.setId(UUID.randomUUID().toString());
+        transaction.setAccountFrom(accountFrom);
+        transaction.setAccountTo(accountTo);
+        transaction.setAmountMinorUnits(100);
+        transaction.setCurrency("USD");
+        transaction.setStatus(TransactionStatus.COMPLETED);
+        transaction.setFixedPointExchangeRateFrom(Money.toFixedPointRate(BigDecimal.ONE));
+        transaction.setFixedPointExchangeRateTo(Money.toFixedPointRate(BigDecimal.ONE));
+        transaction.setAmountFrom(amountFrom);
+        transaction.setAmountTo(amountTo);
+        return transaction;
+    }
+}
@@ -0,0 +1,88 @@
+package ev.demo.revolut.model.transaction;
+
+import ev.demo.revolut.model.account.AccountService;
+import ev.demo.revolut.model.transaction.entity.Payout;
+import ev.demo.revolut.model.transaction.entity.TransactionStatus;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PayoutProcessingServiceTest {
+
+    @Mock
+    private PayoutRepository payoutRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private AccountService accountService;
+
+    @InjectMocks
+    private PayoutProcessingService processingService = new PayoutProcessingService();
+
+    @Test
+    public void recoverPayout_remainingLegsFailedIfPayoutIsLeftInProgress() {
+        Payout payout = createPayout(TransactionStatus.IN_PROGRESS);
+        when(payoutRepository.find(payout.getId())).thenReturn(Optional.of(payout));
+        when(transactionRepository.lockAndChangePayoutLegs(eq(payout.getId()), anyInt(), eq(TransactionStatus.FAILED), anyString(), any()))
+                .thenReturn(Collections.emptyList());
+
+        processingService.recoverPayout(payout.getId());
+
+        verify(transactionRepository).lockAndChangePayoutLegs(eq(payout.getId()), anyInt(), eq(TransactionStatus.FAILED), anyString(), any());
+        verify(accountService).invalidateCachedAccounts(payout.getAccountFrom());
+        verify(payoutRepository).lockAndTryChange(eq(payout.getId()), any());
+    }
+
+    @Test
+    public void recoverPayout_finishedPayoutUntouched() {
+        Payout payout = createPayout(TransactionStatus.COMPLETED);
+        when(payoutRepository.find(payout.getId())).thenReturn(Optional.of(payout));
+
+        processingService.recoverPayout(payout.getId());
+
+        verify(transactionRepository, never()).lockAndChangePayoutLegs(anyString(), anyInt(), any(), any(), any());
+        verify(payoutRepository, never()).lockAndTryChange(anyString(), any());
+    }
+
+    @Test
+    public void recoverPayout_payoutHeldByWorkerUntouched() {
+        Payout payout = createPayout(TransactionStatus.NEW);
+        //the recovery runs while a worker of this process is claiming the payout
+        when(payoutRepository.lockAndTryChange(eq(payout.getId()), any())).thenAnswer(invocation -> {
+            processingService.recoverPayout(payout.getId());
+            return Optional.empty();
+        });
+
+        processingService.processPayout(payout.getId());
+
+        verify(payoutRepository, never()).find(payout.getId());
+    }
+
+    private Payout createPayout(TransactionStatus status) {
+        Payout payout = new Payout();
+        payout.setId(UUID.randomUUID().toString());
+        payout.setAccountFrom(UUID.randomUUID().toString());
+        payout.setCurrency("USD");
+        payout.setStatus(status);
+        payout.setCreatedAt(Instant.now().minusSeconds(3600));
+        return payout;
+    }
+}
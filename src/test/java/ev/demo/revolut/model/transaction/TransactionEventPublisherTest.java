@@ -0,0 +1,67 @@
+package ev.demo.revolut.model.transaction;
+
+import ev.demo.revolut.model.transaction.entity.Transaction;
+import ev.demo.revolut.model.transaction.entity.TransactionStatus;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.UUID;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TransactionEventPublisherTest {
+
+    @Mock
+    private TransactionEventSubscriber transactionSubscriber;
+
+    @Mock
+    private TransactionEventSubscriber accountSubscriber;
+
+    @Test
+    public void publish_notifiesTransactionAndAccountSubscribers() {
+        Transaction transaction = createTransaction();
+        when(transactionSubscriber.onTransaction(transaction)).thenReturn(true);
+        when(accountSubscriber.onTransaction(transaction)).thenReturn(true);
+
+        assertTrue(TransactionEventPublisher.subscribeToTransaction(transaction.getId(), transactionSubscriber));
+        assertTrue(TransactionEventPublisher.subscribeToAccount(transaction.getAccountTo(), accountSubscriber));
+
+        TransactionEventPublisher.publish(transaction);
+
+        verify(transactionSubscriber, timeout(1000)).onTransaction(transaction);
+        verify(accountSubscriber, timeout(1000)).onTransaction(transaction);
+
+        TransactionEventPublisher.unsubscribeFromTransaction(transaction.getId(), transactionSubscriber);
+        TransactionEventPublisher.unsubscribeFromAccount(transaction.getAccountTo(), accountSubscriber);
+    }
+
+    @Test
+    public void sendHeartbeats_dropsGoneSubscribers() {
+        Transaction transaction = createTransaction();
+        when(transactionSubscriber.onHeartbeat()).thenReturn(false);
+        int subscriberCount = TransactionEventPublisher.getSubscriberCount();
+
+        TransactionEventPublisher.subscribeToTransaction(transaction.getId(), transactionSubscriber);
+        assertEquals(subscriberCount + 1, TransactionEventPublisher.getSubscriberCount());
+
+        TransactionEventPublisher.sendHeartbeats();
+        assertEquals(subscriberCount, TransactionEventPublisher.getSubscriberCount());
+
+        TransactionEventPublisher.publish(transaction);
+        verify(transactionSubscriber, after(100).never()).onTransaction(any());
+    }
+
+    private Transaction createTransaction() {
+        Transaction transaction = new Transaction();
+        transaction.setId(UUID.randomUUID().toString());
+        transaction.setAccountFrom(UUID.randomUUID().toString());
+        transaction.setAccountTo(UUID.randomUUID().toString());
+        transaction.setStatus(TransactionStatus.COMPLETED);
+        return transaction;
+    }
+}
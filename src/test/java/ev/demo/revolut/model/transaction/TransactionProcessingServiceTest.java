@@ -1,6 +1,7 @@
 package ev.demo.revolut.model.transaction;
 
 
+import ev.demo.revolut.model.account.AccountService;
 import ev.demo.revolut.model.transaction.entity.Transaction;
 import ev.demo.revolut.model.transaction.entity.TransactionStatus;
 import org.junit.Test;
@@ -9,13 +10,15 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
-import java.math.BigDecimal;
+import java.sql.Connection;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import static junit.framework.TestCase.assertEquals;
@@ -34,6 +37,12 @@ public class TransactionProcessingServiceTest {
     @Mock
     private ExecutorService executor;
 
+    @Mock
+    private AccountService accountService;
+
+    @Mock
+    private Connection connection;
+
     @InjectMocks
     private TransactionProcessingService processingService = new TransactionProcessingService();
 
@@ -164,7 +173,7 @@ public class TransactionProcessingServiceTest {
         transactions.add(createTransaction("account3", 0));
 
         when(transactionRepository.findAllNewOrInProgress()).thenReturn(new ArrayList<>(transactions));
-        when(transactionRepository.lockAndTryChange(any(), any())).then(i -> {
+        when(transactionRepository.lockAndTryChange(any(), any(), any())).then(i -> {
             String transactionId = i.getArgument(0);
             Function<Transaction, Boolean> changeAction = i.getArgument(1);
 
@@ -187,12 +196,66 @@ public class TransactionProcessingServiceTest {
         verify(executor, times(1)).submit(any(Runnable.class));
     }
 
+    @Test
+    public void processAllTransactions_releaseReservedAmountOfExpiredTransaction(){
+        Transaction transaction = createExpiredTransaction("account1");
+        transaction.setReservedAmount(100L);
+
+        List<Transaction> transactions = new ArrayList<>();
+        transactions.add(transaction);
+
+        when(transactionRepository.findAllNewOrInProgress()).thenReturn(transactions);
+        when(transactionRepository.lockAndTryChange(any(), any(), any())).then(i -> {
+            Function<Transaction, Boolean> changeAction = i.getArgument(1);
+            BiConsumer<Connection, Transaction> afterChange = i.getArgument(2);
+
+            changeAction.apply(transaction);
+            afterChange.accept(connection, transaction);
+
+            return Optional.of(transaction);
+        });
+
+        processingService.processAllTransactions();
+
+        assertEquals(TransactionStatus.FAILED, transaction.getStatus());
+        verify(accountService).releaseReservedAmount(connection, "account1", transaction.getReservedAmount());
+    }
+
+    @Test
+    public void processAllTransactions_transferWithPinnedExchangeRates(){
+        Transaction transaction = createTransaction("account1", 0);
+        transaction.setExchangeRateVersion(1L);
+        transaction.setAmountFrom(5045L);
+        transaction.setAmountTo(20180L);
+
+        List<Transaction> transactions = new ArrayList<>();
+        transactions.add(transaction);
+
+        when(transactionRepository.findAllNewOrInProgress()).thenReturn(transactions);
+        when(transactionRepository.lockAndTryChange(eq(transaction.getId()), any())).thenReturn(Optional.of(transaction));
+        doAnswer(i -> {
+            Consumer<Connection> consumer = i.getArgument(0);
+            consumer.accept(connection);
+            return null;
+        }).when(transactionRepository).runInNewTransaction(any());
+        when(executor.submit(any(Runnable.class))).then(i -> {
+            ((Runnable)i.getArgument(0)).run();
+            return null;
+        });
+
+        processingService.processAllTransactions();
+
+        verify(accountService).transferAmount(connection, transaction.getId(), "account1", transaction.getAccountTo(), 5045L, 20180L);
+        verify(accountService, never()).getAccountMetadata(any());
+        assertEquals(TransactionStatus.COMPLETED, transaction.getStatus());
+    }
+
     private Transaction createTransaction(String accountFrom, int createdAtDelay) {
         Transaction transaction = new Transaction();
         transaction.setId(UUID.randomUUID().toString());
         transaction.setAccountFrom(accountFrom);
         transaction.setAccountTo("anotherAccount");
-        transaction.setAmount(new BigDecimal(100.90));
+        transaction.setAmountMinorUnits(10090);
         transaction.setCurrency("USD");
         transaction.setStatus(TransactionStatus.NEW);
         transaction.setCreatedAt(Instant.now().plusMillis(createdAtDelay));
@@ -205,7 +268,7 @@ public class TransactionProcessingServiceTest {
         transaction.setId(UUID.randomUUID().toString());
         transaction.setAccountFrom(accountFrom);
         transaction.setAccountTo("anotherAccount");
-        transaction.setAmount(new BigDecimal(100.15));
+        transaction.setAmountMinorUnits(10015);
         transaction.setCurrency("USD");
         transaction.setStatus(TransactionStatus.NEW);
         transaction.setCreatedAt(Instant.now().minusSeconds(2));
@@ -1,11 +1,19 @@
 package ev.demo.revolut.model.transaction;
 
+import ev.demo.revolut.db.exception.DuplicateKeyException;
 import ev.demo.revolut.db.exception.EntityNotFoundException;
 import ev.demo.revolut.model.ValidationException;
 import ev.demo.revolut.model.account.AccountService;
 import ev.demo.revolut.model.account.entity.Account;
+import ev.demo.revolut.model.account.entity.AccountMetadata;
+import ev.demo.revolut.model.money.Money;
 import ev.demo.revolut.model.transaction.entity.Transaction;
+import ev.demo.revolut.model.transaction.entity.TransactionBatchResult;
 import ev.demo.revolut.model.transaction.entity.TransactionCreationInput;
+import ev.demo.revolut.model.transaction.entity.TransactionDirection;
+import ev.demo.revolut.model.transaction.entity.TransactionHistoryFilter;
+import ev.demo.revolut.model.transaction.entity.TransactionPage;
+import ev.demo.revolut.model.transaction.entity.TransactionStatus;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
@@ -13,14 +21,24 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNull;
 import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -32,9 +50,14 @@ public class TransactionServiceTest {
     @Mock
     private AccountService accountService;
 
+    @Mock
+    private Connection connection;
+
     @InjectMocks
     private TransactionService transactionService = new TransactionService();
 
+    private ExchangeRateService exchangeRateService = new ExchangeRateService();
+
     @Test
     public void getAllTransactions_returnAll() {
         List<Transaction> transactions = new ArrayList<>();
@@ -88,15 +111,15 @@ public class TransactionServiceTest {
             transaction.setId(id);
             return transaction;
         });
-        when(accountService.findAccountById(creationInput.getAccountFrom())).thenReturn(Optional.of(new Account()));
-        when(accountService.findAccountById(creationInput.getAccountTo())).thenReturn(Optional.of(new Account()));
+        stubExistingAccounts(creationInput);
+        stubAccountCurrencies(creationInput, "USD", "USD");
 
         Transaction transactionFromService = transactionService.createTransaction(creationInput);
         assertNotNull(transactionFromService);
         assertEquals(id, transactionFromService.getId());
         assertEquals(creationInput.getAccountFrom(), transactionFromService.getAccountFrom());
         assertEquals(creationInput.getAccountTo(), transactionFromService.getAccountTo());
-        assertEquals(creationInput.getAmount(), transactionFromService.getAmount());
+        assertEquals(creationInput.getAmount().setScale(2, RoundingMode.HALF_UP), transactionFromService.getAmount());
         assertEquals(creationInput.getCurrency(), transactionFromService.getCurrency());
         assertEquals(creationInput.getCreatedBy(), transactionFromService.getCreatedBy());
     }
@@ -126,7 +149,8 @@ public class TransactionServiceTest {
     public void createTransaction_exceptionIfAccountFromNotFound() {
         TransactionCreationInput creationInput = getFullCreationInput();
 
-        when(accountService.findAccountById(creationInput.getAccountFrom())).thenReturn(Optional.empty());
+        when(accountService.findExistingAccountIds(creationInput.getAccountFrom(), creationInput.getAccountTo()))
+                .thenReturn(Collections.singleton(creationInput.getAccountTo()));
 
         transactionService.createTransaction(creationInput);
     }
@@ -136,8 +160,6 @@ public class TransactionServiceTest {
         TransactionCreationInput creationInput = getFullCreationInput();
         creationInput.setAccountTo(null);
 
-        when(accountService.findAccountById(creationInput.getAccountFrom())).thenReturn(Optional.of(new Account()));
-
         transactionService.createTransaction(creationInput);
     }
 
@@ -146,8 +168,6 @@ public class TransactionServiceTest {
         TransactionCreationInput creationInput = getFullCreationInput();
         creationInput.setAccountTo("");
 
-        when(accountService.findAccountById(creationInput.getAccountFrom())).thenReturn(Optional.of(new Account()));
-
         transactionService.createTransaction(creationInput);
     }
 
@@ -155,8 +175,8 @@ public class TransactionServiceTest {
     public void createTransaction_exceptionIfAccountToNotFound() {
         TransactionCreationInput creationInput = getFullCreationInput();
 
-        when(accountService.findAccountById(creationInput.getAccountFrom())).thenReturn(Optional.of(new Account()));
-        when(accountService.findAccountById(creationInput.getAccountTo())).thenReturn(Optional.empty());
+        when(accountService.findExistingAccountIds(creationInput.getAccountFrom(), creationInput.getAccountTo()))
+                .thenReturn(Collections.singleton(creationInput.getAccountFrom()));
 
         transactionService.createTransaction(creationInput);
     }
@@ -165,7 +185,7 @@ public class TransactionServiceTest {
         TransactionCreationInput creationInput = getFullCreationInput();
         creationInput.setAccountTo(creationInput.getAccountFrom());
 
-        when(accountService.findAccountById(creationInput.getAccountFrom())).thenReturn(Optional.of(new Account()));
+        stubExistingAccounts(creationInput);
 
         transactionService.createTransaction(creationInput);
     }
@@ -175,8 +195,7 @@ public class TransactionServiceTest {
         TransactionCreationInput creationInput = getFullCreationInput();
         creationInput.setAmount(null);
 
-        when(accountService.findAccountById(creationInput.getAccountFrom())).thenReturn(Optional.of(new Account()));
-        when(accountService.findAccountById(creationInput.getAccountTo())).thenReturn(Optional.of(new Account()));
+        stubExistingAccounts(creationInput);
 
         transactionService.createTransaction(creationInput);
     }
@@ -186,8 +205,7 @@ public class TransactionServiceTest {
         TransactionCreationInput creationInput = getFullCreationInput();
         creationInput.setAmount(new BigDecimal(0));
 
-        when(accountService.findAccountById(creationInput.getAccountFrom())).thenReturn(Optional.of(new Account()));
-        when(accountService.findAccountById(creationInput.getAccountTo())).thenReturn(Optional.of(new Account()));
+        stubExistingAccounts(creationInput);
 
         transactionService.createTransaction(creationInput);
     }
@@ -197,8 +215,7 @@ public class TransactionServiceTest {
         TransactionCreationInput creationInput = getFullCreationInput();
         creationInput.setAmount(new BigDecimal(-1));
 
-        when(accountService.findAccountById(creationInput.getAccountFrom())).thenReturn(Optional.of(new Account()));
-        when(accountService.findAccountById(creationInput.getAccountTo())).thenReturn(Optional.of(new Account()));
+        stubExistingAccounts(creationInput);
 
         transactionService.createTransaction(creationInput);
     }
@@ -208,8 +225,7 @@ public class TransactionServiceTest {
         TransactionCreationInput creationInput = getFullCreationInput();
         creationInput.setCurrency(null);
 
-        when(accountService.findAccountById(creationInput.getAccountFrom())).thenReturn(Optional.of(new Account()));
-        when(accountService.findAccountById(creationInput.getAccountTo())).thenReturn(Optional.of(new Account()));
+        stubExistingAccounts(creationInput);
 
         transactionService.createTransaction(creationInput);
     }
@@ -219,16 +235,208 @@ public class TransactionServiceTest {
         TransactionCreationInput creationInput = getFullCreationInput();
         creationInput.setCurrency("");
 
-        when(accountService.findAccountById(creationInput.getAccountFrom())).thenReturn(Optional.of(new Account()));
-        when(accountService.findAccountById(creationInput.getAccountTo())).thenReturn(Optional.of(new Account()));
+        stubExistingAccounts(creationInput);
 
         transactionService.createTransaction(creationInput);
     }
 
+    @Test
+    public void createTransaction_saveIdempotencyKey() {
+        String idempotencyKey = UUID.randomUUID().toString();
+        TransactionCreationInput creationInput = getFullCreationInput();
+
+        when(transactionRepository.findByIdempotencyKey(idempotencyKey)).thenReturn(Optional.empty());
+        when(transactionRepository.insert(any())).thenAnswer(i -> {
+            Transaction transaction = i.getArgument(0);
+            transaction.setId("id1");
+            return transaction;
+        });
+        stubExistingAccounts(creationInput);
+        stubAccountCurrencies(creationInput, "USD", "USD");
+
+        Transaction transactionFromService = transactionService.createTransaction(creationInput, idempotencyKey);
+        assertNotNull(transactionFromService);
+        assertEquals(idempotencyKey, transactionFromService.getIdempotencyKey());
+    }
+
+    @Test
+    public void createTransaction_returnOriginalForRepeatedIdempotencyKey() {
+        String idempotencyKey = UUID.randomUUID().toString();
+        TransactionCreationInput creationInput = getFullCreationInput();
+        Transaction originalTransaction = createTransaction("id1", creationInput, idempotencyKey);
+
+        when(transactionRepository.findByIdempotencyKey(idempotencyKey)).thenReturn(Optional.of(originalTransaction));
+        when(transactionRepository.find(originalTransaction.getId())).thenReturn(Optional.of(originalTransaction));
+
+        Transaction transactionFromService = transactionService.createTransaction(creationInput, idempotencyKey);
+        assertEquals(originalTransaction.getId(), transactionFromService.getId());
+
+        transactionFromService = transactionService.createTransaction(creationInput, idempotencyKey);
+        assertEquals(originalTransaction.getId(), transactionFromService.getId());
+
+        verify(transactionRepository, never()).insert(any());
+    }
+
+    @Test
+    public void createTransaction_returnOriginalIfInsertedConcurrently() {
+        String idempotencyKey = UUID.randomUUID().toString();
+        TransactionCreationInput creationInput = getFullCreationInput();
+        Transaction originalTransaction = createTransaction("id1", creationInput, idempotencyKey);
+
+        when(transactionRepository.findByIdempotencyKey(idempotencyKey)).thenReturn(Optional.empty()).thenReturn(Optional.of(originalTransaction));
+        when(transactionRepository.insert(any())).thenThrow(new DuplicateKeyException(new RuntimeException()));
+        stubExistingAccounts(creationInput);
+        stubAccountCurrencies(creationInput, "USD", "USD");
+
+        Transaction transactionFromService = transactionService.createTransaction(creationInput, idempotencyKey);
+        assertEquals(originalTransaction.getId(), transactionFromService.getId());
+    }
+
+    @Test (expected = ValidationException.class)
+    public void createTransaction_exceptionIfIdempotencyKeyUsedForAnotherInput() {
+        String idempotencyKey = UUID.randomUUID().toString();
+        TransactionCreationInput creationInput = getFullCreationInput();
+        Transaction originalTransaction = createTransaction("id1", creationInput, idempotencyKey);
+        creationInput.setAmount(new BigDecimal(1));
+
+        when(transactionRepository.findByIdempotencyKey(idempotencyKey)).thenReturn(Optional.of(originalTransaction));
+
+        transactionService.createTransaction(creationInput, idempotencyKey);
+    }
+
+    @Test
+    public void createTransaction_reserveAmountIfReservationEnabled() {
+        TransactionCreationInput creationInput = getFullCreationInput();
+
+        stubExistingAccounts(creationInput);
+        stubAccountCurrencies(creationInput, "USD", "EUR");
+        when(transactionRepository.insert(any(), any())).thenAnswer(i -> {
+            Transaction transaction = i.getArgument(0);
+            Consumer<Connection> beforeInsert = i.getArgument(1);
+            beforeInsert.accept(connection);
+            transaction.setId("id1");
+            return transaction;
+        });
+
+        transactionService.setReservationEnabled(true);
+        Transaction transactionFromService = transactionService.createTransaction(creationInput);
+
+        assertEquals(Long.valueOf(1111120), transactionFromService.getReservedAmount());
+        verify(accountService).reserveAmount(connection, creationInput.getAccountFrom(), 1111120);
+        verify(transactionRepository, never()).insert(any());
+    }
+
+    @Test
+    public void createTransaction_pinExchangeRates() {
+        TransactionCreationInput creationInput = getFullCreationInput();
+
+        when(transactionRepository.insert(any())).thenAnswer(i -> i.getArgument(0));
+        stubExistingAccounts(creationInput);
+        stubAccountCurrencies(creationInput, "EUR", "GBP");
+
+        Transaction transactionFromService = transactionService.createTransaction(creationInput);
+
+        assertNotNull(transactionFromService.getExchangeRateVersion());
+        assertEquals(exchangeRateService.getExchangeRate("USD", "EUR"), transactionFromService.getExchangeRateFrom());
+        assertEquals(exchangeRateService.getExchangeRate("USD", "GBP"), transactionFromService.getExchangeRateTo());
+    }
+
+    @Test
+    public void getAccountTransactions_bothDirectionsNewestFirst() {
+        Instant now = Instant.now();
+        TransactionHistoryFilter filter = createHistoryFilter("account1", 2);
+
+        when(accountService.findExistingAccountIds("account1")).thenReturn(Collections.singleton("account1"));
+        when(transactionRepository.findByAccountFrom(filter, null, 3)).thenReturn(Arrays.asList(
+                createTransaction("id4", now.minusSeconds(1)), createTransaction("id1", now.minusSeconds(4))));
+        when(transactionRepository.findByAccountTo(filter, null, 3)).thenReturn(Arrays.asList(
+                createTransaction("id3", now.minusSeconds(2)), createTransaction("id2", now.minusSeconds(2))));
+
+        TransactionPage page = transactionService.getAccountTransactions(filter);
+        assertEquals(2, page.getTransactions().size());
+        assertEquals("id4", page.getTransactions().get(0).getId());
+        assertEquals("id3", page.getTransactions().get(1).getId());
+        assertNotNull(page.getNextCursor());
+
+        TransactionCursor cursor = TransactionCursor.decode(page.getNextCursor());
+        assertEquals(now.minusSeconds(2), cursor.getCreatedAt());
+        assertEquals("id3", cursor.getId());
+    }
+
+    @Test
+    public void getAccountTransactions_lastPageWithoutCursor() {
+        TransactionHistoryFilter filter = createHistoryFilter("account1", 2);
+        filter.setDirection(TransactionDirection.OUT);
+
+        when(accountService.findExistingAccountIds("account1")).thenReturn(Collections.singleton("account1"));
+        when(transactionRepository.findByAccountFrom(filter, null, 3)).thenReturn(Collections.singletonList(createTransaction("id1", Instant.now())));
+
+        TransactionPage page = transactionService.getAccountTransactions(filter);
+        assertEquals(1, page.getTransactions().size());
+        assertNull(page.getNextCursor());
+        verify(transactionRepository, never()).findByAccountTo(any(), any(), anyInt());
+    }
+
+    @Test(expected = EntityNotFoundException.class)
+    public void getAccountTransactions_exceptionIfAccountNotFound() {
+        when(accountService.findExistingAccountIds("account1")).thenReturn(Collections.emptySet());
+
+        transactionService.getAccountTransactions(createHistoryFilter("account1", 2));
+    }
+
+    @Test(expected = ValidationException.class)
+    public void getAccountTransactions_exceptionIfCursorInvalid() {
+        TransactionHistoryFilter filter = createHistoryFilter("account1", 2);
+        filter.setCursor("not a cursor");
+
+        when(accountService.findExistingAccountIds("account1")).thenReturn(Collections.singleton("account1"));
+
+        transactionService.getAccountTransactions(filter);
+    }
+
+    @Test
+    public void deleteTransactionById_releaseReservedAmountOfActiveTransaction() {
+        String id = "id1";
+        Transaction transaction = createTransaction(id);
+        transaction.setAccountFrom("account1");
+        transaction.setStatus(TransactionStatus.NEW);
+        transaction.setReservedAmount(100L);
+
+        when(transactionRepository.delete(eq(id), any())).thenAnswer(i -> {
+            BiConsumer<Connection, Transaction> beforeDelete = i.getArgument(1);
+            beforeDelete.accept(connection, transaction);
+            return true;
+        });
+
+        transactionService.deleteTransactionById(id);
+
+        verify(accountService).releaseReservedAmount(connection, "account1", transaction.getReservedAmount());
+    }
+
+    @Test
+    public void deleteTransactionById_rejectCompletedTransaction() {
+        String id = "id1";
+        Transaction transaction = createTransaction(id);
+        transaction.setStatus(TransactionStatus.COMPLETED);
+
+        when(transactionRepository.delete(eq(id), any())).thenAnswer(i -> {
+            BiConsumer<Connection, Transaction> beforeDelete = i.getArgument(1);
+            beforeDelete.accept(connection, transaction);
+            return true;
+        });
+
+        try {
+            transactionService.deleteTransactionById(id);
+            fail("Completed transaction is deleted");
+        } catch (ValidationException e) {
+            verify(accountService, never()).invalidateCachedAccounts(any());
+        }
+    }
+
     @Test
     public void deleteTransactionById_noErrorIfFound() {
         String id = "id1";
-        when(transactionRepository.delete(id)).thenReturn(true);
+        when(transactionRepository.delete(eq(id), any())).thenReturn(true);
 
         transactionService.deleteTransactionById(id);
     }
@@ -236,7 +444,7 @@ public class TransactionServiceTest {
     @Test(expected = EntityNotFoundException.class)
     public void deleteTransactionById_throwExceptionIfNotFound() {
         String id = "id1";
-        when(transactionRepository.delete(id)).thenReturn(false);
+        when(transactionRepository.delete(eq(id), any())).thenReturn(false);
 
         transactionService.deleteTransactionById(id);
     }
@@ -247,11 +455,84 @@ public class TransactionServiceTest {
         return transaction;
     }
 
+    private Transaction createTransaction(String id, Instant createdAt) {
+        Transaction transaction = createTransaction(id);
+        transaction.setCreatedAt(createdAt);
+        return transaction;
+    }
+
+    private TransactionHistoryFilter createHistoryFilter(String accountId, int limit) {
+        TransactionHistoryFilter filter = new TransactionHistoryFilter();
+        filter.setAccountId(accountId);
+        filter.setLimit(limit);
+        return filter;
+    }
+
+    @Test
+    public void createTransactions_invalidItemsRejectedOthersInsertedInOneBatch() {
+        TransactionCreationInput validInput = getFullCreationInput();
+        TransactionCreationInput unknownAccountInput = getFullCreationInput();
+        unknownAccountInput.setAccountTo("account3");
+        TransactionCreationInput zeroAmountInput = getFullCreationInput();
+        zeroAmountInput.setAmount(BigDecimal.ZERO);
+
+        Account account = new Account();
+        account.setCurrency("USD");
+        Map<String, AccountMetadata> accounts = new HashMap<>();
+        accounts.put("account1", new AccountMetadata(account));
+        accounts.put("account2", new AccountMetadata(account));
+        when(accountService.getAccountMetadataByIds(new HashSet<>(Arrays.asList("account1", "account2", "account3")))).thenReturn(accounts);
+        when(transactionRepository.insertBatch(any())).thenAnswer(i -> {
+            List<Transaction> transactions = i.<Function<Connection, List<Transaction>>>getArgument(0).apply(connection);
+            transactions.forEach(transaction -> transaction.setId(UUID.randomUUID().toString()));
+            return transactions;
+        });
+
+        TransactionBatchResult result = transactionService.createTransactions(Arrays.asList(validInput, unknownAccountInput, zeroAmountInput));
+
+        assertEquals(1, result.getCreatedCount());
+        assertEquals(2, result.getRejectedCount());
+        assertNotNull(result.getItems().get(0).getTransaction().getId());
+        assertEquals("AccountTo is not found!", result.getItems().get(1).getError());
+        assertEquals("Amount cannot be zero!", result.getItems().get(2).getError());
+        verify(accountService, never()).findExistingAccountIds(any());
+    }
+
+    @Test (expected = ValidationException.class)
+    public void createTransactions_exceptionIfEmpty() {
+        transactionService.createTransactions(new ArrayList<>());
+    }
+
+    private void stubExistingAccounts(TransactionCreationInput creationInput) {
+        when(accountService.findExistingAccountIds(creationInput.getAccountFrom(), creationInput.getAccountTo()))
+                .thenReturn(new HashSet<>(Arrays.asList(creationInput.getAccountFrom(), creationInput.getAccountTo())));
+    }
+
+    private void stubAccountCurrencies(TransactionCreationInput creationInput, String currencyFrom, String currencyTo) {
+        Account accountFrom = new Account();
+        accountFrom.setCurrency(currencyFrom);
+        Account accountTo = new Account();
+        accountTo.setCurrency(currencyTo);
+
+        when(accountService.getAccountMetadata(creationInput.getAccountFrom())).thenReturn(new AccountMetadata(accountFrom));
+        when(accountService.getAccountMetadata(creationInput.getAccountTo())).thenReturn(new AccountMetadata(accountTo));
+    }
+
+    private Transaction createTransaction(String id, TransactionCreationInput creationInput, String idempotencyKey) {
+        Transaction transaction = createTransaction(id);
+        transaction.setAccountFrom(creationInput.getAccountFrom());
+        transaction.setAccountTo(creationInput.getAccountTo());
+        transaction.setAmountMinorUnits(Money.toMinorUnits(creationInput.getAmount(), creationInput.getCurrency()));
+        transaction.setCurrency(creationInput.getCurrency());
+        transaction.setIdempotencyKey(idempotencyKey);
+        return transaction;
+    }
+
     private TransactionCreationInput getFullCreationInput() {
         TransactionCreationInput creationInput = new TransactionCreationInput();
         creationInput.setAccountFrom("account1");
         creationInput.setAccountTo("account2");
-        creationInput.setAmount(new BigDecimal(11111.20));
+        creationInput.setAmount(new BigDecimal("11111.20"));
         creationInput.setCurrency("USD");
         creationInput.setCreatedBy("user1");
         return creationInput;
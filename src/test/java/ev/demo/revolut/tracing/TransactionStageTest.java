@@ -0,0 +1,128 @@
+package ev.demo.revolut.tracing;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TransactionStageTest {
+
+    private static final String EVENT_NAME = "ev.demo.revolut.TransactionStage";
+
+    @Test
+    public void close_recordCompletedStage() throws IOException {
+        String transactionId = UUID.randomUUID().toString();
+
+        List<RecordedEvent> events = record(transactionId, () -> {
+            try (TransactionStage stage = TransactionStage.start(TransactionStage.TRANSFER, transactionId, "accountFrom", "accountTo")) {
+                stage.complete();
+            }
+        });
+
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals(TransactionStage.TRANSFER, event.getString("stage"));
+        assertEquals("accountFrom", event.getString("accountFrom"));
+        assertEquals("accountTo", event.getString("accountTo"));
+        assertFalse(event.getBoolean("failed"));
+    }
+
+    @Test
+    public void close_recordFailedIfStageThrows() throws IOException {
+        String transactionId = UUID.randomUUID().toString();
+
+        List<RecordedEvent> events = record(transactionId, () -> {
+            try (TransactionStage processStage = TransactionStage.start(TransactionStage.PROCESS, transactionId)) {
+                try (TransactionStage claimStage = TransactionStage.start(TransactionStage.CLAIM, transactionId)) {
+                    claimStage.setAccounts("accountFrom", "accountTo");
+                    claimStage.complete();
+                }
+                try (TransactionStage transferStage = TransactionStage.start(TransactionStage.TRANSFER, transactionId)) {
+                    transfer();
+                    transferStage.complete();
+                }
+                processStage.complete();
+            } catch (IllegalStateException e) {
+                //the failure reaches the caller, the stages it passed through are recorded as failed
+            }
+        });
+
+        assertEquals(3, events.size());
+        assertFalse(findStage(events, TransactionStage.CLAIM).getBoolean("failed"));
+        assertEquals("accountFrom", findStage(events, TransactionStage.CLAIM).getString("accountFrom"));
+        assertTrue(findStage(events, TransactionStage.TRANSFER).getBoolean("failed"));
+        assertTrue(findStage(events, TransactionStage.PROCESS).getBoolean("failed"));
+        assertNull(findStage(events, TransactionStage.PROCESS).getString("accountFrom"));
+    }
+
+    @Test
+    public void close_nothingRecordedIfEventIsDisabled() throws IOException {
+        String transactionId = UUID.randomUUID().toString();
+
+        try (Recording recording = new Recording()) {
+            recording.disable(EVENT_NAME);
+            recording.start();
+            try (TransactionStage stage = TransactionStage.start(TransactionStage.TRANSFER, transactionId)) {
+                stage.complete();
+            }
+            recording.stop();
+
+            assertTrue(readEvents(recording, transactionId).isEmpty());
+        }
+    }
+
+    private void transfer() {
+        throw new IllegalStateException("Transfer failed");
+    }
+
+    private List<RecordedEvent> record(String transactionId, Runnable stages) throws IOException {
+        try (Recording recording = new Recording()) {
+            recording.enable(EVENT_NAME).withThreshold(Duration.ZERO);
+            recording.start();
+            stages.run();
+            recording.stop();
+
+            return readEvents(recording, transactionId);
+        }
+    }
+
+    private List<RecordedEvent> readEvents(Recording recording, String transactionId) throws IOException {
+        Path file = Files.createTempFile("transaction-stage", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> EVENT_NAME.equals(event.getEventType().getName()))
+                    .filter(event -> transactionId.equals(event.getString("transactionId")))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private RecordedEvent findStage(List<RecordedEvent> events, String stage) {
+        return events.stream()
+                .filter(event -> stage.equals(event.getString("stage")))
+                .findFirst()
+                .orElseGet(() -> {
+                    fail("Stage '" + stage + "' is not recorded");
+                    return null;
+                });
+    }
+}